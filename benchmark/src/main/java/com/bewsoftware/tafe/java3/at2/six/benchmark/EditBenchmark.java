@@ -0,0 +1,143 @@
+/*
+ *  File Name:    EditBenchmark.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 29 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.benchmark;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.EditHistory;
+import com.bewsoftware.tafe.java3.at2.six.csv.EditJournal;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The latency of an edit from the edit form, as
+ * {@code CSVTableController.showEditFormDialog()} makes it: changing the
+ * value, then also recording it in the undo history, and then also in the
+ * journal, which forces each entry out to the disk.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EditBenchmark
+{
+    @Benchmark
+    public void set(final Editing editing)
+    {
+        editing.table.set(editing.nextRow(), editing.column, editing.nextValue());
+    }
+
+    @Benchmark
+    public void setJournaled(final Editing editing) throws IOException
+    {
+        final int row = editing.nextRow();
+        final String oldValue = editing.table.get(row, editing.column);
+        final String newValue = editing.nextValue();
+
+        editing.table.set(row, editing.column, newValue);
+        editing.history.set(row, editing.column, oldValue, newValue);
+        editing.history.endStep();
+        editing.journal.set(row, editing.column, newValue);
+    }
+
+    @Benchmark
+    public void setWithHistory(final Editing editing)
+    {
+        final int row = editing.nextRow();
+        final String oldValue = editing.table.get(row, editing.column);
+        final String newValue = editing.nextValue();
+
+        editing.table.set(row, editing.column, newValue);
+        editing.history.set(row, editing.column, oldValue, newValue);
+        editing.history.endStep();
+    }
+
+    /**
+     * A table being edited.
+     */
+    @State(Scope.Benchmark)
+    public static class Editing
+    {
+        /**
+         * The text column edited.
+         */
+        int column;
+
+        private int count;
+
+        EditHistory history;
+
+        EditJournal journal;
+
+        ColumnarTable table;
+
+        @Setup(Level.Trial)
+        public void load(final SyntheticCsv csv) throws IOException
+        {
+            table = LoadBenchmark.loadColumnar(csv.path);
+            column = table.getColumnCount() - 1;
+            history = new EditHistory(16L * 1024 * 1024);
+            journal = new EditJournal(csv.path);
+        }
+
+        @TearDown(Level.Trial)
+        public void discard() throws IOException
+        {
+            journal.discard();
+        }
+
+        /**
+         * Get the next row to edit, spread across the table.
+         */
+        int nextRow()
+        {
+            return (int) ((count * 7919L) % table.getRowCount());
+        }
+
+        String nextValue()
+        {
+            return "edit" + count++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  File Name:    LoadBenchmark.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 29 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.benchmark;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.MappedCSVParser;
+import com.bewsoftware.tafe.java3.at2.six.csv.OffsetBlock;
+import com.bewsoftware.tafe.java3.at2.six.csv.PagedTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowBlock;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loading a file, as {@code CSVTableController.loadCSVData()} does
+ * through the {@code CSVLoadTask}, but without JavaFX: into a
+ * {@link ColumnarTable}, or into a {@link PagedTable} for a file too
+ * large to hold. The baseline reads the whole file with opencsv, as the
+ * application once did.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark
+{
+    /**
+     * Load a file into a {@link ColumnarTable}, the same way as the
+     * {@code CSVLoadTask} does.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @return the table
+     *
+     * @throws IOException if any.
+     */
+    public static ColumnarTable loadColumnar(final Path csvPath) throws IOException
+    {
+        try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+        {
+            ColumnarTable table = null;
+
+            for (CompletableFuture<RowBlock> chunk : parser.parseAsync(i -> new RowBlock(i == 0)))
+            {
+                RowBlock block = chunk.join();
+
+                if (table == null)
+                {
+                    table = new ColumnarTable(block.getHeader());
+                }
+
+                table.prepareBlock(block);
+                table.addBlock(block);
+            }
+
+            return table;
+        }
+    }
+
+    @Benchmark
+    public ColumnarTable columnar(final SyntheticCsv csv) throws IOException
+    {
+        return loadColumnar(csv.path);
+    }
+
+    @Benchmark
+    public List<String[]> openCsvBaseline(final SyntheticCsv csv) throws IOException, CsvException
+    {
+        try (Reader reader = Files.newBufferedReader(csv.path, UTF_8);
+                CSVReader csvReader = new CSVReader(reader))
+        {
+            return csvReader.readAll();
+        }
+    }
+
+    @Benchmark
+    public PagedTable paged(final SyntheticCsv csv) throws IOException
+    {
+        try (MappedCSVParser parser = new MappedCSVParser(csv.path))
+        {
+            PagedTable table = null;
+
+            for (CompletableFuture<OffsetBlock> chunk : parser.parseAsync(i -> new OffsetBlock(i == 0)))
+            {
+                OffsetBlock block = chunk.join();
+
+                if (table == null)
+                {
+                    table = new PagedTable(csv.path, block.getHeader());
+                }
+
+                table.prepareBlock(block);
+                table.addBlock(block);
+            }
+
+            return table;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  File Name:    SaveBenchmark.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 29 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.benchmark;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.TableWriter;
+import com.opencsv.CSVWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Saving a table with a few edits, as the {@code SaveTask} does for
+ * {@code CSVTableController.saveCSVData()}: copying the unchanged rows
+ * from the file, and encoding every row, as when the file it was read
+ * from has changed. The baseline writes every row with opencsv, as the
+ * application once did.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveBenchmark
+{
+    @Benchmark
+    public int copyUnchanged(final Edited edited) throws IOException
+    {
+        return TableWriter.write(edited.table, edited.order, edited.sourcePath, edited.targetPath,
+                count ->
+        {
+            // NoOp
+        });
+    }
+
+    @Benchmark
+    public int encodeAll(final Edited edited) throws IOException
+    {
+        return TableWriter.write(edited.table, edited.order, null, edited.targetPath, count ->
+        {
+            // NoOp
+        });
+    }
+
+    @Benchmark
+    public void openCsvBaseline(final Edited edited) throws IOException
+    {
+        try (Writer writer = Files.newBufferedWriter(edited.targetPath, UTF_8);
+                CSVWriter csvWriter = new CSVWriter(writer))
+        {
+            csvWriter.writeNext(edited.table.getHeader().toArray(new String[0]), false);
+
+            for (String[] row : edited.rows)
+            {
+                csvWriter.writeNext(row, false);
+            }
+        }
+    }
+
+    /**
+     * A table with one row in a thousand edited.
+     */
+    @State(Scope.Benchmark)
+    public static class Edited
+    {
+        int[] order;
+
+        String[][] rows;
+
+        Path sourcePath;
+
+        ColumnarTable table;
+
+        Path targetPath;
+
+        @Setup(Level.Trial)
+        public void load(final SyntheticCsv csv) throws IOException
+        {
+            sourcePath = csv.path;
+            targetPath = csv.outputPath();
+            table = LoadBenchmark.loadColumnar(csv.path);
+
+            for (int row = 0; row < table.getRowCount(); row += 1000)
+            {
+                table.set(row, table.getColumnCount() - 1, "edited");
+            }
+
+            order = new int[table.getRowCount()];
+            Arrays.setAll(order, i -> i);
+            rows = new String[order.length][];
+            Arrays.setAll(rows, table::getRow);
+        }
+    }
+}
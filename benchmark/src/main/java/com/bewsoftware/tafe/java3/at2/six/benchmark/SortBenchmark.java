@@ -0,0 +1,133 @@
+/*
+ *  File Name:    SortBenchmark.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 29 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.benchmark;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.ParallelSort;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting the rows by a column, as the {@code SortTask} does: by the row
+ * number, by the price, and by a text column. The baseline sorts rows of
+ * text, as the application once did.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark
+{
+    @Benchmark
+    public int[] byNumber(final Loaded loaded)
+    {
+        // Descending, so that the rows do need to move.
+        return sort(loaded, 0, true);
+    }
+
+    @Benchmark
+    public int[] byPrice(final Loaded loaded)
+    {
+        return sort(loaded, 1, false);
+    }
+
+    @Benchmark
+    public int[] byText(final Loaded loaded)
+    {
+        return sort(loaded, loaded.textColumn, false);
+    }
+
+    @Benchmark
+    public String[][] textBaseline(final Loaded loaded)
+    {
+        final int column = loaded.textColumn;
+        String[][] rows = loaded.rows.clone();
+        Arrays.sort(rows, Comparator.comparing((String[] row) -> row[column]));
+
+        return rows;
+    }
+
+    private int[] sort(final Loaded loaded, final int column, final boolean descending)
+    {
+        int[] order = loaded.order.clone();
+
+        ParallelSort.sort(order, descending
+                ? loaded.table.comparator(column).reversed()
+                : loaded.table.comparator(column), () -> false);
+
+        return order;
+    }
+
+    /**
+     * The file, loaded into a table, and as rows of text.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded
+    {
+        /**
+         * The rows in file order.
+         */
+        int[] order;
+
+        String[][] rows;
+
+        ColumnarTable table;
+
+        int textColumn;
+
+        @Setup(Level.Trial)
+        public void load(final SyntheticCsv csv) throws IOException
+        {
+            table = LoadBenchmark.loadColumnar(csv.path);
+            order = new int[table.getRowCount()];
+            Arrays.setAll(order, i -> i);
+            rows = new String[order.length][];
+            Arrays.setAll(rows, table::getRow);
+            textColumn = Math.min(2, table.getColumnCount() - 1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  File Name:    SyntheticCsv.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 29 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A synthetic CSV file, written to a temporary file for each trial.
+ * <p>
+ * Its shape is set by the JMH parameters, which can be overridden on the
+ * command line, such as {@code -p columns=64 -p cellLength=128}:
+ * <ul>
+ * <li>rows: number of rows, after the column headings</li>
+ * <li>columns: narrow (4) or wide (64)</li>
+ * <li>cellLength: short (8) or long (128) text cells</li>
+ * <li>quoted: every text cell quoted, with some holding commas, quotes
+ * and line breaks</li>
+ * <li>unicode: text cells drawn from accented, Greek and CJK characters,
+ * rather than ASCII</li>
+ * </ul>
+ * The first column holds the row number and the second a price, so there
+ * are typed columns to sort by. The rest hold text.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+public class SyntheticCsv
+{
+    private static final String ASCII = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+
+    private static final String UNICODE = "àéîõüçñßαβγδλπΣΩ日本語中文字한국어";
+
+    /**
+     * Write a cell of text.
+     */
+    private static void writeText(final BufferedWriter out, final Random random,
+            final String alphabet, final int length, final boolean quoted) throws IOException
+    {
+        StringBuilder text = new StringBuilder(length + 8);
+
+        for (int i = 0; i < length; i++)
+        {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        if (quoted)
+        {
+            if (random.nextInt(4) == 0)
+            {
+                // Something that needs the quotes.
+                text.insert(random.nextInt(text.length() + 1), switch (random.nextInt(3))
+                {
+                    case 0 ->
+                        ",";
+                    case 1 ->
+                        "\"\"";
+                    default ->
+                        "\n";
+                });
+            }
+
+            out.write('"');
+            out.write(text.toString());
+            out.write('"');
+        } else
+        {
+            out.write(text.toString());
+        }
+    }
+
+    @Param({"8", "128"})
+    public int cellLength;
+
+    @Param({"4", "64"})
+    public int columns;
+
+    /**
+     * The file, once it has been written.
+     */
+    public Path path;
+
+    @Param({"false", "true"})
+    public boolean quoted;
+
+    @Param("10000")
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean unicode;
+
+    /**
+     * Delete the file.
+     *
+     * @throws IOException if any.
+     */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException
+    {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".out"));
+    }
+
+    /**
+     * Get the path of a file to write to, next to this one.
+     *
+     * @return the path
+     */
+    public Path outputPath()
+    {
+        return path.resolveSibling(path.getFileName() + ".out");
+    }
+
+    /**
+     * Write the file.
+     *
+     * @throws IOException if any.
+     */
+    @Setup(Level.Trial)
+    public void write() throws IOException
+    {
+        path = Files.createTempFile("synthetic", ".csv");
+        final Random random = new Random(42);
+        final String alphabet = unicode ? UNICODE : ASCII;
+
+        try (BufferedWriter out = Files.newBufferedWriter(path, UTF_8))
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                out.write((column > 0 ? "," : "") + "column" + column);
+            }
+
+            out.write('\n');
+
+            for (int row = 0; row < rows; row++)
+            {
+                out.write(Integer.toString(row));
+
+                for (int column = 1; column < columns; column++)
+                {
+                    out.write(',');
+
+                    if (column == 1)
+                    {
+                        out.write(String.format("%d.%02d", random.nextInt(1000), random.nextInt(100)));
+                    } else
+                    {
+                        writeText(out, random, alphabet, cellLength, quoted);
+                    }
+                }
+
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -26,6 +26,11 @@
 
 package com.bewsoftware.tafe.java3.at2.six;
 
+import com.bewsoftware.tafe.java3.at2.six.csv.LoadOptions;
+import com.bewsoftware.tafe.java3.at2.six.jfr.ViewSwitchEvent;
+import com.bewsoftware.tafe.java3.at2.six.metrics.MetricsRegistry;
+import com.bewsoftware.tafe.java3.at2.six.metrics.StallMonitor;
+import com.bewsoftware.tafe.java3.at2.six.util.ViewCache;
 import com.bewsoftware.tafe.java3.at2.six.util.ViewController;
 import com.bewsoftware.tafe.java3.at2.six.util.Views;
 import java.beans.PropertyChangeListener;
@@ -63,10 +68,45 @@ public class App extends Application
      */
     public static final String PROP_ACTIVEVIEW = "activeView";
 
+    /**
+     * Property tag for whether there is an edit that can be redone.
+     */
+    public static final String PROP_CANREDO = "canRedo";
+
+    /**
+     * Property tag for whether there is an edit that can be undone.
+     */
+    public static final String PROP_CANUNDO = "canUndo";
+
+    /**
+     * Property tag for a request to cancel the current file load.
+     */
+    public static final String PROP_CANCELLOAD = "cancelLoad";
+
     public static final String PROP_DATAISDIRTY = "dataIsDirty";
 
     public static final String PROP_FILENAME = "fileName";
 
+    /**
+     * Property tag for a request to search the table.
+     */
+    public static final String PROP_FIND = "find";
+
+    /**
+     * Property tag for the file loading state.
+     */
+    public static final String PROP_LOADING = "loading";
+
+    /**
+     * Property tag for a request to redo the last edit undone.
+     */
+    public static final String PROP_REDO = "redo";
+
+    /**
+     * Property tag for a request to find and replace in the table.
+     */
+    public static final String PROP_REPLACE = "replace";
+
     public static final String PROP_SAVEFILE = "saveFile";
 
     /**
@@ -74,6 +114,11 @@ public class App extends Application
      */
     public static final String PROP_STATUSTEXT = "statusText";
 
+    /**
+     * Property tag for a request to undo the last edit.
+     */
+    public static final String PROP_UNDO = "undo";
+
     /**
      * @param args the command line arguments
      */
@@ -84,6 +129,16 @@ public class App extends Application
 
     private Views activeView;
 
+    /**
+     * There is an edit that can be redone.
+     */
+    private boolean canRedo;
+
+    /**
+     * There is an edit that can be undone.
+     */
+    private boolean canUndo;
+
     /**
      * The data needs to be Saved!
      */
@@ -91,20 +146,49 @@ public class App extends Application
 
     private Path fileName;
 
+    /**
+     * A file is being loaded in the background.
+     */
+    private boolean loading;
+
+    /**
+     * How much of the next file opened is to be loaded.
+     */
+    private LoadOptions loadOptions;
+
+    /**
+     * The counters, timers and gauges shown on the metrics panel.
+     */
+    private final MetricsRegistry metrics;
+
     private Stage primaryStage;
 
     private final transient PropertyChangeSupport propertyChangeSupport;
 
     private BorderPane rootLayout;
 
+    /**
+     * Records the stalls of the FX Application Thread.
+     */
+    private final StallMonitor stallMonitor;
+
     private String statusText;
 
     private String titleFileName;
 
+    /**
+     * The views and dialogs, loaded ahead of time.
+     */
+    private final ViewCache viewCache;
+
     public App()
     {
         this.propertyChangeSupport = new PropertyChangeSupport(this);
         this.statusText = "";
+        this.viewCache = new ViewCache();
+        this.loadOptions = LoadOptions.FULL;
+        this.metrics = new MetricsRegistry();
+        this.stallMonitor = new StallMonitor(metrics.getTimer(MetricsRegistry.FX_STALLS));
     }
 
     /**
@@ -117,6 +201,49 @@ public class App extends Application
         propertyChangeSupport.addPropertyChangeListener(listener);
     }
 
+    /**
+     * Set the value of canRedo
+     *
+     * @param canRedo new value of canRedo
+     */
+    public void setCanRedo(boolean canRedo)
+    {
+        boolean oldCanRedo = this.canRedo;
+        this.canRedo = canRedo;
+        propertyChangeSupport.firePropertyChange(PROP_CANREDO, oldCanRedo, canRedo);
+    }
+
+    /**
+     * Set the value of canUndo
+     *
+     * @param canUndo new value of canUndo
+     */
+    public void setCanUndo(boolean canUndo)
+    {
+        boolean oldCanUndo = this.canUndo;
+        this.canUndo = canUndo;
+        propertyChangeSupport.firePropertyChange(PROP_CANUNDO, oldCanUndo, canUndo);
+    }
+
+    /**
+     * Request that the current background file load be cancelled.
+     */
+    public void cancelLoad()
+    {
+        if (loading)
+        {
+            propertyChangeSupport.firePropertyChange(PROP_CANCELLOAD, false, true);
+        }
+    }
+
+    /**
+     * Request that the search box of the table be focused.
+     */
+    public void find()
+    {
+        propertyChangeSupport.firePropertyChange(PROP_FIND, false, true);
+    }
+
     /**
      * Set the value of dataIsDirty
      *
@@ -173,11 +300,51 @@ public class App extends Application
         propertyChangeSupport.firePropertyChange(PROP_FILENAME, oldFileName, fileName);
     }
 
+    /**
+     * Get how much of the file is to be loaded.
+     *
+     * @return the options
+     */
+    public LoadOptions getLoadOptions()
+    {
+        return loadOptions;
+    }
+
+    /**
+     * Set how much of the next file opened is to be loaded.
+     *
+     * @param loadOptions new value of loadOptions
+     */
+    public void setLoadOptions(LoadOptions loadOptions)
+    {
+        this.loadOptions = loadOptions;
+    }
+
+    /**
+     * Get the registry of the counters, timers and gauges.
+     *
+     * @return the registry
+     */
+    public MetricsRegistry getMetrics()
+    {
+        return metrics;
+    }
+
     public Stage getPrimaryStage()
     {
         return primaryStage;
     }
 
+    /**
+     * Get the views and dialogs, loaded ahead of time.
+     *
+     * @return the cache
+     */
+    public ViewCache getViewCache()
+    {
+        return viewCache;
+    }
+
     /**
      * Set the statusText
      *
@@ -250,6 +417,39 @@ public class App extends Application
         return dataIsDirty;
     }
 
+    /**
+     * Get the value of loading
+     *
+     * @return the value of loading
+     */
+    public boolean isLoading()
+    {
+        return loading;
+    }
+
+    /**
+     * Set the value of loading
+     *
+     * @param loading new value of loading
+     */
+    public void setLoading(boolean loading)
+    {
+        boolean oldLoading = this.loading;
+        this.loading = loading;
+        propertyChangeSupport.firePropertyChange(PROP_LOADING, oldLoading, loading);
+    }
+
+    /**
+     * Request that the last edit undone be redone.
+     */
+    public void redo()
+    {
+        if (canRedo)
+        {
+            propertyChangeSupport.firePropertyChange(PROP_REDO, false, true);
+        }
+    }
+
     /**
      * Remove PropertyChangeListener.
      *
@@ -260,6 +460,14 @@ public class App extends Application
         propertyChangeSupport.removePropertyChangeListener(listener);
     }
 
+    /**
+     * Request that the find and replace dialog be shown.
+     */
+    public void replace()
+    {
+        propertyChangeSupport.firePropertyChange(PROP_REPLACE, false, true);
+    }
+
     /**
      * Save the data to this file.
      *
@@ -286,12 +494,16 @@ public class App extends Application
             this.activeView = view;
             propertyChangeSupport.firePropertyChange(PROP_ACTIVEVIEW, oldActiveView, activeView);
 
+            final ViewSwitchEvent event = new ViewSwitchEvent();
+            event.begin();
+            event.from = oldActiveView != null ? oldActiveView.toString() : null;
+            event.to = view.toString();
+
             try
             {
                 // Load new view.
-                FXMLLoader loader = new FXMLLoader();
-                loader.setLocation(App.class.getResource("view/" + view + ".fxml"));
-                AnchorPane newView = (AnchorPane) loader.load();
+                FXMLLoader loader = viewCache.take("view/" + view + ".fxml");
+                AnchorPane newView = loader.getRoot();
 
                 ViewController controller = loader.getController();
                 controller.setApp(this);
@@ -303,6 +515,8 @@ public class App extends Application
             {
                 Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
             }
+
+            event.commit();
         }
     }
 
@@ -312,7 +526,28 @@ public class App extends Application
         this.primaryStage = primaryStage;
         this.primaryStage.setTitle(PRODUCT_TITLE);
 
+        // The blank view and the About dialog have nothing to reset, so they
+        // are loaded just once.
+        viewCache.preload("view/Blank.fxml", true);
+        viewCache.preload("view/CSVTable.fxml", false);
+        viewCache.preload("view/EditForm.fxml", false);
+        viewCache.preload("view/Preview.fxml", false);
+        viewCache.preload("view/Replace.fxml", false);
+        viewCache.preload("view/About.fxml", true);
+
+        stallMonitor.start();
         initRootLayout();
     }
 
+    /**
+     * Request that the last edit be undone.
+     */
+    public void undo()
+    {
+        if (canUndo)
+        {
+            propertyChangeSupport.firePropertyChange(PROP_UNDO, false, true);
+        }
+    }
+
 }
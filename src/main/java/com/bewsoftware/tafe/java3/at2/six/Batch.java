@@ -0,0 +1,261 @@
+/*
+ *  File Name:    Batch.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 28 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.BatchJob;
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnStats;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The command line batch mode, which runs a CSV file through a
+ * {@link BatchJob} without starting JavaFX.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class Batch
+{
+    /**
+     * The first argument that selects batch mode.
+     */
+    public static final String OPTION = "--batch";
+
+    private static final int EXIT_ERROR = 1;
+
+    private static final int EXIT_OK = 0;
+
+    private static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = """
+            Usage: --batch [options] <file.csv>
+
+            Options:
+              --columns <a,b,...>   write only these columns, in this order
+              --where <filter>      write only the rows that pass the filter, such
+                                    as "price>=10", "name~^A" or "state!=WA".
+                                    The operators are =, !=, <, <=, >, >= and ~
+                                    (regular expression). May be repeated.
+              --sort <column>[:desc]
+                                    sort the rows by a column written
+              --output <file>       write the rows to a file, or "-" for the
+                                    standard output (the default, unless
+                                    --count or --stats is given)
+              --count               print the number of rows written
+              --stats               print statistics of each column written
+            """;
+
+    /**
+     * Run a batch job.
+     *
+     * @param args the command line arguments, after {@link #OPTION}
+     *
+     * @return the exit status
+     */
+    public static int run(final String[] args)
+    {
+        BatchJob job = null;
+        Path output = null;
+        boolean count = false;
+        boolean stats = false;
+        boolean toStdout = false;
+
+        try
+        {
+            List<String> columns = null;
+            List<String> filters = new ArrayList<>();
+            String sort = null;
+            Path input = null;
+
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--columns" ->
+                        columns = Arrays.asList(value(args, ++i).split(",", -1));
+                    case "--count" ->
+                        count = true;
+                    case "--output" ->
+                    {
+                        String name = value(args, ++i);
+                        toStdout = name.equals("-");
+                        output = toStdout ? null : Path.of(name);
+                    }
+                    case "--sort" ->
+                        sort = value(args, ++i);
+                    case "--stats" ->
+                        stats = true;
+                    case "--where" ->
+                        filters.add(value(args, ++i));
+                    default ->
+                    {
+                        if (args[i].startsWith("--") || input != null)
+                        {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+
+                        input = Path.of(args[i]);
+                    }
+                }
+            }
+
+            if (input == null)
+            {
+                throw new IllegalArgumentException("No CSV file given");
+            }
+
+            if (output == null && !count && !stats)
+            {
+                toStdout = true;
+            }
+
+            if (output != null && Files.exists(output) && Files.isSameFile(input, output))
+            {
+                throw new IllegalArgumentException("The output must not be the CSV file itself");
+            }
+
+            job = new BatchJob(input);
+            job.setColumns(columns);
+            filters.forEach(job::addFilter);
+            job.setStatsWanted(stats);
+
+            if (sort != null)
+            {
+                boolean descending = sort.endsWith(":desc");
+                job.setSort(descending ? sort.substring(0, sort.length() - 5) : sort, descending);
+            }
+        } catch (IllegalArgumentException | IOException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try
+        {
+            if (toStdout)
+            {
+                try (FileOutputStream stdout = new FileOutputStream(FileDescriptor.out))
+                {
+                    job.run(stdout.getChannel());
+                }
+            } else if (output != null)
+            {
+                try (FileChannel target = FileChannel.open(output, CREATE, WRITE, TRUNCATE_EXISTING))
+                {
+                    job.run(target);
+                }
+            } else
+            {
+                job.run(null);
+            }
+        } catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            return EXIT_USAGE;
+        } catch (IOException | RuntimeException ex)
+        {
+            System.err.println("Batch job failed: " + ex);
+            return EXIT_ERROR;
+        }
+
+        // Keep the report apart from the rows.
+        PrintStream report = toStdout ? System.err : System.out;
+
+        if (count)
+        {
+            report.printf("Rows: %,d%n", job.getRowCount());
+        }
+
+        if (stats)
+        {
+            printStats(report, job);
+        }
+
+        return EXIT_OK;
+    }
+
+    private static void printStats(final PrintStream report, final BatchJob job)
+    {
+        List<String> header = job.getHeader();
+        List<ColumnStats> columns = job.getStats();
+
+        report.printf("%-24s %12s %10s %12s %14s %14s %14s%n",
+                "Column", "Non-empty", "Max length", "Numbers", "Min", "Max", "Mean");
+
+        for (int i = 0; i < header.size(); i++)
+        {
+            ColumnStats column = columns.get(i);
+
+            if (column.getNumberCount() > 0)
+            {
+                report.printf("%-24s %,12d %,10d %,12d %14.6g %14.6g %14.6g%n",
+                        header.get(i), column.getNonEmpty(), column.getMaxLength(),
+                        column.getNumberCount(), column.getMin(), column.getMax(),
+                        column.getMean());
+            } else
+            {
+                report.printf("%-24s %,12d %,10d %,12d%n",
+                        header.get(i), column.getNonEmpty(), column.getMaxLength(), 0);
+            }
+        }
+    }
+
+    /**
+     * Get the value of an option.
+     */
+    private static String value(final String[] args, final int index)
+    {
+        if (index >= args.length)
+        {
+            throw new IllegalArgumentException("Missing value for: " + args[index - 1]);
+        }
+
+        return args[index];
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private Batch()
+    {
+    }
+}
@@ -26,6 +26,8 @@
 
 package com.bewsoftware.tafe.java3.at2.six;
 
+import java.util.Arrays;
+
 /**
  * Main class description.
  *
@@ -40,6 +42,11 @@ public class Main {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals(Batch.OPTION)) {
+            // Headless: JavaFX is never started.
+            System.exit(Batch.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         App.main(args);
     }
 
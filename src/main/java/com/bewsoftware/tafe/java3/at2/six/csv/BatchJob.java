@@ -0,0 +1,749 @@
+/*
+ *  File Name:    BatchJob.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 28 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import com.bewsoftware.tafe.java3.at2.six.jfr.FilterEvent;
+import com.opencsv.CSVWriter;
+import com.opencsv.CSVWriterBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Runs a CSV file through the same parser and writer as the application,
+ * without a user interface: keeping the rows that pass some
+ * {@link RowFilter filters}, keeping only some of the columns, and
+ * sorting the rows, while counting them and gathering
+ * {@link ColumnStats statistics} of each column.
+ * <p>
+ * Unless they are sorted, the rows are streamed: each chunk of the file
+ * is filtered and encoded on its own parsing thread, and written out as
+ * soon as the chunks before it have been. Only a few chunks for each
+ * thread are parsed ahead of the one being written, so a slow target does
+ * not leave the output of the rest of the file held in memory. When all of
+ * the columns are kept, the rows are copied as bytes, straight from the
+ * file. Sorting loads the rows that pass into a {@link ColumnarTable}, so
+ * that they sort by type, and then writes them with the
+ * {@link TableWriter}.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class BatchJob
+{
+    /**
+     * Most chunks parsed ahead of the one being written, for each parsing
+     * thread.
+     */
+    private static final int CHUNKS_AHEAD = 2;
+
+    /**
+     * Wait for a chunk to be parsed.
+     */
+    private static ChunkHandler await(final CompletableFuture<ChunkHandler> future)
+            throws IOException
+    {
+        try
+        {
+            return future.join();
+        } catch (CompletionException ex)
+        {
+            if (ex.getCause() instanceof UncheckedIOException io)
+            {
+                throw io.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Write all of a buffer.
+     */
+    private static void writeFully(final ByteBuffer bytes, final WritableByteChannel target)
+            throws IOException
+    {
+        while (bytes.hasRemaining())
+        {
+            target.write(bytes);
+        }
+    }
+
+    /**
+     * Headings of the columns to keep, or {@code null} to keep them all.
+     */
+    private List<String> columns = null;
+
+    private final Path csvPath;
+
+    /**
+     * Number of columns in the file.
+     */
+    private int fileColumnCount;
+
+    private final List<String> filters;
+
+    /**
+     * Headings of the columns written.
+     */
+    private String[] header;
+
+    /**
+     * Index in the file of each column written.
+     */
+    private int[] projection;
+
+    /**
+     * The filters, once the file's headings are known.
+     */
+    private RowFilter[] rowFilters;
+
+    private long rowCount;
+
+    /**
+     * Number of rows read, whether they passed or not.
+     */
+    private long rowsRead;
+
+    private boolean sortDescending;
+
+    /**
+     * Heading of the column to sort by, or {@code null} to leave the rows
+     * in file order.
+     */
+    private String sortColumn = null;
+
+    private ColumnStats[] stats;
+
+    /**
+     * Statistics of the values are to be gathered.
+     */
+    private boolean statsWanted;
+
+    /**
+     * written.get(i) completes once chunk 'i' has been written out, or
+     * loaded to be sorted.
+     */
+    private List<CompletableFuture<Void>> written;
+
+    /**
+     * Instantiate a new BatchJob.
+     *
+     * @param csvPath Path to the CSV file.
+     */
+    public BatchJob(final Path csvPath)
+    {
+        this.csvPath = csvPath;
+        this.filters = new ArrayList<>();
+    }
+
+    /**
+     * Add a filter, such as "price&gt;=10". Rows are kept if they pass all
+     * of the filters.
+     *
+     * @param expression of the filter, as for
+     *                   {@link RowFilter#parse(String, List)}
+     */
+    public void addFilter(final String expression)
+    {
+        filters.add(expression);
+    }
+
+    /**
+     * Get the headings of the columns written, once the job has run.
+     *
+     * @return an unmodifiable list of the headings
+     */
+    public List<String> getHeader()
+    {
+        return List.of(header);
+    }
+
+    /**
+     * Get the number of rows that passed the filters, once the job has
+     * run.
+     *
+     * @return the count
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the statistics of each column written, once the job has run.
+     *
+     * @return an unmodifiable list of the statistics, which is empty if
+     *         they were not wanted
+     */
+    public List<ColumnStats> getStats()
+    {
+        return statsWanted ? List.of(stats) : List.of();
+    }
+
+    /**
+     * Run the job.
+     *
+     * @param target to write the rows that pass, with the headings, or
+     *               {@code null} to just count them. It is left open.
+     *
+     * @throws IOException              if any.
+     * @throws IllegalArgumentException if a filter is not valid, or a
+     *                                  column is not in the file
+     */
+    public void run(final WritableByteChannel target) throws IOException
+    {
+        final FilterEvent event = new FilterEvent();
+        event.begin();
+        event.path = csvPath.toString();
+
+        try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+        {
+            prepare(parser.readHeader());
+            event.bytes = parser.getSize();
+            event.filters = rowFilters.length;
+
+            final int ahead = CHUNKS_AHEAD * parser.getParallelism();
+            written = new ArrayList<>();
+
+            List<CompletableFuture<ChunkHandler>> chunks = parser.parseAsync(
+                    i -> new ChunkHandler(i == 0, target == null ? Mode.COUNT
+                            : sortColumn != null ? Mode.LOAD
+                            : isProjected() ? Mode.ENCODE : Mode.COPY),
+                    i -> written(i - ahead));
+
+            try
+            {
+                if (sortColumn != null)
+                {
+                    sortRows(chunks, target);
+                } else
+                {
+                    streamRows(chunks, target);
+                }
+            } finally
+            {
+                // Stop any chunks still being parsed.
+                parser.cancel();
+            }
+        }
+
+        event.rowsKept = rowCount;
+        event.rowsRead = rowsRead;
+        event.commit();
+    }
+
+    /**
+     * Set the columns to keep, in the order they are to be written.
+     *
+     * @param columns headings of the columns, or {@code null} to keep them
+     *                all
+     */
+    public void setColumns(final List<String> columns)
+    {
+        this.columns = columns != null ? List.copyOf(columns) : null;
+    }
+
+    /**
+     * Set the column to sort the rows by.
+     *
+     * @param column     heading of one of the columns written, or
+     *                   {@code null} to leave the rows in file order
+     * @param descending sort the largest values first
+     */
+    public void setSort(final String column, final boolean descending)
+    {
+        this.sortColumn = column;
+        this.sortDescending = descending;
+    }
+
+    /**
+     * Set whether statistics of the values are to be gathered. This means
+     * checking whether each value is a number, which takes time.
+     *
+     * @param statsWanted new value of statsWanted
+     */
+    public void setStatsWanted(final boolean statsWanted)
+    {
+        this.statsWanted = statsWanted;
+    }
+
+    /**
+     * Are only some of the columns, or the columns in a different order,
+     * to be written?
+     */
+    private boolean isProjected()
+    {
+        for (int i = 0; i < projection.length; i++)
+        {
+            if (projection[i] != i)
+            {
+                return true;
+            }
+        }
+
+        return projection.length != fileColumnCount;
+    }
+
+    /**
+     * Work out the columns and filters, from the file's headings.
+     */
+    private void prepare(final String[] fileHeader)
+    {
+        List<String> headings = List.of(fileHeader);
+        fileColumnCount = fileHeader.length;
+
+        if (columns == null)
+        {
+            header = fileHeader;
+            projection = new int[fileHeader.length];
+            Arrays.setAll(projection, i -> i);
+        } else
+        {
+            header = columns.toArray(new String[columns.size()]);
+            projection = new int[header.length];
+
+            for (int i = 0; i < header.length; i++)
+            {
+                projection[i] = headings.indexOf(header[i]);
+
+                if (projection[i] < 0)
+                {
+                    throw new IllegalArgumentException("Unknown column: " + header[i]);
+                }
+            }
+        }
+
+        rowFilters = new RowFilter[filters.size()];
+
+        for (int i = 0; i < rowFilters.length; i++)
+        {
+            rowFilters[i] = RowFilter.parse(filters.get(i), headings);
+        }
+
+        if (sortColumn != null && !Arrays.asList(header).contains(sortColumn))
+        {
+            throw new IllegalArgumentException("Unknown column to sort by: " + sortColumn);
+        }
+
+        rowCount = 0;
+        rowsRead = 0;
+        stats = new ColumnStats[header.length];
+        Arrays.setAll(stats, i -> new ColumnStats());
+    }
+
+    /**
+     * Load the rows that pass into a table, sort them, and write them out.
+     */
+    private void sortRows(final List<CompletableFuture<ChunkHandler>> chunks,
+            final WritableByteChannel target) throws IOException
+    {
+        ColumnarTable table = new ColumnarTable(header);
+
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            ChunkHandler handler = await(chunks.get(i));
+            handler.addTo(this);
+            table.prepareBlock(handler.block);
+            table.addBlock(handler.block);
+            written(i).complete(null);
+        }
+
+        int[] order = new int[table.getRowCount()];
+        Arrays.setAll(order, i -> i);
+
+        RowComparator comparator = table.comparator(Arrays.asList(header).indexOf(sortColumn));
+        ParallelSort.sort(order, sortDescending ? comparator.reversed() : comparator, () -> false);
+
+        // The rows can only be copied from the file if they are whole.
+        TableWriter.write(table, order, isProjected() ? null : csvPath, target, count ->
+        {
+            // NoOp
+        });
+    }
+
+    /**
+     * Write out the rows that pass, chunk by chunk, in file order.
+     */
+    private void streamRows(final List<CompletableFuture<ChunkHandler>> chunks,
+            final WritableByteChannel target) throws IOException
+    {
+        try (FileChannel source = FileChannel.open(csvPath, READ))
+        {
+            if (target != null)
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+                try (CSVWriter csvWriter = (CSVWriter) new CSVWriterBuilder(
+                        new OutputStreamWriter(bytes, UTF_8)).build())
+                {
+                    csvWriter.writeNext(header, false);
+                }
+
+                writeFully(ByteBuffer.wrap(bytes.toByteArray()), target);
+            }
+
+            for (int c = 0; c < chunks.size(); c++)
+            {
+                ChunkHandler handler = await(chunks.get(c));
+                handler.addTo(this);
+
+                if (handler.encoded != null)
+                {
+                    // Written straight from the stream's buffer, without a copy.
+                    handler.encoded.writeTo(Channels.newOutputStream(target));
+                }
+
+                for (int i = 0; i < handler.runCount; i += 2)
+                {
+                    TableWriter.transfer(source, handler.runs[i], handler.runs[i + 1], target);
+                }
+
+                // Let go of the chunk, and its rows, now that it is written.
+                chunks.set(c, null);
+                written(c).complete(null);
+            }
+        }
+    }
+
+    /**
+     * Get the future that completes once a chunk has been written out.
+     *
+     * @param index of the chunk
+     *
+     * @return the future, which has completed if the index is negative
+     */
+    private CompletableFuture<Void> written(final int index)
+    {
+        if (index < 0)
+        {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        while (written.size() <= index)
+        {
+            written.add(new CompletableFuture<>());
+        }
+
+        return written.get(index);
+    }
+
+    /**
+     * What is done with the rows that pass.
+     */
+    private enum Mode
+    {
+        /**
+         * Just counted.
+         */
+        COUNT,
+        /**
+         * Copied from the file, as bytes.
+         */
+        COPY,
+        /**
+         * Encoded, with only the columns kept.
+         */
+        ENCODE,
+        /**
+         * Loaded into a block, to be sorted.
+         */
+        LOAD
+    }
+
+    /**
+     * Filters the records of one chunk of the file.
+     */
+    private class ChunkHandler implements RecordHandler
+    {
+        /**
+         * The rows loaded, in {@link Mode#LOAD} mode.
+         */
+        private final RowBlock block;
+
+        /**
+         * The fields of the current record.
+         */
+        private byte[] bytes;
+
+        /**
+         * The rows encoded, in {@link Mode#ENCODE} mode.
+         */
+        private final ByteArrayOutputStream encoded;
+
+        private final ColumnStats[] chunkStats;
+
+        private final CSVWriter csvWriter;
+
+        private int fieldCount;
+
+        /**
+         * fieldStarts[i] is where field 'i' of the current record starts in
+         * the bytes, and it runs up to the start of the next.
+         */
+        private int[] fieldStarts;
+
+        /**
+         * The next record is the column headings, and is skipped.
+         */
+        private boolean inHeader;
+
+        private final Mode mode;
+
+        /**
+         * Number of records read, not counting the headings.
+         */
+        private long records;
+
+        private long recordStart;
+
+        private long rows;
+
+        /**
+         * Number of offsets in the runs.
+         */
+        private int runCount;
+
+        /**
+         * The start and end offsets of each run of rows to copy, in
+         * {@link Mode#COPY} mode.
+         */
+        private long[] runs;
+
+        /**
+         * Instantiate a new ChunkHandler.
+         *
+         * @param inHeader the chunk starts with the column headings
+         * @param mode     what to do with the rows that pass
+         */
+        ChunkHandler(final boolean inHeader, final Mode mode)
+        {
+            this.inHeader = inHeader;
+            this.mode = mode;
+            this.bytes = new byte[1024];
+            this.fieldStarts = new int[header.length + 2];
+            this.chunkStats = new ColumnStats[header.length];
+            Arrays.setAll(chunkStats, i -> new ColumnStats());
+            this.block = mode == Mode.LOAD ? new RowBlock(false) : null;
+            this.encoded = mode == Mode.ENCODE ? new ByteArrayOutputStream() : null;
+            this.csvWriter = encoded != null ? (CSVWriter) new CSVWriterBuilder(
+                    new OutputStreamWriter(encoded, UTF_8)).build() : null;
+            this.runs = mode == Mode.COPY ? new long[64] : null;
+        }
+
+        @Override
+        public void endChunk()
+        {
+            if (block != null)
+            {
+                block.endChunk();
+            } else if (csvWriter != null)
+            {
+                try
+                {
+                    csvWriter.flush();
+                } catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+
+        @Override
+        public void endRecord(long offset)
+        {
+            if (inHeader)
+            {
+                inHeader = false;
+                return;
+            }
+
+            records++;
+
+            for (RowFilter filter : rowFilters)
+            {
+                if (!filter.test(getValue(filter.getColumn())))
+                {
+                    return;
+                }
+            }
+
+            rows++;
+
+            if (statsWanted)
+            {
+                gatherStats();
+            }
+
+            switch (mode)
+            {
+                case COPY ->
+                {
+                    if (runCount > 0 && runs[runCount - 1] == recordStart)
+                    {
+                        runs[runCount - 1] = offset;
+                    } else
+                    {
+                        if (runCount == runs.length)
+                        {
+                            runs = Arrays.copyOf(runs, runCount * 2);
+                        }
+
+                        runs[runCount++] = recordStart;
+                        runs[runCount++] = offset;
+                    }
+                }
+
+                case ENCODE ->
+                {
+                    String[] values = new String[projection.length];
+                    Arrays.setAll(values, i -> getValue(projection[i]));
+                    csvWriter.writeNext(values, false);
+                }
+
+                case LOAD ->
+                {
+                    block.startRecord(recordStart);
+
+                    for (int column : projection)
+                    {
+                        if (column < fieldCount)
+                        {
+                            block.field(bytes, fieldStarts[column],
+                                    fieldStarts[column + 1] - fieldStarts[column]);
+                        } else
+                        {
+                            block.field(bytes, 0, 0);
+                        }
+                    }
+
+                    block.endRecord(offset);
+                }
+
+                default ->
+                {
+                    // Just counted.
+                }
+            }
+        }
+
+        @Override
+        public void field(byte[] bytes, int offset, int length)
+        {
+            int start = fieldStarts[fieldCount];
+
+            if (start + length > this.bytes.length)
+            {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(start + length, this.bytes.length * 2));
+            }
+
+            System.arraycopy(bytes, offset, this.bytes, start, length);
+
+            if (fieldCount + 2 > fieldStarts.length)
+            {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldStarts.length * 2);
+            }
+
+            fieldStarts[++fieldCount] = start + length;
+        }
+
+        @Override
+        public void startRecord(long offset)
+        {
+            recordStart = offset;
+            fieldCount = 0;
+        }
+
+        /**
+         * Add this chunk's count and statistics to the job's.
+         */
+        void addTo(final BatchJob job)
+        {
+            job.rowCount += rows;
+            job.rowsRead += records;
+
+            for (int i = 0; i < chunkStats.length; i++)
+            {
+                job.stats[i].merge(chunkStats[i]);
+            }
+        }
+
+        private void gatherStats()
+        {
+            for (int i = 0; i < projection.length; i++)
+            {
+                int column = projection[i];
+
+                if (column < fieldCount)
+                {
+                    int length = fieldStarts[column + 1] - fieldStarts[column];
+                    chunkStats[i].add(length);
+
+                    if (length > 0)
+                    {
+                        String value = getValue(column);
+
+                        if (DoubleColumn.isDecimal(value))
+                        {
+                            chunkStats[i].addNumber(Double.parseDouble(value));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get a value of the current record, or "" if it is too short.
+         */
+        private String getValue(final int column)
+        {
+            if (column >= fieldCount)
+            {
+                return "";
+            }
+
+            return new String(bytes, fieldStarts[column],
+                    fieldStarts[column + 1] - fieldStarts[column], UTF_8);
+        }
+    }
+}
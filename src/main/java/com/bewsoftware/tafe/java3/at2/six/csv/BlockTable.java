@@ -0,0 +1,61 @@
+/*
+ *  File Name:    BlockTable.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * A {@link CSVTable} that is built up, in file order, from the blocks
+ * produced by the {@link MappedCSVParser}.
+ *
+ * @param <B> type of block
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public interface BlockTable<B extends ParsedBlock> extends CSVTable
+{
+    /**
+     * Add a block of rows to the end of the table.
+     * <p>
+     * The block must first have been through {@link #prepareBlock}.
+     *
+     * @param block to add
+     */
+    public void addBlock(B block);
+
+    /**
+     * Get a block ready to be added to the table.
+     * <p>
+     * This must be called for each block in turn, in file order, but need
+     * not be called on the thread that reads the table. It does the work
+     * that can be done before the rows become visible.
+     *
+     * @param block to prepare
+     */
+    public void prepareBlock(B block);
+}
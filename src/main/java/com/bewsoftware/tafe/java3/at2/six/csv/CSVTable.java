@@ -0,0 +1,215 @@
+/*
+ *  File Name:    CSVTable.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * The rows of a CSV file, addressed by their index in the file.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public interface CSVTable extends Closeable
+{
+    /**
+     * Add a row to the end of the table.
+     *
+     * @param values of the row, one for each column
+     *
+     * @return index of the new row
+     */
+    public int addRow(String[] values);
+
+    /**
+     * Release any resources held by the table.
+     * <p>
+     * The default does nothing.
+     */
+    @Override
+    public default void close()
+    {
+        // NoOp
+    }
+
+    /**
+     * Get a comparator that orders rows by the values in a column.
+     * <p>
+     * The default compares the values as text.
+     *
+     * @param column index
+     *
+     * @return the comparator
+     */
+    public default RowComparator comparator(final int column)
+    {
+        return (rowA, rowB) -> get(rowA, column).compareTo(get(rowB, column));
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param row    index
+     * @param column index
+     *
+     * @return the value
+     */
+    public String get(int row, int column);
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the count
+     */
+    public int getColumnCount();
+
+    /**
+     * Get the type of the values in a column.
+     * <p>
+     * The default is {@link ColumnType#TEXT}.
+     *
+     * @param column index
+     *
+     * @return the type
+     */
+    public default ColumnType getColumnType(final int column)
+    {
+        return ColumnType.TEXT;
+    }
+
+    /**
+     * Get the number of values replaced by {@link #set(int, int, String)}
+     * since the table was created, so that a copy of a value can be told
+     * to be out of date.
+     *
+     * @return the count
+     */
+    public long getEditCount();
+
+    /**
+     * Get the column headings.
+     *
+     * @return an unmodifiable list of the headings
+     */
+    public List<String> getHeader();
+
+    /**
+     * Get all of the values in a row.
+     *
+     * @param row index
+     *
+     * @return a new array of the values
+     */
+    public String[] getRow(int row);
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the count
+     */
+    public int getRowCount();
+
+    /**
+     * Get the file offset after the end of a row, for copying the row from
+     * the file it was read from.
+     * <p>
+     * The default is -1.
+     *
+     * @param row index
+     *
+     * @return the offset, or -1 if the row has been changed, or was not
+     *         read from the file
+     */
+    public default long getRowEnd(final int row)
+    {
+        return -1;
+    }
+
+    /**
+     * Get the file offset of the start of a row, for copying the row from
+     * the file it was read from.
+     * <p>
+     * The default is -1.
+     *
+     * @param row index
+     *
+     * @return the offset, or -1 if the row has been changed, or was not
+     *         read from the file
+     */
+    public default long getRowStart(final int row)
+    {
+        return -1;
+    }
+
+    /**
+     * Get the file offsets of the rows of the file left out of the table
+     * just after a row, for copying them from the file it was read from.
+     * <p>
+     * The default is {@code null}.
+     *
+     * @param row index, or -1 for the rows left out before the first row
+     *
+     * @return the start and end offsets of the rows left out, or
+     *         {@code null} if there are none
+     */
+    public default long[] getSkippedRange(final int row)
+    {
+        return null;
+    }
+
+    /**
+     * Get the number of rows of the file left out of the table, because
+     * they did not pass the filters it was loaded with.
+     * <p>
+     * The default is zero.
+     *
+     * @return the count
+     */
+    public default int getSkippedRowCount()
+    {
+        return 0;
+    }
+
+    /**
+     * Estimate the heap used by the table.
+     *
+     * @return size in bytes
+     */
+    public long memoryUsage();
+
+    /**
+     * Replace a value.
+     *
+     * @param row    index
+     * @param column index
+     * @param value  new value
+     */
+    public void set(int row, int column, String value);
+}
@@ -0,0 +1,170 @@
+/*
+ *  File Name:    Column.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 20 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * The values of one column within a {@link RowBlock}, held in compact
+ * arrays rather than as individual objects.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public abstract class Column
+{
+    /**
+     * Add a value to the end of the column.
+     *
+     * @param bytes  buffer holding the UTF-8 encoded value
+     * @param offset start of the value in the buffer
+     * @param length number of bytes in the value
+     */
+    public abstract void append(byte[] bytes, int offset, int length);
+
+    /**
+     * Add a value to the end of the column.
+     *
+     * @param value to add
+     */
+    public abstract void append(String value);
+
+    /**
+     * Compare a value with a value of another column, in the order of
+     * {@link String#compareTo(String)}.
+     *
+     * @param index      of the value
+     * @param other      column holding the other value
+     * @param otherIndex of the other value
+     *
+     * @return less than, equal to, or greater than zero, as the value is
+     *         less than, equal to, or greater than the other
+     */
+    public int compare(int index, Column other, int otherIndex)
+    {
+        return get(index).compareTo(other.get(otherIndex));
+    }
+
+    /**
+     * Count the number of times each distinct value occurs.
+     *
+     * @param counts to add the counts to, keyed by value
+     */
+    public void countValues(Map<String, Integer> counts)
+    {
+        for (int i = 0; i < size(); i++)
+        {
+            counts.merge(get(i), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Find the values equal to a given value.
+     *
+     * @param value  to look for
+     * @param rows   to set the bit of each matching index in, plus the offset
+     * @param offset to add to each index
+     */
+    public void findEqual(String value, BitSet rows, int offset)
+    {
+        for (int i = 0; i < size(); i++)
+        {
+            if (value.equals(get(i)))
+            {
+                rows.set(offset + i);
+            }
+        }
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param index of the value
+     *
+     * @return the value
+     */
+    public abstract String get(int index);
+
+    /**
+     * Get the type of the values.
+     *
+     * @return the type, or {@code null} if every value is empty
+     */
+    public ColumnType getType()
+    {
+        return ColumnType.TEXT;
+    }
+
+    /**
+     * Is a value null, that is, empty or not of the column's type?
+     *
+     * @param index of the value
+     *
+     * @return result
+     */
+    public boolean isNull(int index)
+    {
+        return get(index).isEmpty();
+    }
+
+    /**
+     * Estimate the heap used by this column.
+     *
+     * @return size in bytes
+     */
+    public abstract long memoryUsage();
+
+    /**
+     * Create a new, empty, column of the same kind, to add more values to.
+     *
+     * @return the new column
+     */
+    public abstract Column newEmpty();
+
+    /**
+     * Replace a value.
+     *
+     * @param index of the value
+     * @param value new value
+     */
+    public abstract void set(int index, String value);
+
+    /**
+     * Get the number of values in the column.
+     *
+     * @return the count
+     */
+    public abstract int size();
+
+    /**
+     * Release any spare capacity, once no more values will be appended.
+     */
+    public abstract void trim();
+}
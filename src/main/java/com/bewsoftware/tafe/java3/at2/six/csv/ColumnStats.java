@@ -0,0 +1,177 @@
+/*
+ *  File Name:    ColumnStats.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * Statistics of the values of one column, gathered while scanning a file.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class ColumnStats
+{
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private int maxLength;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private long nonEmpty;
+
+    /**
+     * Number of values that are numbers.
+     */
+    private long numbers;
+
+    private double sum;
+
+    /**
+     * Instantiate a new, empty, ColumnStats.
+     */
+    public ColumnStats()
+    {
+        // NoOp
+    }
+
+    /**
+     * Instantiate a new ColumnStats.
+     *
+     * @param nonEmpty  number of values that are not empty
+     * @param maxLength length of the longest value, in bytes
+     */
+    public ColumnStats(final long nonEmpty, final int maxLength)
+    {
+        this.nonEmpty = nonEmpty;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param length of the value, in bytes
+     */
+    public void add(final int length)
+    {
+        if (length > 0)
+        {
+            nonEmpty++;
+            maxLength = Math.max(maxLength, length);
+        }
+    }
+
+    /**
+     * Add a value that is a number, as well as adding its length.
+     *
+     * @param value of the number
+     */
+    public void addNumber(final double value)
+    {
+        numbers++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Get the largest of the numbers.
+     *
+     * @return the value, or {@link Double#NEGATIVE_INFINITY} if there are
+     *         none
+     */
+    public double getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Get the length of the longest value.
+     *
+     * @return the length, in UTF-8 bytes
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Get the mean of the numbers.
+     *
+     * @return the value, or {@link Double#NaN} if there are none
+     */
+    public double getMean()
+    {
+        return numbers > 0 ? sum / numbers : Double.NaN;
+    }
+
+    /**
+     * Get the smallest of the numbers.
+     *
+     * @return the value, or {@link Double#POSITIVE_INFINITY} if there are
+     *         none
+     */
+    public double getMin()
+    {
+        return min;
+    }
+
+    /**
+     * Get the number of values that are not empty.
+     *
+     * @return the count
+     */
+    public long getNonEmpty()
+    {
+        return nonEmpty;
+    }
+
+    /**
+     * Get the number of values that are numbers.
+     *
+     * @return the count
+     */
+    public long getNumberCount()
+    {
+        return numbers;
+    }
+
+    /**
+     * Add in the statistics of another part of the same column.
+     *
+     * @param other statistics to add
+     */
+    public void merge(final ColumnStats other)
+    {
+        nonEmpty += other.nonEmpty;
+        maxLength = Math.max(maxLength, other.maxLength);
+        numbers += other.numbers;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+}
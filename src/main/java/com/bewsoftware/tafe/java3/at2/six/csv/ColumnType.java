@@ -0,0 +1,94 @@
+/*
+ *  File Name:    ColumnType.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * The type of the values in a column, as inferred when it was loaded.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public enum ColumnType
+{
+    BOOLEAN("Boolean"),
+    DATE("Date"),
+    DOUBLE("Decimal"),
+    LONG("Integer"),
+    TEXT("Text"),
+    TIMESTAMP("Timestamp");
+
+    /**
+     * Get the type that two parts of the same column can both be compared
+     * as.
+     *
+     * @param a type of one part, or {@code null} if it has no values
+     * @param b type of the other part, or {@code null} if it has no values
+     *
+     * @return the common type, or {@code null} if neither part has values
+     */
+    public static ColumnType join(final ColumnType a, final ColumnType b)
+    {
+        if (a == null || a == b)
+        {
+            return b;
+        } else if (b == null)
+        {
+            return a;
+        } else if (a.isNumeric() && b.isNumeric())
+        {
+            return DOUBLE;
+        } else
+        {
+            return TEXT;
+        }
+    }
+
+    public final String label;
+
+    private ColumnType(String label)
+    {
+        this.label = label;
+    }
+
+    /**
+     * Are the values numbers?
+     *
+     * @return result
+     */
+    public boolean isNumeric()
+    {
+        return this == LONG || this == DOUBLE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.label;
+    }
+}
@@ -0,0 +1,741 @@
+/*
+ *  File Name:    ColumnarTable.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 20 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The contents of a CSV file, held column by column.
+ * <p>
+ * The rows are kept in a list of {@link RowBlock}s, in file order. Each
+ * block holds one compact array per column, so there is no object per
+ * row or per cell. Rows are addressed by their index across all of the
+ * blocks.
+ * <p>
+ * Columns with only a handful of distinct values are dictionary encoded,
+ * sharing one {@link Dictionary} per column across all blocks. A column
+ * that turns out to have too many distinct values falls back to plain
+ * text for the rest of the load.
+ * <p>
+ * Columns of numbers, dates, timestamps or booleans are stored as
+ * {@link TypedColumn}s, and are sorted by their values rather than their
+ * text. As each block's type is worked out separately, the type of a
+ * column is the one that all of its blocks can be compared as.
+ * <p>
+ * Once loaded, rows are only changed, or added, while holding the table's
+ * lock, so that a background task holding it may read them as they are
+ * being edited.
+ * <p>
+ * Blocks that kept only the rows passing a {@link RowSelector}'s filters
+ * note where the rows left out were in the file. The table keeps those
+ * runs, each with the row it follows, so that they can be copied back when
+ * the table is saved.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class ColumnarTable implements BlockTable<RowBlock>
+{
+    /**
+     * Largest number of distinct values a column may have, and still be
+     * dictionary encoded when loaded.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    /**
+     * Get the first four characters of a value, packed into a
+     * {@code long}, so that comparing two keys, unsigned, orders them as
+     * {@link String#compareTo(String)} would.
+     *
+     * @param value to get the key of
+     *
+     * @return the key
+     */
+    private static long prefixKey(final String value)
+    {
+        long key = 0;
+
+        for (int i = 0; i < 4; i++)
+        {
+            key = (key << 16) | (i < value.length() ? value.charAt(i) : 0);
+        }
+
+        return key;
+    }
+
+    /**
+     * The block holding the rows added by {@link #addRow(String[])}, always
+     * the last block.
+     */
+    private RowBlock addedRows;
+
+    /**
+     * blockStarts[i] is the index of the first row in block 'i'.
+     */
+    private int[] blockStarts;
+
+    /**
+     * Bit 'i' is set if row 'i' has been changed since it was read.
+     */
+    private final BitSet changedRows;
+
+    private final List<RowBlock> blocks;
+
+    /**
+     * The shared dictionary of each column, or {@code null} once the column
+     * has fallen back to plain text.
+     */
+    private final Dictionary[] dictionaries;
+
+    /**
+     * Number of values replaced.
+     */
+    private volatile long editCount;
+
+    /**
+     * Number of rows that have been through {@link #prepareBlock(RowBlock)}.
+     */
+    private int encodedRows;
+
+    private final List<String> header;
+
+    private int rowCount;
+
+    /**
+     * skippedAfter[i] is the row that run 'i' of rows left out follows, or
+     * -1 if it comes before the first row. They are in ascending order.
+     */
+    private int[] skippedAfter;
+
+    /**
+     * skippedEnds[i] is the file offset after run 'i' of rows left out.
+     */
+    private long[] skippedEnds;
+
+    /**
+     * Number of runs of rows left out.
+     */
+    private int skippedRanges;
+
+    /**
+     * Number of rows of the file left out.
+     */
+    private int skippedRows;
+
+    /**
+     * skippedStarts[i] is the file offset of run 'i' of rows left out.
+     */
+    private long[] skippedStarts;
+
+    /**
+     * Instantiate a new, empty, ColumnarTable.
+     *
+     * @param header the column headings
+     */
+    public ColumnarTable(final String[] header)
+    {
+        this.header = Collections.unmodifiableList(Arrays.asList(header.clone()));
+        this.blocks = new ArrayList<>();
+        this.blockStarts = new int[16];
+        this.changedRows = new BitSet();
+        this.skippedAfter = new int[0];
+        this.skippedStarts = new long[0];
+        this.skippedEnds = new long[0];
+        this.dictionaries = new Dictionary[header.length];
+        Arrays.setAll(dictionaries, i -> new Dictionary());
+    }
+
+    /**
+     * Add a block of rows to the end of the table.
+     * <p>
+     * The block must first have been through
+     * {@link #prepareBlock(RowBlock)}. No more blocks may be added once a
+     * row has been added by {@link #addRow(String[])}.
+     *
+     * @param block to add
+     */
+    @Override
+    public void addBlock(final RowBlock block)
+    {
+        addSkipped(block);
+
+        if (block.getRowCount() == 0)
+        {
+            return;
+        }
+
+        if (blocks.size() == blockStarts.length)
+        {
+            blockStarts = Arrays.copyOf(blockStarts, blockStarts.length * 2);
+        }
+
+        blockStarts[blocks.size()] = rowCount;
+        blocks.add(block);
+        rowCount += block.getRowCount();
+    }
+
+    /**
+     * Add a row to the end of the table.
+     * <p>
+     * The rows added are held in a block of their own, with columns of the
+     * same kind as the last block read from the file.
+     *
+     * @param values of the row, one for each column
+     *
+     * @return index of the new row
+     */
+    @Override
+    public synchronized int addRow(final String[] values)
+    {
+        if (addedRows == null)
+        {
+            if (blocks.isEmpty())
+            {
+                addedRows = new RowBlock(false);
+                addedRows.setColumnCount(header.size());
+            } else
+            {
+                addedRows = blocks.get(blocks.size() - 1).newEmpty();
+            }
+
+            addedRows.addRow(values);
+            addBlock(addedRows);
+        } else
+        {
+            addedRows.addRow(values);
+            rowCount++;
+        }
+
+        return rowCount - 1;
+    }
+
+    /**
+     * The sort key of every row is worked out up front, in parallel, so
+     * that comparing two rows is cheap. As this takes eight bytes per row,
+     * get a new comparator for each sort, rather than keeping one. The
+     * table must not change while it is in use.
+     * <p>
+     * Empty values sort first. Values of numeric columns are compared as
+     * decimals if any block holds decimals. A text column that shares one
+     * dictionary is compared by the rank of each value in it. Any other
+     * text column is compared by its first four characters, and then, if
+     * they are the same, by its full text, which a column of text holds
+     * as UTF-8 and compares without decoding.
+     */
+    @Override
+    public RowComparator comparator(final int column)
+    {
+        final ColumnType type = getColumnType(column);
+        final long[] keys = new long[rowCount];
+
+        if (type != ColumnType.TEXT)
+        {
+            final BitSet nulls = typedKeys(column, type == ColumnType.DOUBLE, keys);
+
+            return (rowA, rowB) ->
+            {
+                boolean nullA = nulls.get(rowA);
+                boolean nullB = nulls.get(rowB);
+
+                if (nullA || nullB)
+                {
+                    return Boolean.compare(!nullA, !nullB);
+                }
+
+                return Long.compare(keys[rowA], keys[rowB]);
+            };
+        } else if (rankKeys(column, keys))
+        {
+            return (rowA, rowB) -> Long.compare(keys[rowA], keys[rowB]);
+        }
+
+        forEachBlock(b ->
+        {
+            RowBlock block = blocks.get(b);
+
+            for (int i = 0; i < block.getRowCount(); i++)
+            {
+                keys[blockStarts[b] + i] = prefixKey(block.get(i, column));
+            }
+        });
+
+        return (rowA, rowB) ->
+        {
+            int result = Long.compareUnsigned(keys[rowA], keys[rowB]);
+
+            if (result != 0)
+            {
+                return result;
+            }
+
+            int a = blockIndex(rowA);
+            int b = blockIndex(rowB);
+
+            return blocks.get(a).getColumn(column).compare(rowA - blockStarts[a],
+                    blocks.get(b).getColumn(column), rowB - blockStarts[b]);
+        };
+    }
+
+    /**
+     * Count the number of times each distinct value occurs in a column.
+     *
+     * @param column index
+     *
+     * @return the counts, keyed by value
+     */
+    public Map<String, Integer> countValues(final int column)
+    {
+        Map<String, Integer> counts = new HashMap<>();
+        blocks.forEach(block -> block.getColumn(column).countValues(counts));
+
+        return counts;
+    }
+
+    /**
+     * Find the rows holding a given value in a column.
+     *
+     * @param column index
+     * @param value  to look for
+     *
+     * @return the indexes of the matching rows
+     */
+    public BitSet findEqual(final int column, final String value)
+    {
+        BitSet rows = new BitSet(rowCount);
+
+        for (int b = 0; b < blocks.size(); b++)
+        {
+            blocks.get(b).getColumn(column).findEqual(value, rows, blockStarts[b]);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param row    index
+     * @param column index
+     *
+     * @return the value
+     */
+    @Override
+    public String get(final int row, final int column)
+    {
+        int b = blockIndex(row);
+        return blocks.get(b).get(row - blockStarts[b], column);
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the count
+     */
+    @Override
+    public int getColumnCount()
+    {
+        return header.size();
+    }
+
+    @Override
+    public ColumnType getColumnType(final int column)
+    {
+        ColumnType type = null;
+
+        for (RowBlock block : blocks)
+        {
+            type = ColumnType.join(type, block.getColumn(column).getType());
+        }
+
+        return type != null ? type : ColumnType.TEXT;
+    }
+
+    @Override
+    public long getEditCount()
+    {
+        return editCount;
+    }
+
+    /**
+     * Get the column headings.
+     *
+     * @return an unmodifiable list of the headings
+     */
+    @Override
+    public List<String> getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Get all of the values in a row.
+     *
+     * @param row index
+     *
+     * @return a new array of the values
+     */
+    @Override
+    public String[] getRow(final int row)
+    {
+        int b = blockIndex(row);
+        RowBlock block = blocks.get(b);
+        int index = row - blockStarts[b];
+        String[] values = new String[header.size()];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = block.get(index, i);
+        }
+
+        return values;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the count
+     */
+    @Override
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    @Override
+    public long getRowEnd(final int row)
+    {
+        int b = blockIndex(row);
+
+        return changedRows.get(row) ? -1 : blocks.get(b).getEnd(row - blockStarts[b]);
+    }
+
+    @Override
+    public long getRowStart(final int row)
+    {
+        int b = blockIndex(row);
+
+        return changedRows.get(row) ? -1 : blocks.get(b).getStart(row - blockStarts[b]);
+    }
+
+    @Override
+    public long[] getSkippedRange(final int row)
+    {
+        int index = Arrays.binarySearch(skippedAfter, 0, skippedRanges, row);
+
+        return index >= 0 ? new long[]
+        {
+            skippedStarts[index], skippedEnds[index]
+        } : null;
+    }
+
+    @Override
+    public int getSkippedRowCount()
+    {
+        return skippedRows;
+    }
+
+    /**
+     * Estimate the heap used by the rows.
+     *
+     * @return size in bytes
+     */
+    @Override
+    public long memoryUsage()
+    {
+        long total = skippedAfter.length * 20L;
+
+        for (RowBlock block : blocks)
+        {
+            total += block.memoryUsage();
+        }
+
+        Set<Dictionary> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (RowBlock block : blocks)
+        {
+            for (int i = 0; i < header.size(); i++)
+            {
+                if (block.getColumn(i) instanceof DictionaryColumn dc
+                        && shared.add(dc.getDictionary()))
+                {
+                    total += dc.getDictionary().memoryUsage();
+                }
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Get a block ready to be added to the table.
+     * <p>
+     * This sets its number of columns, and moves its dictionary encoded
+     * columns over to the table's shared dictionaries. Columns that have
+     * fallen back to plain text are converted. It must be called for each
+     * block in turn, in file order, but need not be called on the thread
+     * that reads the table.
+     *
+     * @param block to prepare
+     */
+    @Override
+    public void prepareBlock(final RowBlock block)
+    {
+        block.setColumnCount(header.size());
+        encodedRows += block.getRowCount();
+
+        for (int i = 0; i < header.size(); i++)
+        {
+            if (block.getColumn(i) instanceof DictionaryColumn dc)
+            {
+                if (dictionaries[i] == null)
+                {
+                    TextColumn text = dc.toTextColumn();
+                    text.trim();
+                    block.setColumn(i, text);
+                    continue;
+                }
+
+                Dictionary local = dc.getDictionary();
+                int[] map = new int[local.size()];
+
+                for (int code = 0; code < map.length; code++)
+                {
+                    byte[] bytes = local.getBytes(code);
+                    map[code] = dictionaries[i].add(bytes, 0, bytes.length);
+                }
+
+                dc.remap(map, dictionaries[i]);
+
+                if (RowBlock.isHighCardinality(dictionaries[i].size(), encodedRows))
+                {
+                    // Blocks already encoded keep the dictionary, but it stops growing.
+                    dictionaries[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace a value.
+     *
+     * @param row    index
+     * @param column index
+     * @param value  new value
+     */
+    @Override
+    public synchronized void set(final int row, final int column, final String value)
+    {
+        int b = blockIndex(row);
+        blocks.get(b).set(row - blockStarts[b], column, value);
+        changedRows.set(row);
+        editCount++;
+    }
+
+    /**
+     * Take in the runs of rows a block left out, ahead of its rows. A run
+     * that follows the same row as the last one, because a block before
+     * this one ended with rows left out, is joined to it.
+     *
+     * @param block being added
+     */
+    private void addSkipped(final RowBlock block)
+    {
+        skippedRows += block.getSkippedRowCount();
+
+        for (int i = 0; i < block.getSkippedRangeCount(); i++)
+        {
+            int after = rowCount + block.getSkippedAfter(i);
+
+            if (skippedRanges > 0 && skippedAfter[skippedRanges - 1] == after)
+            {
+                skippedEnds[skippedRanges - 1] = block.getSkippedEnd(i);
+                continue;
+            }
+
+            if (skippedRanges == skippedAfter.length)
+            {
+                int length = Math.max(16, skippedRanges * 2);
+                skippedAfter = Arrays.copyOf(skippedAfter, length);
+                skippedStarts = Arrays.copyOf(skippedStarts, length);
+                skippedEnds = Arrays.copyOf(skippedEnds, length);
+            }
+
+            skippedAfter[skippedRanges] = after;
+            skippedStarts[skippedRanges] = block.getSkippedStart(i);
+            skippedEnds[skippedRanges++] = block.getSkippedEnd(i);
+        }
+    }
+
+    /**
+     * Find the block holding a row.
+     *
+     * @param row index
+     *
+     * @return index of the block
+     */
+    private int blockIndex(final int row)
+    {
+        if (row < 0 || row >= rowCount)
+        {
+            throw new IndexOutOfBoundsException(row);
+        }
+
+        int b = Arrays.binarySearch(blockStarts, 0, blocks.size(), row);
+
+        return b >= 0 ? b : -b - 2;
+    }
+
+    /**
+     * Run an action for each block, in parallel.
+     *
+     * @param action given the index of the block
+     */
+    private void forEachBlock(final IntConsumer action)
+    {
+        IntStream.range(0, blocks.size()).parallel().forEach(action);
+    }
+
+    /**
+     * Work out the sort keys of a text column that shares one dictionary:
+     * the rank of each value among all of the dictionary's values.
+     *
+     * @param column index
+     * @param keys   to fill in, by row
+     *
+     * @return {@code false} if the column does not share one dictionary
+     */
+    private boolean rankKeys(final int column, final long[] keys)
+    {
+        Dictionary dictionary = null;
+
+        for (RowBlock block : blocks)
+        {
+            if (!(block.getColumn(column) instanceof DictionaryColumn dc)
+                    || (dictionary != null && dc.getDictionary() != dictionary))
+            {
+                return false;
+            }
+
+            dictionary = dc.getDictionary();
+        }
+
+        if (dictionary == null)
+        {
+            return false;
+        }
+
+        final Dictionary values = dictionary;
+        Integer[] codes = new Integer[values.size()];
+        Arrays.setAll(codes, code -> code);
+        Arrays.sort(codes, (a, b) -> values.get(a).compareTo(values.get(b)));
+
+        final int[] ranks = new int[codes.length];
+
+        for (int rank = 0; rank < codes.length; rank++)
+        {
+            ranks[codes[rank]] = rank;
+        }
+
+        forEachBlock(b ->
+        {
+            DictionaryColumn dc = (DictionaryColumn) blocks.get(b).getColumn(column);
+
+            for (int i = 0; i < dc.size(); i++)
+            {
+                keys[blockStarts[b] + i] = ranks[dc.getCode(i)];
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Work out the sort keys of a typed column.
+     * <p>
+     * Decimals are stored as their bits, flipped so that they order the
+     * same way as {@link Double#compare(double, double)}. The values of a
+     * column compared as decimals are held in {@link TypedColumn}s of either
+     * kind, and the others in {@link LongColumn}s.
+     *
+     * @param column  index
+     * @param decimal compare the values as decimals
+     * @param keys    to fill in, by row
+     *
+     * @return the rows that are null
+     */
+    private BitSet typedKeys(final int column, final boolean decimal, final long[] keys)
+    {
+        final BitSet[] blockNulls = new BitSet[blocks.size()];
+
+        forEachBlock(b ->
+        {
+            Column values = blocks.get(b).getColumn(column);
+            BitSet nulls = new BitSet();
+
+            for (int i = 0; i < values.size(); i++)
+            {
+                if (values.isNull(i))
+                {
+                    nulls.set(i);
+                } else if (decimal)
+                {
+                    long bits = Double.doubleToLongBits(((TypedColumn) values).getDouble(i));
+                    keys[blockStarts[b] + i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+                } else
+                {
+                    keys[blockStarts[b] + i] = ((LongColumn) values).getLong(i);
+                }
+            }
+
+            blockNulls[b] = nulls;
+        });
+
+        BitSet nulls = new BitSet(rowCount);
+
+        for (int b = 0; b < blockNulls.length; b++)
+        {
+            for (int i = blockNulls[b].nextSetBit(0); i >= 0; i = blockNulls[b].nextSetBit(i + 1))
+            {
+                nulls.set(blockStarts[b] + i);
+            }
+        }
+
+        return nulls;
+    }
+}
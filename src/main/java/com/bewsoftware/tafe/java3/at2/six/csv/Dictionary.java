@@ -0,0 +1,251 @@
+/*
+ *  File Name:    Dictionary.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 21 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The distinct values of a {@link DictionaryColumn}, each identified by
+ * an {@code int} code.
+ * <p>
+ * Values are looked up by their UTF-8 bytes, so the parser can encode a
+ * field without first turning it into a String. Only one String is kept
+ * per distinct value.
+ * <p>
+ * Adding and looking up values is thread-safe. Once a code has been
+ * handed out, its value never changes.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class Dictionary
+{
+    private static int hash(final byte[] bytes, final int offset, final int length)
+    {
+        int hash = 1;
+
+        for (int i = offset; i < offset + length; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+
+        // Spread the bits, as the table size is a power of two.
+        return hash ^ (hash >>> 16);
+    }
+
+    private int[] hashes;
+
+    private byte[][] keys;
+
+    private int size;
+
+    /**
+     * Open addressing hash table: code + 1, or zero if the slot is empty.
+     */
+    private int[] slots;
+
+    private volatile String[] values;
+
+    /**
+     * Instantiate a new, empty, Dictionary.
+     */
+    public Dictionary()
+    {
+        this.hashes = new int[16];
+        this.keys = new byte[16][];
+        this.values = new String[16];
+        this.slots = new int[32];
+    }
+
+    /**
+     * Get the code for a value, adding it if it is new.
+     *
+     * @param bytes  buffer holding the UTF-8 encoded value
+     * @param offset start of the value in the buffer
+     * @param length number of bytes in the value
+     *
+     * @return the code
+     */
+    public synchronized int add(final byte[] bytes, final int offset, final int length)
+    {
+        int hash = hash(bytes, offset, length);
+        int slot = find(bytes, offset, length, hash);
+
+        if (slots[slot] != 0)
+        {
+            return slots[slot] - 1;
+        }
+
+        if (size == keys.length)
+        {
+            int capacity = size * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        int code = size;
+        hashes[code] = hash;
+        keys[code] = Arrays.copyOfRange(bytes, offset, offset + length);
+        values[code] = new String(bytes, offset, length, UTF_8);
+        size++;
+        slots[slot] = code + 1;
+
+        if (size * 2 > slots.length)
+        {
+            rehash();
+        }
+
+        return code;
+    }
+
+    /**
+     * Get the code for a value, adding it if it is new.
+     *
+     * @param value to add
+     *
+     * @return the code
+     */
+    public int add(final String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Get the code for a value.
+     *
+     * @param value to look up
+     *
+     * @return the code, or -1 if the value is not in the dictionary
+     */
+    public synchronized int codeOf(final String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        int slot = find(bytes, 0, bytes.length, hash(bytes, 0, bytes.length));
+
+        return slots[slot] - 1;
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param code of the value
+     *
+     * @return the value
+     */
+    public String get(final int code)
+    {
+        return values[code];
+    }
+
+    /**
+     * Get the UTF-8 encoded bytes of a value.
+     *
+     * @param code of the value
+     *
+     * @return the bytes, which must not be modified
+     */
+    public synchronized byte[] getBytes(final int code)
+    {
+        return keys[code];
+    }
+
+    /**
+     * Estimate the heap used by this dictionary.
+     *
+     * @return size in bytes
+     */
+    public synchronized long memoryUsage()
+    {
+        long total = slots.length * 4L + hashes.length * 4L + keys.length * 16L;
+
+        for (int i = 0; i < size; i++)
+        {
+            // The bytes, plus a String with its own copy.
+            total += keys[i].length * 2L + 56;
+        }
+
+        return total;
+    }
+
+    /**
+     * Get the number of distinct values.
+     *
+     * @return the count
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Find the slot holding a value, or the empty slot where it belongs.
+     */
+    private int find(final byte[] bytes, final int offset, final int length, final int hash)
+    {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        while (slots[slot] != 0)
+        {
+            int code = slots[slot] - 1;
+
+            if (hashes[code] == hash
+                    && Arrays.equals(keys[code], 0, keys[code].length, bytes, offset, offset + length))
+            {
+                break;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void rehash()
+    {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int code = 0; code < size; code++)
+        {
+            int slot = hashes[code] & mask;
+
+            while (slots[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = code + 1;
+        }
+    }
+}
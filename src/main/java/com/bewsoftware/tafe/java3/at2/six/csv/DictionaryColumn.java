@@ -0,0 +1,249 @@
+/*
+ *  File Name:    DictionaryColumn.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 21 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * A column of values drawn from a small set, such as status, country or
+ * currency codes.
+ * <p>
+ * Each value is stored as an {@code int} code into a shared
+ * {@link Dictionary}, so every row holding the same value shares a single
+ * String. Equality tests and grouping work on the codes alone.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class DictionaryColumn extends Column
+{
+    private int[] codes;
+
+    private Dictionary dictionary;
+
+    private int size;
+
+    /**
+     * Instantiate a new, empty, DictionaryColumn.
+     *
+     * @param dictionary to hold the distinct values
+     */
+    public DictionaryColumn(final Dictionary dictionary)
+    {
+        this.dictionary = dictionary;
+        this.codes = new int[16];
+    }
+
+    @Override
+    public void append(byte[] bytes, int offset, int length)
+    {
+        appendCode(dictionary.add(bytes, offset, length));
+    }
+
+    @Override
+    public void append(String value)
+    {
+        appendCode(dictionary.add(value));
+    }
+
+    @Override
+    public void countValues(Map<String, Integer> counts)
+    {
+        int[] codeCounts = new int[dictionary.size()];
+
+        for (int i = 0; i < size; i++)
+        {
+            codeCounts[codes[i]]++;
+        }
+
+        for (int code = 0; code < codeCounts.length; code++)
+        {
+            if (codeCounts[code] > 0)
+            {
+                counts.merge(dictionary.get(code), codeCounts[code], Integer::sum);
+            }
+        }
+    }
+
+    @Override
+    public void findEqual(String value, BitSet rows, int offset)
+    {
+        int code = dictionary.codeOf(value);
+
+        if (code < 0)
+        {
+            return;
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            if (codes[i] == code)
+            {
+                rows.set(offset + i);
+            }
+        }
+    }
+
+    @Override
+    public String get(int index)
+    {
+        return dictionary.get(getCode(index));
+    }
+
+    /**
+     * Get the code of a value.
+     *
+     * @param index of the value
+     *
+     * @return the code
+     */
+    public int getCode(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return codes[index];
+    }
+
+    /**
+     * Get the dictionary holding the distinct values.
+     *
+     * @return the dictionary
+     */
+    public Dictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (!dictionary.get(codes[i]).isEmpty())
+            {
+                return ColumnType.TEXT;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Not including the dictionary, which may be shared.
+     */
+    @Override
+    public long memoryUsage()
+    {
+        return codes.length * 4L;
+    }
+
+    /**
+     * The new column shares this column's dictionary.
+     */
+    @Override
+    public Column newEmpty()
+    {
+        return new DictionaryColumn(dictionary);
+    }
+
+    /**
+     * Move this column over to another dictionary.
+     *
+     * @param map        the new code for each of the current codes
+     * @param dictionary the new dictionary
+     */
+    public void remap(final int[] map, final Dictionary dictionary)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            codes[i] = map[codes[i]];
+        }
+
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void set(int index, String value)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        codes[index] = dictionary.add(value);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Convert to a plain {@link TextColumn}.
+     *
+     * @return the new column
+     */
+    public TextColumn toTextColumn()
+    {
+        TextColumn column = new TextColumn();
+
+        for (int i = 0; i < size; i++)
+        {
+            byte[] bytes = dictionary.getBytes(codes[i]);
+            column.append(bytes, 0, bytes.length);
+        }
+
+        return column;
+    }
+
+    @Override
+    public void trim()
+    {
+        if (codes.length > size)
+        {
+            codes = Arrays.copyOf(codes, size);
+        }
+    }
+
+    private void appendCode(final int code)
+    {
+        if (size == codes.length)
+        {
+            codes = Arrays.copyOf(codes, Math.max(16, size + (size >> 1)));
+        }
+
+        codes[size++] = code;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *  File Name:    DoubleColumn.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link TypedColumn} of decimal numbers, held as {@code double}s.
+ * <p>
+ * A column inferred from a file is created with {@link #MINIMAL_SCALE}:
+ * each value is formatted with the number of decimal places it was written
+ * with, so that, for example, a column of prices keeps its "12.50" rather
+ * than becoming "12.5", while a column that mixes "10.5", "9.25" and "3"
+ * keeps each of them as it was. They are all still sorted by their value.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class DoubleColumn extends TypedColumn
+{
+    /**
+     * Scale for values formatted with the number of decimal places each was
+     * written with, or in scientific notation if it was written that way.
+     */
+    public static final int MINIMAL_SCALE = -2;
+
+    /**
+     * Scale for values formatted in scientific notation.
+     */
+    public static final int SCIENTIFIC_SCALE = -1;
+
+    private static final Pattern DECIMAL = Pattern.compile(
+            "[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    /**
+     * Is a value a decimal number?
+     * <p>
+     * Only plain numbers are accepted, not "NaN", "Infinity" or
+     * hexadecimal.
+     *
+     * @param text of the value
+     *
+     * @return result
+     */
+    public static boolean isDecimal(final String text)
+    {
+        return DECIMAL.matcher(text).matches();
+    }
+
+    /**
+     * Get the number of decimal places in a sample value.
+     *
+     * @param sample value
+     *
+     * @return the scale, or {@link #SCIENTIFIC_SCALE}
+     */
+    public static int scaleOf(final String sample)
+    {
+        int point = sample.indexOf('.');
+
+        if (sample.indexOf('e') >= 0 || sample.indexOf('E') >= 0)
+        {
+            return SCIENTIFIC_SCALE;
+        }
+
+        return point < 0 ? 0 : sample.length() - point - 1;
+    }
+
+    /**
+     * With {@link #MINIMAL_SCALE}, the number of decimal places of each
+     * value, or {@link #SCIENTIFIC_SCALE}. Otherwise {@code null}.
+     */
+    private byte[] places;
+
+    /**
+     * Number of decimal places, {@link #MINIMAL_SCALE} or
+     * {@link #SCIENTIFIC_SCALE}.
+     */
+    private final int scale;
+
+    private double[] values;
+
+    /**
+     * Instantiate a new, empty, DoubleColumn.
+     *
+     * @param scale    number of decimal places to format the values with,
+     *                 {@link #MINIMAL_SCALE} or {@link #SCIENTIFIC_SCALE}
+     * @param capacity initial number of values to make room for
+     */
+    public DoubleColumn(final int scale, final int capacity)
+    {
+        this.scale = scale;
+        this.values = new double[Math.max(capacity, 16)];
+        this.places = scale == MINIMAL_SCALE ? new byte[values.length] : null;
+    }
+
+    @Override
+    public double getDouble(int index)
+    {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Column newEmpty()
+    {
+        return new DoubleColumn(scale, 0);
+    }
+
+    @Override
+    public void trim()
+    {
+        if (values.length > size())
+        {
+            values = Arrays.copyOf(values, size());
+
+            if (places != null)
+            {
+                places = Arrays.copyOf(places, size());
+            }
+        }
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity)
+    {
+        if (capacity > values.length)
+        {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length + (values.length >> 1)));
+
+            if (places != null)
+            {
+                places = Arrays.copyOf(places, values.length);
+            }
+        }
+    }
+
+    @Override
+    protected String format(int index)
+    {
+        double value = values[index];
+        int valueScale = places != null ? places[index] : scale;
+
+        if (valueScale == SCIENTIFIC_SCALE)
+        {
+            return Double.toString(value);
+        }
+
+        return BigDecimal.valueOf(value).setScale(valueScale, RoundingMode.HALF_EVEN)
+                .toPlainString();
+    }
+
+    @Override
+    protected ColumnType getValueType()
+    {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    protected boolean parse(int index, String text)
+    {
+        if (!isDecimal(text))
+        {
+            return false;
+        }
+
+        values[index] = Double.parseDouble(text);
+
+        if (places != null)
+        {
+            // Any more places than this are kept as the original text.
+            places[index] = (byte) Math.min(scaleOf(text), Byte.MAX_VALUE);
+        }
+
+        return true;
+    }
+
+    @Override
+    protected long valuesMemoryUsage()
+    {
+        return values.length * 8L + (places != null ? places.length : 0);
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ *  File Name:    EditHistory.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 27 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The undo and redo history of the edits made to a table.
+ * <p>
+ * Each step, such as the update of a row from the edit form, is made up
+ * of one or more changes: a value changed, or a row added to or removed
+ * from the view. The changes are held in {@code int} arrays, and the old
+ * and new values as UTF-8 bytes in a single {@code byte} array, rather
+ * than as objects. Once the history grows past its memory cap, the oldest
+ * steps are forgotten.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class EditHistory
+{
+    /**
+     * Heap used by each change, besides its values: an {@code int} in each
+     * of the five arrays of changes.
+     */
+    private static final int CHANGE_BYTES = 5 * Integer.BYTES;
+
+    /**
+     * Kind of a change that put a row into the view.
+     */
+    private static final int INSERT = -1;
+
+    /**
+     * Kind of a change that took a row out of the view.
+     */
+    private static final int REMOVE = -2;
+
+    /**
+     * Heap used by each step: its end, in {@link #stepEnds}.
+     */
+    private static final int STEP_BYTES = Integer.BYTES;
+
+    /**
+     * The kind of each change: the column of a changed value, or
+     * {@link #INSERT} or {@link #REMOVE}.
+     */
+    private int[] columns;
+
+    /**
+     * Number of changes, including those that have been undone.
+     */
+    private int count;
+
+    private byte[] data;
+
+    private int dataLength;
+
+    /**
+     * The changes of the step being recorded start here.
+     */
+    private int firstPending;
+
+    /**
+     * The index in the view of each row inserted or removed.
+     */
+    private int[] indexes;
+
+    private final long memoryCap;
+
+    /**
+     * newStarts[i] is where the new value of change 'i' starts in the data,
+     * and its old value runs from starts[i] up to there.
+     */
+    private int[] newStarts;
+
+    /**
+     * The table row of each change.
+     */
+    private int[] rows;
+
+    private int[] starts;
+
+    /**
+     * Number of steps that have been done, and not undone.
+     */
+    private int stepCount;
+
+    /**
+     * stepEnds[i] is the index after the last change of step 'i'.
+     */
+    private int[] stepEnds;
+
+    /**
+     * Number of steps, including those that have been undone.
+     */
+    private int stepTotal;
+
+    /**
+     * Instantiate a new, empty, EditHistory.
+     *
+     * @param memoryCap the most heap, in bytes, that the history may use,
+     *                  although the latest step is always kept
+     */
+    public EditHistory(final long memoryCap)
+    {
+        this.memoryCap = memoryCap;
+        this.columns = new int[64];
+        this.indexes = new int[64];
+        this.newStarts = new int[64];
+        this.rows = new int[64];
+        this.starts = new int[64];
+        this.stepEnds = new int[16];
+        this.data = new byte[1024];
+    }
+
+    /**
+     * Can a step be redone?
+     *
+     * @return result
+     */
+    public boolean canRedo()
+    {
+        return stepCount < stepTotal;
+    }
+
+    /**
+     * Can a step be undone?
+     *
+     * @return result
+     */
+    public boolean canUndo()
+    {
+        return stepCount > 0;
+    }
+
+    /**
+     * Forget the whole history.
+     */
+    public void clear()
+    {
+        count = 0;
+        dataLength = 0;
+        firstPending = 0;
+        stepCount = 0;
+        stepTotal = 0;
+    }
+
+    /**
+     * Finish recording a step. Does nothing if no changes were recorded.
+     */
+    public void endStep()
+    {
+        if (count == firstPending)
+        {
+            return;
+        }
+
+        if (stepTotal == stepEnds.length)
+        {
+            stepEnds = Arrays.copyOf(stepEnds, stepTotal * 2);
+        }
+
+        stepEnds[stepTotal++] = count;
+        stepCount = stepTotal;
+        firstPending = count;
+
+        if (memoryUsage() > memoryCap)
+        {
+            forget();
+        }
+    }
+
+    /**
+     * Record a row put into the view, by the step being recorded.
+     *
+     * @param index in the view it was put at
+     * @param row   index in the table
+     */
+    public void insert(final int index, final int row)
+    {
+        addChange(row, INSERT, index, "", "");
+    }
+
+    /**
+     * Estimate the heap used by the history.
+     *
+     * @return size in bytes
+     */
+    public long memoryUsage()
+    {
+        return data.length + (long) columns.length * CHANGE_BYTES
+                + (long) stepEnds.length * STEP_BYTES;
+    }
+
+    /**
+     * Redo the next step.
+     *
+     * @param target to make the changes to
+     *
+     * @return {@code false} if there was no step to redo
+     */
+    public boolean redo(final Target target)
+    {
+        if (!canRedo())
+        {
+            return false;
+        }
+
+        int from = stepCount > 0 ? stepEnds[stepCount - 1] : 0;
+
+        for (int i = from; i < stepEnds[stepCount]; i++)
+        {
+            apply(i, target, false);
+        }
+
+        stepCount++;
+
+        return true;
+    }
+
+    /**
+     * Record a row taken out of the view, by the step being recorded.
+     *
+     * @param index in the view it was taken from
+     * @param row   index in the table
+     */
+    public void remove(final int index, final int row)
+    {
+        addChange(row, REMOVE, index, "", "");
+    }
+
+    /**
+     * Record a value changed, by the step being recorded.
+     *
+     * @param row      index in the table
+     * @param column   index
+     * @param oldValue value before the change
+     * @param newValue value after the change
+     */
+    public void set(final int row, final int column, final String oldValue, final String newValue)
+    {
+        addChange(row, column, -1, oldValue, newValue);
+    }
+
+    /**
+     * Undo the last step.
+     *
+     * @param target to make the changes to
+     *
+     * @return {@code false} if there was no step to undo
+     */
+    public boolean undo(final Target target)
+    {
+        if (!canUndo())
+        {
+            return false;
+        }
+
+        stepCount--;
+        int from = stepCount > 0 ? stepEnds[stepCount - 1] : 0;
+
+        for (int i = stepEnds[stepCount] - 1; i >= from; i--)
+        {
+            apply(i, target, true);
+        }
+
+        return true;
+    }
+
+    /**
+     * Add a change to the step being recorded. Any steps that have been
+     * undone can no longer be redone.
+     */
+    private void addChange(final int row, final int column, final int index,
+            final String oldValue, final String newValue)
+    {
+        if (firstPending == count && stepCount < stepTotal)
+        {
+            // Drop the undone steps.
+            stepTotal = stepCount;
+            count = stepCount > 0 ? stepEnds[stepCount - 1] : 0;
+            firstPending = count;
+            dataLength = count > 0 ? starts[count] : 0;
+        }
+
+        if (count + 1 >= columns.length)
+        {
+            int capacity = columns.length * 2;
+            columns = Arrays.copyOf(columns, capacity);
+            indexes = Arrays.copyOf(indexes, capacity);
+            newStarts = Arrays.copyOf(newStarts, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+        }
+
+        rows[count] = row;
+        columns[count] = column;
+        indexes[count] = index;
+        starts[count] = dataLength;
+        put(oldValue);
+        newStarts[count] = dataLength;
+        put(newValue);
+        count++;
+
+        // The end of the last change's new value.
+        starts[count] = dataLength;
+    }
+
+    /**
+     * Make a change, or its reverse.
+     */
+    private void apply(final int i, final Target target, final boolean reverse)
+    {
+        if (columns[i] >= 0)
+        {
+            String value = reverse
+                    ? new String(data, starts[i], newStarts[i] - starts[i], UTF_8)
+                    : new String(data, newStarts[i], starts[i + 1] - newStarts[i], UTF_8);
+
+            target.set(rows[i], columns[i], value);
+        } else if ((columns[i] == INSERT) != reverse)
+        {
+            target.insertRow(indexes[i], rows[i]);
+        } else
+        {
+            target.removeRow(rows[i]);
+        }
+    }
+
+    /**
+     * Forget the oldest steps, down to three quarters of the memory cap, so
+     * that this is not done for every step. The latest step is kept. The
+     * arrays are then trimmed, so that {@link #memoryUsage()} falls below
+     * the cap too, unless the latest step alone is larger.
+     */
+    private void forget()
+    {
+        long target = memoryCap / 4 * 3;
+        int steps = 0;
+
+        while (steps < stepTotal - 1 && retainedSize(steps) > target)
+        {
+            steps++;
+        }
+
+        if (steps > 0)
+        {
+            int changes = stepEnds[steps - 1];
+            int bytes = starts[changes];
+
+            System.arraycopy(data, bytes, data, 0, dataLength - bytes);
+            dataLength -= bytes;
+
+            for (int i = changes; i <= count; i++)
+            {
+                starts[i - changes] = starts[i] - bytes;
+
+                if (i < count)
+                {
+                    newStarts[i - changes] = newStarts[i] - bytes;
+                }
+            }
+
+            System.arraycopy(columns, changes, columns, 0, count - changes);
+            System.arraycopy(indexes, changes, indexes, 0, count - changes);
+            System.arraycopy(rows, changes, rows, 0, count - changes);
+            count -= changes;
+            firstPending -= changes;
+
+            for (int i = steps; i < stepTotal; i++)
+            {
+                stepEnds[i - steps] = stepEnds[i] - changes;
+            }
+
+            stepTotal -= steps;
+            stepCount -= steps;
+        }
+
+        // Release the space, leaving a quarter over for the steps to come. The
+        // arrays may have grown past the cap with nothing old enough to drop.
+        data = Arrays.copyOf(data, Math.max(1024, dataLength + (dataLength >> 2)));
+
+        int capacity = Math.max(64, count + (count >> 2) + 1);
+        columns = Arrays.copyOf(columns, capacity);
+        indexes = Arrays.copyOf(indexes, capacity);
+        newStarts = Arrays.copyOf(newStarts, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        stepEnds = Arrays.copyOf(stepEnds, Math.max(16, stepTotal + (stepTotal >> 2) + 1));
+    }
+
+    /**
+     * Add a value to the data.
+     */
+    private void put(final String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+
+        if (dataLength + bytes.length > data.length)
+        {
+            data = Arrays.copyOf(data, Math.max(dataLength + bytes.length, data.length * 2));
+        }
+
+        System.arraycopy(bytes, 0, data, dataLength, bytes.length);
+        dataLength += bytes.length;
+    }
+
+    /**
+     * Estimate the heap needed to hold the history without its oldest
+     * steps, at the same cost for each change and step as
+     * {@link #memoryUsage()}.
+     *
+     * @param steps number of the oldest steps to leave out
+     *
+     * @return size in bytes
+     */
+    private long retainedSize(final int steps)
+    {
+        int changes = steps > 0 ? stepEnds[steps - 1] : 0;
+
+        return dataLength - starts[changes] + (long) (count - changes) * CHANGE_BYTES
+                + (long) (stepTotal - steps) * STEP_BYTES;
+    }
+
+    /**
+     * The table and view that the changes are made to.
+     */
+    public interface Target
+    {
+        /**
+         * Put a row into the view.
+         *
+         * @param index in the view to put it at, which may be past the end
+         * @param row   index in the table
+         */
+        public void insertRow(int index, int row);
+
+        /**
+         * Take a row out of the view.
+         *
+         * @param row index in the table
+         */
+        public void removeRow(int row);
+
+        /**
+         * Change a value.
+         *
+         * @param row    index in the table
+         * @param column index
+         * @param value  new value
+         */
+        public void set(int row, int column, String value);
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ *  File Name:    EditJournal.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 27 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The sidecar file holding the edits made to a CSV file since it was last
+ * saved.
+ * <p>
+ * It is kept next to the CSV file, as "{@code .<file name>.journal}". Each
+ * edit is appended to it, and forced out to the disk, as soon as it is
+ * made, so that no edit is lost if the application stops before the CSV
+ * file is saved. When the file is next opened, the edits are replayed. As
+ * with the {@link IndexFile}, the journal is only used if the CSV file
+ * still matches the one it was written for.
+ * <p>
+ * Rows are identified by their index in the table, as read from the file.
+ * Each entry carries its length and a checksum, so an entry only half
+ * written when the application stopped is simply dropped.
+ * <p>
+ * The many edits of a step such as a find and replace can be recorded as
+ * a batch, which is written out, and forced to the disk, just once.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class EditJournal implements Closeable
+{
+    private static final byte ADD = 2;
+
+    private static final byte DELETE = 3;
+
+    private static final byte INSERT = 4;
+
+    private static final int MAGIC = 0x4353564A; // "CSVJ"
+
+    private static final byte SET = 1;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Get the path of the journal of a CSV file.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @return the path
+     */
+    public static Path journalPath(final Path csvPath)
+    {
+        Path absolute = csvPath.toAbsolutePath();
+        return absolute.resolveSibling("." + absolute.getFileName() + ".journal");
+    }
+
+    private static String getString(final ByteBuffer buf)
+    {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+
+        return new String(bytes, UTF_8);
+    }
+
+    private static void putString(final DataOutputStream out, final String value)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * The entries of the batch being recorded, or {@code null} if there is
+     * none.
+     */
+    private ByteArrayOutputStream batch = null;
+
+    /**
+     * Open for appending, once the first edit has been recorded.
+     */
+    private FileChannel channel;
+
+    private final Path csvPath;
+
+    private final Path journalPath;
+
+    /**
+     * Length of the valid part of the journal, as found by
+     * {@link #replay(EditHandler)}, or -1 to start a new journal.
+     */
+    private long validLength = -1;
+
+    /**
+     * Instantiate a new EditJournal.
+     * <p>
+     * The journal file is not touched until it is replayed, or the first
+     * edit is recorded.
+     *
+     * @param csvPath Path to the CSV file.
+     */
+    public EditJournal(final Path csvPath)
+    {
+        this.csvPath = csvPath;
+        this.journalPath = journalPath(csvPath);
+    }
+
+    /**
+     * Record a row added to the end of the table.
+     *
+     * @param after  index of the row it was placed after, or -1 if it was
+     *               placed first
+     * @param values of the row
+     *
+     * @throws IOException if any.
+     */
+    public void add(final int after, final String[] values) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream entry = new DataOutputStream(bytes))
+        {
+            entry.writeByte(ADD);
+            entry.writeInt(after);
+            entry.writeInt(values.length);
+
+            for (String value : values)
+            {
+                putString(entry, value);
+            }
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Start recording a batch of edits. They are held back until
+     * {@link #endBatch()}.
+     */
+    public synchronized void beginBatch()
+    {
+        batch = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Record a row deleted.
+     *
+     * @param row index
+     *
+     * @throws IOException if any.
+     */
+    public void delete(final int row) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream entry = new DataOutputStream(bytes))
+        {
+            entry.writeByte(DELETE);
+            entry.writeInt(row);
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Record a row, deleted earlier, put back.
+     *
+     * @param row   index
+     * @param after index of the row it was placed after, or -1 if it was
+     *              placed first
+     *
+     * @throws IOException if any.
+     */
+    public void insert(final int row, final int after) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream entry = new DataOutputStream(bytes))
+        {
+            entry.writeByte(INSERT);
+            entry.writeInt(row);
+            entry.writeInt(after);
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Throw away the journal, once its edits have been saved to the CSV
+     * file, or are no longer wanted.
+     * <p>
+     * Any edits recorded after this start a new journal.
+     *
+     * @throws IOException if any.
+     */
+    public synchronized void discard() throws IOException
+    {
+        close();
+        batch = null;
+        validLength = -1;
+        Files.deleteIfExists(journalPath);
+    }
+
+    /**
+     * Finish recording a batch of edits, and write them out to the disk
+     * together.
+     *
+     * @throws IOException if any.
+     */
+    public synchronized void endBatch() throws IOException
+    {
+        if (batch == null)
+        {
+            return;
+        }
+
+        byte[] entries = batch.toByteArray();
+        batch = null;
+
+        if (entries.length > 0)
+        {
+            write(entries);
+        }
+    }
+
+    /**
+     * Replay the edits in the journal.
+     * <p>
+     * If the journal does not belong to the CSV file as it is now, it is
+     * ignored, and will be replaced by the first edit recorded. Otherwise,
+     * edits recorded from now on are added to it.
+     *
+     * @param handler to make each edit
+     *
+     * @return the number of edits replayed
+     *
+     * @throws IOException if any.
+     */
+    public synchronized int replay(final EditHandler handler) throws IOException
+    {
+        validLength = -1;
+
+        if (!Files.isRegularFile(journalPath))
+        {
+            return 0;
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+
+        try
+        {
+            if (buf.getInt() != MAGIC
+                    || buf.getInt() != VERSION
+                    || !getString(buf).equals(csvPath.toAbsolutePath().toString())
+                    || buf.getLong() != Files.size(csvPath)
+                    || buf.getLong() != Files.getLastModifiedTime(csvPath).toMillis()
+                    || buf.getLong() != IndexFile.contentHash(csvPath))
+            {
+                return 0;
+            }
+        } catch (BufferUnderflowException ex)
+        {
+            return 0;
+        }
+
+        validLength = buf.position();
+        int count = 0;
+        CRC32C crc = new CRC32C();
+
+        while (buf.remaining() >= 2 * Integer.BYTES)
+        {
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+
+            if (length <= 0 || length > buf.remaining())
+            {
+                break;
+            }
+
+            ByteBuffer entry = buf.slice(buf.position(), length);
+            crc.reset();
+            crc.update(entry.duplicate());
+
+            if ((int) crc.getValue() != checksum)
+            {
+                break;
+            }
+
+            buf.position(buf.position() + length);
+            replay(entry, handler);
+            validLength = buf.position();
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Record a value changed.
+     *
+     * @param row    index
+     * @param column index
+     * @param value  new value
+     *
+     * @throws IOException if any.
+     */
+    public void set(final int row, final int column, final String value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream entry = new DataOutputStream(bytes))
+        {
+            entry.writeByte(SET);
+            entry.writeInt(row);
+            entry.writeInt(column);
+            putString(entry, value);
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Add an entry to the end of the journal, and force it out to the disk,
+     * or to the batch being recorded.
+     *
+     * @param entry to add
+     *
+     * @throws IOException if any.
+     */
+    private synchronized void append(final byte[] entry) throws IOException
+    {
+        CRC32C crc = new CRC32C();
+        crc.update(entry);
+
+        ByteBuffer buf = ByteBuffer.allocate(2 * Integer.BYTES + entry.length);
+        buf.putInt(entry.length);
+        buf.putInt((int) crc.getValue());
+        buf.put(entry);
+
+        if (batch != null)
+        {
+            batch.write(buf.array());
+        } else
+        {
+            write(buf.array());
+        }
+    }
+
+    /**
+     * Open the journal for appending. An existing, valid journal is added
+     * to, after any incomplete entry is cut off. Otherwise a new journal is
+     * started.
+     *
+     * @throws IOException if any.
+     */
+    private void open() throws IOException
+    {
+        if (validLength >= 0)
+        {
+            channel = FileChannel.open(journalPath, WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            return;
+        }
+
+        ByteArrayOutputStream headBytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream head = new DataOutputStream(headBytes))
+        {
+            head.writeInt(MAGIC);
+            head.writeInt(VERSION);
+            putString(head, csvPath.toAbsolutePath().toString());
+            head.writeLong(Files.size(csvPath));
+            head.writeLong(Files.getLastModifiedTime(csvPath).toMillis());
+            head.writeLong(IndexFile.contentHash(csvPath));
+        }
+
+        channel = FileChannel.open(journalPath, CREATE, TRUNCATE_EXISTING, WRITE);
+        channel.write(ByteBuffer.wrap(headBytes.toByteArray()));
+        validLength = headBytes.size();
+    }
+
+    /**
+     * Make the edit held in an entry.
+     *
+     * @param entry   to replay
+     * @param handler to make the edit
+     */
+    private void replay(final ByteBuffer entry, final EditHandler handler)
+    {
+        switch (entry.get())
+        {
+            case SET ->
+            {
+                int row = entry.getInt();
+                int column = entry.getInt();
+                handler.set(row, column, getString(entry));
+            }
+
+            case ADD ->
+            {
+                int after = entry.getInt();
+                String[] values = new String[entry.getInt()];
+
+                for (int i = 0; i < values.length; i++)
+                {
+                    values[i] = getString(entry);
+                }
+
+                handler.add(after, values);
+            }
+
+            case DELETE ->
+            {
+                handler.delete(entry.getInt());
+            }
+
+            case INSERT ->
+            {
+                int row = entry.getInt();
+                handler.insert(row, entry.getInt());
+            }
+
+            default ->
+            {
+                // Unknown, so skip it.
+            }
+        }
+    }
+
+    /**
+     * Write entries to the end of the journal, and force them out to the
+     * disk.
+     *
+     * @param entries to write, each with its length and checksum
+     *
+     * @throws IOException if any.
+     */
+    private void write(final byte[] entries) throws IOException
+    {
+        if (channel == null)
+        {
+            open();
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(entries);
+
+        while (buf.hasRemaining())
+        {
+            channel.write(buf);
+        }
+
+        channel.force(false);
+    }
+
+    /**
+     * Makes the edits replayed from a journal.
+     */
+    public interface EditHandler
+    {
+        /**
+         * Add a row to the end of the table.
+         *
+         * @param after  index of the row it was placed after, or -1 if it
+         *               was placed first
+         * @param values of the row
+         */
+        public void add(int after, String[] values);
+
+        /**
+         * Delete a row.
+         *
+         * @param row index
+         */
+        public void delete(int row);
+
+        /**
+         * Put back a row that was deleted.
+         *
+         * @param row   index
+         * @param after index of the row it was placed after, or -1 if it
+         *              was placed first
+         */
+        public void insert(int row, int after);
+
+        /**
+         * Change a value.
+         *
+         * @param row    index
+         * @param column index
+         * @param value  new value
+         */
+        public void set(int row, int column, String value);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ *  File Name:    IndexFile.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The sidecar file holding the {@link RowIndex} of a CSV file.
+ * <p>
+ * It is saved next to the CSV file, as "{@code .<file name>.idx}". It is
+ * only used if the path, size, modification time and content hash of the
+ * CSV file all still match those it was saved with. The content hash is
+ * taken from a sample of the file, spread evenly through it, so checking
+ * it takes no longer for a large file than for a small one.
+ * <p>
+ * Any problem reading it simply means the file has to be scanned again.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class IndexFile
+{
+    private static final int MAGIC = 0x43535649; // "CSVI"
+
+    private static final int SAMPLE_COUNT = 16;
+
+    private static final int SAMPLE_SIZE = 4096;
+
+    private static final int VERSION = 1;
+
+    private static final int WRITE_BUFFER_LONGS = 64 * 1024;
+
+    /**
+     * Read the index of a CSV file.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @return the index, or {@code null} if there is no valid index
+     */
+    public static RowIndex read(final Path csvPath)
+    {
+        Path indexPath = indexPath(csvPath);
+
+        if (!Files.isRegularFile(indexPath))
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexPath, READ))
+        {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buf.getInt() != MAGIC
+                    || buf.getInt() != VERSION
+                    || !getString(buf).equals(csvPath.toAbsolutePath().toString())
+                    || buf.getLong() != Files.size(csvPath)
+                    || buf.getLong() != Files.getLastModifiedTime(csvPath).toMillis()
+                    || buf.getLong() != contentHash(csvPath))
+            {
+                return null;
+            }
+
+            int columnCount = buf.getInt();
+            List<String> header = new ArrayList<>(columnCount);
+            List<ColumnStats> stats = new ArrayList<>(columnCount);
+
+            for (int i = 0; i < columnCount; i++)
+            {
+                header.add(getString(buf));
+                stats.add(new ColumnStats(buf.getLong(), buf.getInt()));
+            }
+
+            int rowCount = buf.getInt();
+            long[] offsets = new long[rowCount + 1];
+            buf.asLongBuffer().get(offsets);
+
+            return new RowIndex(header, offsets, rowCount, stats);
+        } catch (IOException | RuntimeException ex)
+        {
+            // Corrupt, truncated or unreadable.
+            return null;
+        }
+    }
+
+    /**
+     * Save the index of a CSV file.
+     * <p>
+     * It is written to a temporary file first, so that an incomplete
+     * index is never left behind.
+     * <p>
+     * The size and modification time are those the file had before it was
+     * scanned, so that an index of a file changed while it was being
+     * scanned is never used.
+     *
+     * @param csvPath  Path to the CSV file.
+     * @param size     of the file, before it was scanned
+     * @param modified time of the file, before it was scanned
+     * @param index    of the file
+     *
+     * @throws IOException if any.
+     */
+    public static void write(final Path csvPath, final long size, final FileTime modified,
+            final RowIndex index) throws IOException
+    {
+        Path indexPath = indexPath(csvPath);
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        ByteArrayOutputStream headBytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream head = new DataOutputStream(headBytes))
+        {
+            head.writeInt(MAGIC);
+            head.writeInt(VERSION);
+            putString(head, csvPath.toAbsolutePath().toString());
+            head.writeLong(size);
+            head.writeLong(modified.toMillis());
+            head.writeLong(contentHash(csvPath));
+            head.writeInt(index.header().size());
+
+            for (int i = 0; i < index.header().size(); i++)
+            {
+                putString(head, index.header().get(i));
+                head.writeLong(index.stats().get(i).getNonEmpty());
+                head.writeInt(index.stats().get(i).getMaxLength());
+            }
+
+            head.writeInt(index.rowCount());
+        }
+
+        try (FileChannel channel = FileChannel.open(tempPath, CREATE, TRUNCATE_EXISTING, WRITE))
+        {
+            channel.write(ByteBuffer.wrap(headBytes.toByteArray()));
+
+            long[] offsets = index.offsets();
+            ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_LONGS * Long.BYTES);
+
+            for (int i = 0; i <= index.rowCount(); i += WRITE_BUFFER_LONGS)
+            {
+                int count = Math.min(WRITE_BUFFER_LONGS, index.rowCount() + 1 - i);
+                buf.clear();
+                buf.asLongBuffer().put(offsets, i, count);
+                buf.limit(count * Long.BYTES);
+
+                while (buf.hasRemaining())
+                {
+                    channel.write(buf);
+                }
+            }
+        }
+
+        Files.move(tempPath, indexPath, REPLACE_EXISTING);
+    }
+
+    /**
+     * Hash a sample of the contents of a file.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @return the hash
+     *
+     * @throws IOException if any.
+     */
+    static long contentHash(final Path csvPath) throws IOException
+    {
+        CRC32C crc = new CRC32C();
+
+        try (FileChannel channel = FileChannel.open(csvPath, READ))
+        {
+            long size = channel.size();
+            ByteBuffer buf = ByteBuffer.allocate(SAMPLE_SIZE);
+
+            for (int i = 0; i <= SAMPLE_COUNT; i++)
+            {
+                // The last sample is the end of the file.
+                long position = Math.max(0, Math.min(size / SAMPLE_COUNT * i, size - SAMPLE_SIZE));
+                buf.clear();
+
+                while (buf.hasRemaining() && channel.read(buf, position + buf.position()) > 0)
+                {
+                    // Keep reading.
+                }
+
+                buf.flip();
+                crc.update(buf);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static String getString(final ByteBuffer buf)
+    {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+
+        return new String(bytes, UTF_8);
+    }
+
+    private static Path indexPath(final Path csvPath)
+    {
+        Path absolute = csvPath.toAbsolutePath();
+        return absolute.resolveSibling("." + absolute.getFileName() + ".idx");
+    }
+
+    private static void putString(final DataOutputStream out, final String value)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private IndexFile()
+    {
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  File Name:    LoadOptions.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 31 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.List;
+
+/**
+ * How much of a CSV file to load.
+ * <p>
+ * A file can be loaded in full. Otherwise, to get a feel for a file too
+ * large to be worth loading in full, just a sample of its rows can be
+ * loaded. And when only a few of its columns are of interest, just those
+ * columns can be loaded. A table loaded from a sample, or from some of the
+ * columns, cannot be saved back to the file, so it is read-only.
+ * <p>
+ * When only the rows matching some condition are of interest, filters,
+ * such as {@code region == "WA"}, can be given. They are tested as the file
+ * is parsed, so the other rows are never stored. As they are still counted,
+ * and where they were in the file noted, a table loaded from the rows that
+ * pass the filters can be edited and saved, without losing the others.
+ *
+ * @param sampleInterval load one in every this many rows, starting with
+ *                       the first
+ * @param columns        indexes in the file of the columns to load, in
+ *                       file order, or {@code null} for all of them
+ * @param filters        the {@link RowFilter}s a row must pass to be
+ *                       loaded, such as "price&gt;=10"
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public record LoadOptions(int sampleInterval, List<Integer> columns, List<String> filters)
+{
+    /**
+     * Load all of the file.
+     */
+    public static final LoadOptions FULL = new LoadOptions(1, null, List.of());
+
+    /**
+     * Instantiate a new LoadOptions.
+     *
+     * @param sampleInterval load one in every this many rows, starting
+     *                       with the first
+     * @param columns        indexes in the file of the columns to load, in
+     *                       file order, or {@code null} for all of them
+     * @param filters        the filters a row must pass to be loaded, or
+     *                       {@code null} for none
+     *
+     * @throws IllegalArgumentException if the interval is less than one,
+     *                                  or no columns are given
+     */
+    public LoadOptions
+    {
+        if (sampleInterval < 1)
+        {
+            throw new IllegalArgumentException("Sample interval must be at least one: "
+                    + sampleInterval);
+        }
+
+        if (columns != null)
+        {
+            if (columns.isEmpty())
+            {
+                throw new IllegalArgumentException("At least one column must be loaded");
+            }
+
+            columns = List.copyOf(columns);
+        }
+
+        filters = filters != null ? List.copyOf(filters) : List.of();
+    }
+
+    /**
+     * Are only the rows passing the filters to be loaded?
+     *
+     * @return result
+     */
+    public boolean isFiltered()
+    {
+        return !filters.isEmpty();
+    }
+
+    /**
+     * Is the whole file to be loaded?
+     *
+     * @return result
+     */
+    public boolean isFull()
+    {
+        return !isSampled() && !isProjected() && !isFiltered();
+    }
+
+    /**
+     * Are only some of the columns to be loaded?
+     *
+     * @return result
+     */
+    public boolean isProjected()
+    {
+        return columns != null;
+    }
+
+    /**
+     * Is only a sample of the rows to be loaded?
+     *
+     * @return result
+     */
+    public boolean isSampled()
+    {
+        return sampleInterval > 1;
+    }
+
+    /**
+     * Get these options, loading only some of the columns.
+     *
+     * @param newColumns indexes in the file of the columns to load, in file
+     *                   order, or {@code null} for all of them
+     *
+     * @return the new options
+     */
+    public LoadOptions withColumns(final List<Integer> newColumns)
+    {
+        return new LoadOptions(sampleInterval, newColumns, filters);
+    }
+
+    /**
+     * Get these options, loading only the rows that pass some filters.
+     *
+     * @param newFilters the filters, such as "price&gt;=10", or
+     *                   {@code null} for none
+     *
+     * @return the new options
+     */
+    public LoadOptions withFilters(final List<String> newFilters)
+    {
+        return new LoadOptions(sampleInterval, columns, newFilters);
+    }
+
+    /**
+     * Get these options, loading a sample of rows spread evenly through
+     * the file.
+     *
+     * @param rowCount    number of rows in the file, or an estimate
+     * @param sampleCount number of rows wanted
+     *
+     * @return the new options
+     */
+    public LoadOptions withSample(final long rowCount, final int sampleCount)
+    {
+        long interval = (rowCount + sampleCount - 1) / Math.max(sampleCount, 1);
+
+        return new LoadOptions((int) Math.max(1, Math.min(interval, Integer.MAX_VALUE)), columns, filters);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ *  File Name:    LongCodec.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts the text of a value to and from a {@code long}, for the types
+ * stored in a {@link LongColumn}.
+ * <p>
+ * Some types can be written in more than one way, such as "true" or
+ * "TRUE". A boolean keeps the way it was written in its value; the other
+ * codecs format their values in the same way as the sample value they were
+ * created from.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public abstract class LongCodec
+{
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    private static final Pattern INTEGER = Pattern.compile("[-+]?\\d{1,18}");
+
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "\\d{4}-\\d{2}-\\d{2}([T ])\\d{2}:\\d{2}(:\\d{2}(\\.(\\d{1,6}))?)?");
+
+    /**
+     * Get a codec for the type of a sample value.
+     *
+     * @param sample value, not empty
+     *
+     * @return the codec, or {@code null} if the sample is not an integer,
+     *         date, timestamp or boolean
+     */
+    public static LongCodec forSample(final String sample)
+    {
+        if (INTEGER.matcher(sample).matches())
+        {
+            return new IntegerCodec();
+        } else if (DATE.matcher(sample).matches())
+        {
+            return new DateCodec();
+        }
+
+        Matcher matcher = TIMESTAMP.matcher(sample);
+
+        if (matcher.matches())
+        {
+            return new TimestampCodec(matcher.group(1).charAt(0),
+                    matcher.group(2) != null,
+                    matcher.group(4) != null ? matcher.group(4).length() : 0);
+        } else if (sample.equalsIgnoreCase("true") || sample.equalsIgnoreCase("false"))
+        {
+            return new BooleanCodec(sample);
+        }
+
+        return null;
+    }
+
+    /**
+     * Format a value.
+     *
+     * @param value to format
+     *
+     * @return the text
+     */
+    public abstract String format(long value);
+
+    /**
+     * Get the type of the values.
+     *
+     * @return the type
+     */
+    public abstract ColumnType getType();
+
+    /**
+     * Parse a value.
+     *
+     * @param text to parse
+     *
+     * @return the value
+     *
+     * @throws RuntimeException if the text is not of this type
+     */
+    public abstract long parse(String text);
+
+    /**
+     * Values are held as 4 for true, or 0 for false, plus the way it was
+     * written: 0 for "true", 1 for "True" or 2 for "TRUE". So the values
+     * still sort false before true.
+     */
+    private static class BooleanCodec extends LongCodec
+    {
+        private static final String[] FALSE_TEXTS =
+        {
+            "false", "False", "FALSE"
+        };
+
+        private static final String[] TRUE_TEXTS =
+        {
+            "true", "True", "TRUE"
+        };
+
+        /**
+         * Get the way a boolean was written.
+         *
+         * @param text of the boolean
+         *
+         * @return 0 for lower case, 1 for capitalised, 2 for upper case or
+         *         -1 for any other way
+         */
+        private static int caseOf(final String text)
+        {
+            if (text.equals(text.toLowerCase(Locale.ROOT)))
+            {
+                return 0;
+            } else if (text.equals(text.toUpperCase(Locale.ROOT)))
+            {
+                return 2;
+            } else if (Character.isUpperCase(text.charAt(0))
+                    && text.substring(1).equals(text.substring(1).toLowerCase(Locale.ROOT)))
+            {
+                return 1;
+            }
+
+            return -1;
+        }
+
+        /**
+         * The way the sample was written, for the values written in some
+         * other way, which are formatted differently.
+         */
+        private final int sampleCase;
+
+        BooleanCodec(final String sample)
+        {
+            sampleCase = Math.max(0, caseOf(sample));
+        }
+
+        @Override
+        public String format(long value)
+        {
+            return (value >= 4 ? TRUE_TEXTS : FALSE_TEXTS)[(int) (value & 3)];
+        }
+
+        @Override
+        public ColumnType getType()
+        {
+            return ColumnType.BOOLEAN;
+        }
+
+        @Override
+        public long parse(String text)
+        {
+            final int textCase = caseOf(text);
+            final long style = textCase >= 0 ? textCase : sampleCase;
+
+            if (text.equalsIgnoreCase("true"))
+            {
+                return 4 + style;
+            } else if (text.equalsIgnoreCase("false"))
+            {
+                return style;
+            }
+
+            throw new IllegalArgumentException(text);
+        }
+    }
+
+    /**
+     * Values are held as the number of days since 1970-01-01.
+     */
+    private static class DateCodec extends LongCodec
+    {
+        @Override
+        public String format(long value)
+        {
+            return LocalDate.ofEpochDay(value).toString();
+        }
+
+        @Override
+        public ColumnType getType()
+        {
+            return ColumnType.DATE;
+        }
+
+        @Override
+        public long parse(String text)
+        {
+            return LocalDate.parse(text).toEpochDay();
+        }
+    }
+
+    private static class IntegerCodec extends LongCodec
+    {
+        @Override
+        public String format(long value)
+        {
+            return Long.toString(value);
+        }
+
+        @Override
+        public ColumnType getType()
+        {
+            return ColumnType.LONG;
+        }
+
+        @Override
+        public long parse(String text)
+        {
+            return Long.parseLong(text);
+        }
+    }
+
+    /**
+     * Values are held as the number of microseconds since
+     * 1970-01-01T00:00, with no time zone.
+     */
+    private static class TimestampCodec extends LongCodec
+    {
+        private final DateTimeFormatter formatter;
+
+        TimestampCodec(final char separator, final boolean seconds, final int fraction)
+        {
+            DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder()
+                    .appendPattern("uuuu-MM-dd")
+                    .appendLiteral(separator)
+                    .appendPattern(seconds ? "HH:mm:ss" : "HH:mm");
+
+            if (fraction > 0)
+            {
+                builder.appendFraction(ChronoField.NANO_OF_SECOND, fraction, fraction, true);
+            }
+
+            formatter = builder.toFormatter().withResolverStyle(ResolverStyle.STRICT);
+        }
+
+        @Override
+        public String format(long value)
+        {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000L),
+                    (int) Math.floorMod(value, 1_000_000L) * 1000, ZoneOffset.UTC);
+
+            return formatter.format(time);
+        }
+
+        @Override
+        public ColumnType getType()
+        {
+            return ColumnType.TIMESTAMP;
+        }
+
+        @Override
+        public long parse(String text)
+        {
+            LocalDateTime time = LocalDateTime.parse(text, formatter);
+
+            return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+        }
+    }
+}
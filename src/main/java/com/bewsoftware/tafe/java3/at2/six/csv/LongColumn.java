@@ -0,0 +1,131 @@
+/*
+ *  File Name:    LongColumn.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+
+/**
+ * A {@link TypedColumn} of integers, dates, timestamps or booleans, held
+ * as {@code long}s.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class LongColumn extends TypedColumn
+{
+    private final LongCodec codec;
+
+    private long[] values;
+
+    /**
+     * Instantiate a new, empty, LongColumn.
+     *
+     * @param codec    to convert the values to and from text
+     * @param capacity initial number of values to make room for
+     */
+    public LongColumn(final LongCodec codec, final int capacity)
+    {
+        this.codec = codec;
+        this.values = new long[Math.max(capacity, 16)];
+    }
+
+    @Override
+    public double getDouble(int index)
+    {
+        return getLong(index);
+    }
+
+    /**
+     * Get a value as it is stored.
+     *
+     * @param index of a value that is not null
+     *
+     * @return the value
+     */
+    public long getLong(int index)
+    {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Column newEmpty()
+    {
+        return new LongColumn(codec, 0);
+    }
+
+    @Override
+    public void trim()
+    {
+        if (values.length > size())
+        {
+            values = Arrays.copyOf(values, size());
+        }
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity)
+    {
+        if (capacity > values.length)
+        {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length + (values.length >> 1)));
+        }
+    }
+
+    @Override
+    protected String format(int index)
+    {
+        return codec.format(values[index]);
+    }
+
+    @Override
+    protected ColumnType getValueType()
+    {
+        return codec.getType();
+    }
+
+    @Override
+    protected boolean parse(int index, String text)
+    {
+        try
+        {
+            values[index] = codec.parse(text);
+            return true;
+        } catch (RuntimeException ex)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    protected long valuesMemoryUsage()
+    {
+        return values.length * 8L;
+    }
+}
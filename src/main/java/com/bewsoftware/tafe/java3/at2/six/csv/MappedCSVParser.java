@@ -0,0 +1,899 @@
+/*
+ *  File Name:    MappedCSVParser.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 19 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A CSV parser that memory-maps the file, and parses it in parallel.
+ * <p>
+ * The file is split into chunks, each ending on a record boundary. To
+ * find those boundaries without a sequential scan, the quote characters
+ * in each raw chunk are counted in parallel. The parity of the running
+ * total tells whether a chunk starts inside a quoted field, so the end
+ * of the first record in the chunk can be found locally. Each chunk is
+ * then parsed on its own {@link ForkJoinPool#commonPool() fork-join}
+ * worker, and the results are returned in file order.
+ *
+ * @implNote
+ * Minimum specification for compatible CSV files:
+ * <ol>
+ * <li>Delimiter is a comma: ','</li>
+ * <li>Quote character is the double quote: '"'</li>
+ * <li>Text is UTF-8 encoded</li>
+ * </ol>
+ * A quote character toggles the quoted state wherever it appears, and
+ * two quotes inside a quoted section stand for one literal quote. For
+ * well-formed files this is the same as RFC 4180. For malformed files,
+ * it keeps the chunk boundaries and the parser in agreement. Blank lines
+ * are skipped, and a carriage return before a line feed is dropped.
+ * <p>
+ * The parser can be given the {@link #setColumns(List) columns} wanted,
+ * by their index in the file. The other fields are skipped over, eight
+ * bytes at a time where they hold no delimiters or quotes, without being
+ * copied or handed on, so the handlers only see the fields wanted.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class MappedCSVParser implements Closeable
+{
+    /**
+     * Size of the first chunk, kept small so that the first records are
+     * available almost immediately.
+     */
+    public static final int FIRST_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Largest chunk size.
+     */
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Smallest chunk size, after the first chunk.
+     */
+    public static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte COMMA = ',';
+
+    /**
+     * A comma in every byte.
+     */
+    private static final long COMMAS = 0x2C2C_2C2C_2C2C_2C2CL;
+
+    private static final byte CR = '\r';
+
+    private static final long HIGHS = 0x7F7F_7F7F_7F7F_7F7FL;
+
+    private static final byte LF = '\n';
+
+    /**
+     * A line feed in every byte.
+     */
+    private static final long LFS = 0x0A0A_0A0A_0A0A_0A0AL;
+
+    private static final long ONES = 0x0101_0101_0101_0101L;
+
+    private static final byte QUOTE = '"';
+
+    /**
+     * A quote in every byte.
+     */
+    private static final long QUOTES = 0x2222_2222_2222_2222L;
+
+    /**
+     * Count the number of occurrences of a byte value in a buffer.
+     *
+     * @implNote
+     * The buffer is scanned eight bytes at a time, using SWAR (SIMD
+     * within a register) arithmetic to find the matching bytes.
+     *
+     * @param buf   buffer to scan
+     * @param from  index of the first byte to check
+     * @param to    index after the last byte to check
+     * @param value byte value to count
+     *
+     * @return the count
+     */
+    public static long countBytes(final ByteBuffer buf, final int from, final int to,
+            final byte value)
+    {
+        final long pattern = ONES * (value & 0xFF);
+        long count = 0;
+        int i = from;
+
+        for (; i + Long.BYTES <= to; i += Long.BYTES)
+        {
+            count += Long.bitCount(matches(buf.getLong(i), pattern));
+        }
+
+        for (; i < to; i++)
+        {
+            if (buf.get(i) == value)
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Find the bytes of a word that match a pattern.
+     *
+     * @param word    eight bytes
+     * @param pattern the byte value to find, repeated in each byte
+     *
+     * @return the high bit of each matching byte
+     */
+    private static long matches(final long word, final long pattern)
+    {
+        long x = word ^ pattern;
+
+        // High bit of each byte of 't' is set, if that byte of 'x' is non-zero.
+        long t = ((x & HIGHS) + HIGHS) | x;
+
+        return ~(t | HIGHS);
+    }
+
+    private volatile boolean cancelled;
+
+    private final FileChannel channel;
+
+    private final ForkJoinPool pool;
+
+    private final long size;
+
+    /**
+     * wanted[i] is true if column 'i' is to be handed on, or {@code null}
+     * to hand on every column.
+     */
+    private boolean[] wanted = null;
+
+    /**
+     * Open a CSV file for parsing.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @throws IOException if any
+     */
+    public MappedCSVParser(final Path csvPath) throws IOException
+    {
+        this.channel = FileChannel.open(csvPath, READ);
+        this.size = channel.size();
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Stop any parsing that is still in progress. The outstanding results
+     * will complete with a {@link CancellationException}.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Count the records in the file, including the column headings, without
+     * parsing it.
+     * <p>
+     * Line feeds inside quoted fields are not counted, so the count is
+     * exact, except that blank lines, which the parser skips, are counted.
+     *
+     * @implNote
+     * The file is scanned in parallel, in the same chunks as
+     * {@link #parseAsync(IntFunction)}, eight bytes at a time, looking for
+     * line feeds and quotes together. For each chunk, the line feeds are
+     * counted as if it started outside a quoted field, and the quotes are
+     * counted too. Once the chunks are combined in order, the parity of the
+     * quotes before each chunk tells which of its line feeds end records.
+     *
+     * @return the count
+     */
+    public long countRecords()
+    {
+        final long[] points = splitPoints();
+        List<CompletableFuture<long[]>> counts = new ArrayList<>();
+
+        for (int i = 0; i + 1 < points.length; i++)
+        {
+            final long from = points[i];
+            final long to = points[i + 1];
+
+            counts.add(CompletableFuture.supplyAsync(() -> countLines(from, to), pool));
+        }
+
+        long records = 0;
+        boolean quoted = false;
+
+        for (CompletableFuture<long[]> future : counts)
+        {
+            long[] count = future.join();
+            records += quoted ? count[0] - count[1] : count[1];
+            quoted ^= (count[2] & 1) == 1;
+        }
+
+        if (size > 0 && map(size - 1, size).get(0) != LF)
+        {
+            // The last record has no line feed.
+            records++;
+        }
+
+        return records;
+    }
+
+    /**
+     * Get the number of chunks parsed at once.
+     *
+     * @return the number of parsing threads
+     */
+    public int getParallelism()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return size in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Parse one chunk of the file.
+     * <p>
+     * The handler's {@link RecordHandler#endChunk() endChunk()} is called
+     * once the chunk has been parsed.
+     *
+     * @param chunk   to parse
+     * @param handler to receive the records
+     *
+     * @throws IOException if any
+     */
+    public void parse(final Chunk chunk, final RecordHandler handler) throws IOException
+    {
+        if (chunk.end() - chunk.start() > Integer.MAX_VALUE)
+        {
+            throw new IOException("Record too large at offset: " + chunk.start());
+        }
+
+        if (chunk.end() > chunk.start())
+        {
+            parse(chunk.start(), map(chunk.start(), chunk.end()), handler);
+        }
+
+        handler.endChunk();
+    }
+
+    /**
+     * Parse the whole file in parallel.
+     * <p>
+     * A new handler is obtained from the factory for each chunk, given the
+     * chunk's index. The futures are listed in file order, and each
+     * completes with its chunk's handler once that chunk has been parsed.
+     *
+     * @param <H>            type of handler
+     * @param handlerFactory supplies a new handler for each chunk
+     *
+     * @return the list of futures, in file order
+     */
+    public <H extends RecordHandler> List<CompletableFuture<H>> parseAsync(
+            final IntFunction<H> handlerFactory)
+    {
+        return parseAsync(handlerFactory, index -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Parse the whole file in parallel, holding each chunk back until the
+     * caller is ready for it.
+     * <p>
+     * As {@link #parseAsync(IntFunction)}, except that a chunk is not parsed
+     * until the future given by the gate, for its index, has completed. A
+     * caller that takes the chunks in order can so keep only a few of them
+     * parsed ahead of it, without tying up any thread as they wait.
+     *
+     * @param <H>            type of handler
+     * @param handlerFactory supplies a new handler for each chunk
+     * @param gate           supplies the future to wait for before parsing
+     *                       each chunk, given the chunk's index
+     *
+     * @return the list of futures, in file order
+     */
+    @SuppressWarnings(
+    {
+        "rawtypes", "unchecked"
+    })
+    public <H extends RecordHandler> List<CompletableFuture<H>> parseAsync(
+            final IntFunction<H> handlerFactory, final IntFunction<CompletableFuture<?>> gate)
+    {
+        final long[] points = splitPoints();
+        final int n = points.length - 1;
+
+        // Is the start of each raw chunk inside a quoted field?
+        CompletableFuture<Boolean>[] inQuotes = new CompletableFuture[n];
+        inQuotes[0] = CompletableFuture.completedFuture(false);
+
+        for (int i = 1; i < n; i++)
+        {
+            final long from = points[i - 1];
+            final long to = points[i];
+
+            inQuotes[i] = inQuotes[i - 1].thenCombine(
+                    CompletableFuture.supplyAsync(() -> countQuotes(from, to), pool),
+                    (quoted, count) -> quoted ^ ((count & 1) == 1));
+        }
+
+        // Where does the first record begin, in each raw chunk?
+        CompletableFuture<Long>[] starts = new CompletableFuture[n];
+        starts[0] = CompletableFuture.completedFuture(0L);
+
+        for (int i = 1; i < n; i++)
+        {
+            final long from = points[i];
+            final long to = points[i + 1];
+
+            starts[i] = inQuotes[i].thenApplyAsync(quoted -> findRecordStart(from, to, quoted), pool);
+        }
+
+        // A chunk without a record boundary is merged into the one before it.
+        CompletableFuture<Long>[] ends = new CompletableFuture[n];
+        ends[n - 1] = CompletableFuture.completedFuture(size);
+
+        for (int i = n - 2; i >= 0; i--)
+        {
+            final CompletableFuture<Long> nextEnd = ends[i + 1];
+
+            ends[i] = starts[i + 1].thenCompose(start -> start >= 0
+                    ? CompletableFuture.completedFuture(start)
+                    : nextEnd);
+        }
+
+        List<CompletableFuture<H>> results = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++)
+        {
+            final int index = i;
+            final CompletableFuture<Long> ready
+                    = starts[i].thenCombine(gate.apply(i), (start, open) -> start);
+
+            results.add(ready.thenCombineAsync(ends[i], (start, end) ->
+            {
+                H handler = handlerFactory.apply(index);
+
+                if (start >= 0)
+                {
+                    try
+                    {
+                        parse(new Chunk(start, end), handler);
+                    } catch (IOException ex)
+                    {
+                        throw new UncheckedIOException(ex);
+                    }
+                } else
+                {
+                    handler.endChunk();
+                }
+
+                return handler;
+            }, pool));
+        }
+
+        return results;
+    }
+
+    /**
+     * Read the column headings, from the first record of the file.
+     * <p>
+     * Only the start of the file is parsed, so this is quick however large
+     * the file is.
+     *
+     * @return the headings, which are empty if the file is
+     *
+     * @throws IOException if any
+     */
+    public String[] readHeader() throws IOException
+    {
+        List<String[]> records = readRecords(1);
+
+        return records.isEmpty() ? new String[0] : records.get(0);
+    }
+
+    /**
+     * Read the first records of the file, starting with the column
+     * headings.
+     * <p>
+     * Only the start of the file is parsed, so this is quick however large
+     * the file is.
+     *
+     * @param count most records to read
+     *
+     * @return the records, which are fewer if the file is shorter
+     *
+     * @throws IOException if any
+     */
+    public List<String[]> readRecords(final int count) throws IOException
+    {
+        final List<String[]> records = new ArrayList<>();
+        final List<String> fields = new ArrayList<>();
+        final long[] lastEnd = new long[1];
+        long end = Math.min(size, FIRST_CHUNK_SIZE);
+
+        while (true)
+        {
+            records.clear();
+            lastEnd[0] = 0;
+
+            parse(new Chunk(0, end), new RecordHandler()
+            {
+                @Override
+                public void endRecord(long offset)
+                {
+                    if (records.size() < count)
+                    {
+                        records.add(fields.toArray(new String[fields.size()]));
+                        lastEnd[0] = offset;
+                    }
+                }
+
+                @Override
+                public void field(byte[] bytes, int offset, int length)
+                {
+                    if (records.size() < count)
+                    {
+                        fields.add(new String(bytes, offset, length, UTF_8));
+                    }
+                }
+
+                @Override
+                public void startRecord(long offset)
+                {
+                    fields.clear();
+                }
+            });
+
+            if (end == size || (records.size() == count && lastEnd[0] < end))
+            {
+                return records;
+            }
+
+            // The last record may have been cut short by the end of the chunk.
+            end = Math.min(size, end * 4);
+        }
+    }
+
+    /**
+     * Set the columns to hand on to the handlers. The fields of the other
+     * columns are skipped over.
+     *
+     * @param columns indexes in the file of the columns wanted, or
+     *                {@code null} for all of them
+     */
+    public void setColumns(final List<Integer> columns)
+    {
+        if (columns == null)
+        {
+            wanted = null;
+            return;
+        }
+
+        boolean[] newWanted = new boolean[columns.stream().mapToInt(i -> i + 1).max().orElse(0)];
+
+        for (int column : columns)
+        {
+            newWanted[column] = true;
+        }
+
+        wanted = newWanted;
+    }
+
+    /**
+     * Count the line feeds and quote characters in a section of the file.
+     *
+     * @param from start offset
+     * @param to   end offset
+     *
+     * @return the number of line feeds; of line feeds outside quoted
+     *         fields, if the section starts outside one; and of quotes
+     */
+    private long[] countLines(final long from, final long to)
+    {
+        checkCancelled();
+        final ByteBuffer buf = map(from, to);
+        final int limit = buf.limit();
+        long lines = 0;
+        long unquotedLines = 0;
+        long quotes = 0;
+        boolean quoted = false;
+        int i = 0;
+
+        for (; i + Long.BYTES <= limit; i += Long.BYTES)
+        {
+            long word = buf.getLong(i);
+            int lfs = Long.bitCount(matches(word, LFS));
+            long quoteBits = matches(word, QUOTES);
+            lines += lfs;
+
+            if (quoteBits == 0)
+            {
+                if (!quoted)
+                {
+                    unquotedLines += lfs;
+                }
+
+                continue;
+            }
+
+            quotes += Long.bitCount(quoteBits);
+
+            // Follow the quoted state through this word a byte at a time.
+            for (int j = i; j < i + Long.BYTES; j++)
+            {
+                byte b = buf.get(j);
+
+                if (b == QUOTE)
+                {
+                    quoted = !quoted;
+                } else if (b == LF && !quoted)
+                {
+                    unquotedLines++;
+                }
+            }
+        }
+
+        for (; i < limit; i++)
+        {
+            byte b = buf.get(i);
+
+            if (b == QUOTE)
+            {
+                quoted = !quoted;
+                quotes++;
+            } else if (b == LF)
+            {
+                lines++;
+
+                if (!quoted)
+                {
+                    unquotedLines++;
+                }
+            }
+        }
+
+        return new long[]
+        {
+            lines, unquotedLines, quotes
+        };
+    }
+
+    /**
+     * Count the quote characters in a section of the file.
+     *
+     * @param from start offset
+     * @param to   end offset
+     *
+     * @return the count
+     */
+    private long countQuotes(final long from, final long to)
+    {
+        checkCancelled();
+        ByteBuffer buf = map(from, to);
+        return countBytes(buf, 0, buf.limit(), QUOTE);
+    }
+
+    private void checkCancelled()
+    {
+        if (cancelled)
+        {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Find the start of the first record after an offset.
+     *
+     * @param from     start offset
+     * @param to       end offset
+     * @param inQuotes is {@code from} inside a quoted field?
+     *
+     * @return offset of the start of the record, or -1 if there isn't one
+     *         before {@code to}
+     */
+    private long findRecordStart(final long from, final long to, final boolean inQuotes)
+    {
+        checkCancelled();
+        ByteBuffer buf = map(from, to);
+        boolean quoted = inQuotes;
+
+        for (int i = 0; i < buf.limit(); i++)
+        {
+            byte b = buf.get(i);
+
+            if (b == QUOTE)
+            {
+                quoted = !quoted;
+            } else if (b == LF && !quoted)
+            {
+                return from + i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Map a section of the file into memory.
+     *
+     * @param from start offset
+     * @param to   end offset
+     *
+     * @return the mapped buffer
+     */
+    private MappedByteBuffer map(final long from, final long to)
+    {
+        try
+        {
+            return channel.map(READ_ONLY, from, to - from);
+        } catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Parse the records in the buffer.
+     *
+     * @param base    file offset of the start of the buffer
+     * @param buf     mapped section of the file
+     * @param handler to receive the records
+     */
+    private void parse(final long base, final ByteBuffer buf, final RecordHandler handler)
+    {
+        final int limit = buf.limit();
+        byte[] field = new byte[256];
+        int pos = 0;
+
+        // Skip any UTF-8 byte order mark.
+        if (base == 0 && limit >= 3
+                && buf.get(0) == (byte) 0xEF
+                && buf.get(1) == (byte) 0xBB
+                && buf.get(2) == (byte) 0xBF)
+        {
+            pos = 3;
+        }
+
+        while (pos < limit)
+        {
+            checkCancelled();
+
+            // Skip blank lines.
+            if (buf.get(pos) == LF)
+            {
+                pos++;
+                continue;
+            }
+
+            if (buf.get(pos) == CR && pos + 1 < limit && buf.get(pos + 1) == LF)
+            {
+                pos += 2;
+                continue;
+            }
+
+            handler.startRecord(base + pos);
+            boolean endOfRecord = false;
+            int column = 0;
+
+            while (!endOfRecord)
+            {
+                if (wanted != null && (column >= wanted.length || !wanted[column]))
+                {
+                    pos = skipField(buf, pos, limit);
+                    endOfRecord = pos >= limit || buf.get(pos - 1) == LF;
+                    column++;
+                    continue;
+                }
+
+                column++;
+                boolean quoted = false;
+                boolean endOfField = false;
+                boolean trailingCR = false;
+                int length = 0;
+
+                while (!endOfField && pos < limit)
+                {
+                    byte b = buf.get(pos++);
+
+                    if (quoted)
+                    {
+                        if (b == QUOTE)
+                        {
+                            if (pos < limit && buf.get(pos) == QUOTE)
+                            {
+                                pos++;
+                            } else
+                            {
+                                quoted = false;
+                                continue;
+                            }
+                        }
+                    } else if (b == COMMA)
+                    {
+                        endOfField = true;
+                        continue;
+                    } else if (b == LF)
+                    {
+                        endOfField = true;
+                        endOfRecord = true;
+                        continue;
+                    } else if (b == QUOTE)
+                    {
+                        quoted = true;
+                        continue;
+                    }
+
+                    if (length == field.length)
+                    {
+                        field = Arrays.copyOf(field, length * 2);
+                    }
+
+                    field[length++] = b;
+                    trailingCR = b == CR && !quoted;
+                }
+
+                if (pos >= limit)
+                {
+                    endOfRecord = true;
+                }
+
+                if (endOfRecord && trailingCR)
+                {
+                    length--;
+                }
+
+                handler.field(field, 0, length);
+            }
+
+            handler.endRecord(base + pos);
+        }
+    }
+
+    /**
+     * Skip over a field.
+     *
+     * @param buf   mapped section of the file
+     * @param pos   index of the start of the field
+     * @param limit index of the end of the section
+     *
+     * @return the index after the comma or line feed that ends the field,
+     *         or the limit
+     */
+    private int skipField(final ByteBuffer buf, final int pos, final int limit)
+    {
+        boolean quoted = false;
+        int i = pos;
+
+        while (i < limit)
+        {
+            if (i + Long.BYTES <= limit)
+            {
+                long word = buf.getLong(i);
+
+                // Only a quote can end a quoted section.
+                long stops = quoted
+                        ? matches(word, QUOTES)
+                        : matches(word, COMMAS) | matches(word, LFS) | matches(word, QUOTES);
+
+                if (stops == 0)
+                {
+                    i += Long.BYTES;
+                    continue;
+                }
+            }
+
+            byte b = buf.get(i++);
+
+            if (b == QUOTE)
+            {
+                quoted = !quoted;
+            } else if (!quoted && (b == COMMA || b == LF))
+            {
+                return i;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Work out the raw chunk boundaries: a small first chunk, then evenly
+     * sized chunks, enough to keep every worker busy.
+     *
+     * @return the offsets, starting with zero and ending with the file size
+     */
+    private long[] splitPoints()
+    {
+        if (size <= FIRST_CHUNK_SIZE)
+        {
+            return new long[]
+            {
+                0, size
+            };
+        }
+
+        long rest = size - FIRST_CHUNK_SIZE;
+        long chunkSize = rest / (pool.getParallelism() * 4L);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+        int count = (int) ((rest + chunkSize - 1) / chunkSize);
+
+        long[] points = new long[count + 2];
+        points[1] = FIRST_CHUNK_SIZE;
+
+        for (int i = 1; i <= count; i++)
+        {
+            points[i + 1] = FIRST_CHUNK_SIZE + rest * i / count;
+        }
+
+        return points;
+    }
+
+    /**
+     * A section of the file, starting and ending on record boundaries.
+     *
+     * @param start offset of the first byte
+     * @param end   offset after the last byte
+     */
+    public static record Chunk(long start, long end)
+    {
+    }
+}
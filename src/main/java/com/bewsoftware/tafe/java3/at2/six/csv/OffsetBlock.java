@@ -0,0 +1,169 @@
+/*
+ *  File Name:    OffsetBlock.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The file offsets of a block of consecutive rows.
+ * <p>
+ * This is all that a {@link PagedTable} keeps of each row. The values
+ * themselves are skipped over, except for the column headings, and the
+ * {@link ColumnStats statistics} of each column.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class OffsetBlock implements ParsedBlock
+{
+    private long endOffset;
+
+    private int fieldIndex;
+
+    private String[] header;
+
+    private List<String> headerFields;
+
+    private int rowCount;
+
+    private long[] starts;
+
+    private final List<ColumnStats> stats;
+
+    /**
+     * Instantiate a new OffsetBlock.
+     *
+     * @param hasHeader the first record holds the column headings
+     */
+    public OffsetBlock(final boolean hasHeader)
+    {
+        this.headerFields = hasHeader ? new ArrayList<>() : null;
+        this.starts = new long[1024];
+        this.stats = new ArrayList<>();
+    }
+
+    @Override
+    public void endRecord(long offset)
+    {
+        if (headerFields != null)
+        {
+            header = headerFields.toArray(new String[headerFields.size()]);
+            headerFields = null;
+        } else
+        {
+            rowCount++;
+        }
+
+        endOffset = offset;
+    }
+
+    @Override
+    public void field(byte[] bytes, int offset, int length)
+    {
+        if (headerFields != null)
+        {
+            headerFields.add(new String(bytes, offset, length, UTF_8));
+        } else
+        {
+            if (fieldIndex == stats.size())
+            {
+                stats.add(new ColumnStats());
+            }
+
+            stats.get(fieldIndex).add(length);
+        }
+
+        fieldIndex++;
+    }
+
+    @Override
+    public long getEndOffset()
+    {
+        return endOffset;
+    }
+
+    @Override
+    public String[] getHeader()
+    {
+        return header;
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the file offset of a row.
+     *
+     * @param row index within this block
+     *
+     * @return the offset of its first byte
+     */
+    public long getStart(final int row)
+    {
+        if (row < 0 || row >= rowCount)
+        {
+            throw new IndexOutOfBoundsException(row);
+        }
+
+        return starts[row];
+    }
+
+    /**
+     * Get the statistics of the columns found in this block.
+     *
+     * @return the statistics, by column
+     */
+    public List<ColumnStats> getStats()
+    {
+        return stats;
+    }
+
+    @Override
+    public void startRecord(long offset)
+    {
+        fieldIndex = 0;
+
+        if (headerFields == null)
+        {
+            if (rowCount == starts.length)
+            {
+                starts = Arrays.copyOf(starts, rowCount * 2);
+            }
+
+            starts[rowCount] = offset;
+        }
+    }
+}
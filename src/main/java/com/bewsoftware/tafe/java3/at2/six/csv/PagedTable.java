@@ -0,0 +1,545 @@
+/*
+ *  File Name:    PagedTable.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.MappedCSVParser.Chunk;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The contents of a CSV file that is too large to be held in memory.
+ * <p>
+ * Only the file offset of each row is kept, in a single {@code long}
+ * array. The rows are read back from the file a page at a time, when
+ * they are first asked for, and are held in a small least recently used
+ * cache of {@link RowBlock}s. The pages either side of each page read
+ * are read ahead in the background, so scrolling rarely has to wait.
+ * <p>
+ * So, apart from the offsets, the memory used depends on the number of
+ * rows being looked at, not on the size of the file.
+ * <p>
+ * Edited rows are held in memory, in full, until the table is closed.
+ * <p>
+ * Once loaded, the offsets can be saved in an {@link IndexFile}, from
+ * which the table can be re-created without scanning the file again.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class PagedTable implements BlockTable<OffsetBlock>
+{
+    /**
+     * Maximum number of pages held in the cache.
+     */
+    public static final int CACHE_PAGES = 64;
+
+    /**
+     * Number of rows per page.
+     */
+    public static final int PAGE_SIZE = 1024;
+
+    /**
+     * Is a file too large to be loaded into memory?
+     * <p>
+     * Held by column, a file takes up about twice its size on the heap.
+     * This leaves plenty of room for everything else.
+     *
+     * @param fileSize in bytes
+     *
+     * @return result
+     */
+    public static boolean isPagingNeeded(final long fileSize)
+    {
+        return fileSize > Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Most recently used last.
+     */
+    private final Map<Integer, RowBlock> cache;
+
+    /**
+     * Number of rows added by {@link #addRow(String[])}, after the rows of
+     * the file.
+     */
+    private int addedRows;
+
+    private final Path csvPath;
+
+    /**
+     * Number of values replaced.
+     */
+    private long editCount;
+
+    /**
+     * Edited rows, and the rows added, by row index.
+     */
+    private final Map<Integer, String[]> edits;
+
+    /**
+     * Was this table created from an {@link IndexFile}?
+     */
+    private final boolean fromIndex;
+
+    private final List<String> header;
+
+    /**
+     * offsets[i] is the file offset of row 'i', and offsets[rowCount] is
+     * the offset after the last row.
+     */
+    private long[] offsets;
+
+    private MappedCSVParser parser;
+
+    /**
+     * Pages being read ahead.
+     */
+    private final Set<Integer> pending;
+
+    private final ForkJoinPool pool;
+
+    private int rowCount;
+
+    private final List<ColumnStats> stats;
+
+    /**
+     * Instantiate a new, empty, PagedTable.
+     * <p>
+     * The file is not opened until the first page is read.
+     *
+     * @param csvPath Path to the CSV file.
+     * @param header  the column headings
+     */
+    public PagedTable(final Path csvPath, final String[] header)
+    {
+        this(csvPath, Arrays.asList(header.clone()), new long[1024], 0, null);
+    }
+
+    /**
+     * Instantiate a new PagedTable, holding all of the rows of an index.
+     *
+     * @param csvPath Path to the CSV file.
+     * @param index   of the file
+     */
+    public PagedTable(final Path csvPath, final RowIndex index)
+    {
+        this(csvPath, index.header(), index.offsets(), index.rowCount(), index.stats());
+    }
+
+    private PagedTable(final Path csvPath, final List<String> header,
+            final long[] offsets, final int rowCount, final List<ColumnStats> stats)
+    {
+        this.csvPath = csvPath;
+        this.header = Collections.unmodifiableList(new ArrayList<>(header));
+        this.offsets = offsets;
+        this.rowCount = rowCount;
+        this.fromIndex = stats != null;
+        this.stats = new ArrayList<>();
+
+        for (int i = 0; i < header.size(); i++)
+        {
+            this.stats.add(stats != null ? stats.get(i) : new ColumnStats());
+        }
+
+        this.cache = new LinkedHashMap<>(CACHE_PAGES * 2, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, RowBlock> eldest)
+            {
+                return size() > CACHE_PAGES;
+            }
+        };
+        this.edits = new HashMap<>();
+        this.pending = new HashSet<>();
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    @Override
+    public void addBlock(final OffsetBlock block)
+    {
+        int count = block.getRowCount();
+
+        if (count == 0)
+        {
+            return;
+        }
+
+        if (rowCount + count + 1 > offsets.length)
+        {
+            offsets = Arrays.copyOf(offsets, Math.max(rowCount + count + 1, offsets.length * 2));
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            offsets[rowCount + i] = block.getStart(i);
+        }
+
+        List<ColumnStats> blockStats = block.getStats();
+
+        for (int i = 0; i < Math.min(stats.size(), blockStats.size()); i++)
+        {
+            stats.get(i).merge(blockStats.get(i));
+        }
+
+        synchronized (cache)
+        {
+            // The last page may have been read before it was full.
+            cache.remove(rowCount / PAGE_SIZE);
+        }
+
+        rowCount += count;
+        offsets[rowCount] = block.getEndOffset();
+    }
+
+    /**
+     * The row is held in memory, along with the edited rows. No more
+     * blocks may be added once a row has been added.
+     */
+    @Override
+    public int addRow(final String[] values)
+    {
+        int row = rowCount + addedRows++;
+        edits.put(row, values.clone());
+
+        return row;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (parser != null)
+        {
+            try
+            {
+                parser.close();
+            } catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public String get(final int row, final int column)
+    {
+        String[] edited = edits.get(checkRow(row));
+
+        if (edited != null)
+        {
+            return edited[column];
+        }
+
+        return page(row / PAGE_SIZE).get(row % PAGE_SIZE, column);
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return header.size();
+    }
+
+    @Override
+    public long getEditCount()
+    {
+        return editCount;
+    }
+
+    @Override
+    public List<String> getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Get the index of the file, for saving in an {@link IndexFile}.
+     * <p>
+     * The index shares the table's offsets, so no more rows may be added
+     * while it is in use.
+     *
+     * @return the index
+     */
+    public RowIndex getIndex()
+    {
+        return new RowIndex(header, offsets, rowCount, List.copyOf(stats));
+    }
+
+    @Override
+    public String[] getRow(final int row)
+    {
+        String[] edited = edits.get(checkRow(row));
+
+        if (edited != null)
+        {
+            return edited.clone();
+        }
+
+        RowBlock page = page(row / PAGE_SIZE);
+        String[] values = new String[header.size()];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = page.get(row % PAGE_SIZE, i);
+        }
+
+        return values;
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rowCount + addedRows;
+    }
+
+    @Override
+    public long getRowEnd(final int row)
+    {
+        return checkRow(row) < rowCount && !edits.containsKey(row) ? offsets[row + 1] : -1;
+    }
+
+    @Override
+    public long getRowStart(final int row)
+    {
+        return checkRow(row) < rowCount && !edits.containsKey(row) ? offsets[row] : -1;
+    }
+
+    /**
+     * Get the statistics of a column.
+     *
+     * @param column index
+     *
+     * @return the statistics
+     */
+    public ColumnStats getStats(final int column)
+    {
+        return stats.get(column);
+    }
+
+    /**
+     * Was this table created from an {@link IndexFile}, rather than by
+     * scanning the file?
+     *
+     * @return result
+     */
+    public boolean isFromIndex()
+    {
+        return fromIndex;
+    }
+
+    /**
+     * Includes the row offsets, the cached pages and the edited rows.
+     */
+    @Override
+    public long memoryUsage()
+    {
+        long total = offsets.length * 8L;
+
+        synchronized (cache)
+        {
+            for (RowBlock page : cache.values())
+            {
+                total += page.memoryUsage();
+            }
+        }
+
+        for (String[] row : edits.values())
+        {
+            for (String value : row)
+            {
+                total += value.length() * 2L + 56;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Nothing to do, as the offsets are only copied when the block is
+     * added.
+     */
+    @Override
+    public void prepareBlock(final OffsetBlock block)
+    {
+        // NoOp
+    }
+
+    @Override
+    public void set(final int row, final int column, final String value)
+    {
+        edits.computeIfAbsent(checkRow(row), this::getRow)[column] = value;
+        editCount++;
+    }
+
+    private int checkRow(final int row)
+    {
+        if (row < 0 || row >= rowCount + addedRows)
+        {
+            throw new IndexOutOfBoundsException(row);
+        }
+
+        return row;
+    }
+
+    /**
+     * Get the part of the file holding a page.
+     *
+     * @param page index
+     *
+     * @return the chunk
+     */
+    private Chunk chunkOf(final int page)
+    {
+        int first = page * PAGE_SIZE;
+        int last = Math.min(first + PAGE_SIZE, rowCount);
+
+        return new Chunk(offsets[first], offsets[last]);
+    }
+
+    /**
+     * Get a page, reading it from the file if it is not in the cache.
+     * <p>
+     * Also starts reading ahead the pages either side of it.
+     *
+     * @param page index
+     *
+     * @return the page
+     */
+    private RowBlock page(final int page)
+    {
+        RowBlock block;
+
+        synchronized (cache)
+        {
+            block = cache.get(page);
+        }
+
+        if (block == null)
+        {
+            block = read(chunkOf(page));
+
+            synchronized (cache)
+            {
+                cache.put(page, block);
+            }
+        }
+
+        readAhead(page + 1);
+        readAhead(page - 1);
+
+        return block;
+    }
+
+    private synchronized MappedCSVParser parser() throws IOException
+    {
+        if (parser == null)
+        {
+            parser = new MappedCSVParser(csvPath);
+        }
+
+        return parser;
+    }
+
+    /**
+     * Read the rows of a page from the file.
+     *
+     * @param chunk part of the file holding the page
+     *
+     * @return the page
+     */
+    private RowBlock read(final Chunk chunk)
+    {
+        RowBlock block = new RowBlock(false);
+
+        try
+        {
+            parser().parse(chunk, block);
+        } catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        block.setColumnCount(header.size());
+
+        return block;
+    }
+
+    /**
+     * Read a full page in the background, if it is not already in the
+     * cache.
+     *
+     * @param page index
+     */
+    private void readAhead(final int page)
+    {
+        // A page that is not yet full may change before it has been read.
+        if (page < 0 || (page + 1) * PAGE_SIZE > rowCount)
+        {
+            return;
+        }
+
+        synchronized (cache)
+        {
+            if (cache.containsKey(page) || !pending.add(page))
+            {
+                return;
+            }
+        }
+
+        // Worked out here, as the offsets are only safe to read on this thread.
+        Chunk chunk = chunkOf(page);
+
+        CompletableFuture.supplyAsync(() -> read(chunk), pool)
+                .whenComplete((block, ex) ->
+                {
+                    synchronized (cache)
+                    {
+                        pending.remove(page);
+
+                        // Any failure is reported when the page is next asked for.
+                        if (block != null && !cache.containsKey(page))
+                        {
+                            cache.put(page, block);
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  File Name:    ParallelSort.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 24 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A stable, parallel merge sort of row indexes.
+ * <p>
+ * Like {@link java.util.Arrays#parallelSort(Object[]) Arrays.parallelSort},
+ * the array is split in halves until the pieces are small enough to sort
+ * on one thread, and the sorted pieces are then merged back together.
+ * Unlike it, this sorts an {@code int} array with a {@link RowComparator},
+ * so no row is ever boxed.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class ParallelSort
+{
+    /**
+     * Pieces this small are sorted by insertion.
+     */
+    private static final int INSERTION_THRESHOLD = 32;
+
+    /**
+     * Pieces this small are sorted on one thread.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    /**
+     * Sort an array of row indexes.
+     * <p>
+     * Rows that compare equal keep their order.
+     *
+     * @param rows       to sort
+     * @param comparator to order the rows by
+     * @param cancelled  checked now and then, to stop the sort early
+     *
+     * @throws CancellationException if the sort was cancelled, leaving
+     *                               the rows in no particular order
+     */
+    public static void sort(final int[] rows, final RowComparator comparator,
+            final BooleanSupplier cancelled)
+    {
+        int[] buffer = new int[rows.length];
+
+        ForkJoinPool.commonPool().invoke(
+                new SortAction(rows, buffer, 0, rows.length, comparator, cancelled));
+    }
+
+    /**
+     * Merge two sorted, adjacent, runs.
+     */
+    private static void merge(final int[] rows, final int[] buffer,
+            final int from, final int mid, final int to, final RowComparator comparator)
+    {
+        if (comparator.compare(rows[mid - 1], rows[mid]) <= 0)
+        {
+            // Already in order.
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, mid - from);
+
+        int left = from;
+        int right = mid;
+        int out = from;
+
+        while (left < mid && right < to)
+        {
+            // Taking from the left on ties keeps the sort stable.
+            rows[out++] = comparator.compare(buffer[left], rows[right]) <= 0
+                    ? buffer[left++]
+                    : rows[right++];
+        }
+
+        System.arraycopy(buffer, left, rows, out, mid - left);
+    }
+
+    private static void sequentialSort(final int[] rows, final int[] buffer,
+            final int from, final int to, final RowComparator comparator)
+    {
+        if (to - from <= INSERTION_THRESHOLD)
+        {
+            for (int i = from + 1; i < to; i++)
+            {
+                int row = rows[i];
+                int j = i - 1;
+
+                while (j >= from && comparator.compare(rows[j], row) > 0)
+                {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+
+                rows[j + 1] = row;
+            }
+
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        sequentialSort(rows, buffer, from, mid, comparator);
+        sequentialSort(rows, buffer, mid, to, comparator);
+        merge(rows, buffer, from, mid, to, comparator);
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private ParallelSort()
+    {
+    }
+
+    private static class SortAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] buffer;
+
+        private final transient BooleanSupplier cancelled;
+
+        private final transient RowComparator comparator;
+
+        private final int from;
+
+        private final int[] rows;
+
+        private final int to;
+
+        SortAction(final int[] rows, final int[] buffer, final int from, final int to,
+                final RowComparator comparator, final BooleanSupplier cancelled)
+        {
+            this.rows = rows;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (cancelled.getAsBoolean())
+            {
+                throw new CancellationException();
+            }
+
+            if (to - from <= SEQUENTIAL_THRESHOLD)
+            {
+                sequentialSort(rows, buffer, from, to, comparator);
+            } else
+            {
+                int mid = (from + to) >>> 1;
+
+                invokeAll(new SortAction(rows, buffer, from, mid, comparator, cancelled),
+                        new SortAction(rows, buffer, mid, to, comparator, cancelled));
+
+                merge(rows, buffer, from, mid, to, comparator);
+            }
+        }
+    }
+}
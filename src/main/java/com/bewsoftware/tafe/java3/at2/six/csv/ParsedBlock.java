@@ -0,0 +1,59 @@
+/*
+ *  File Name:    ParsedBlock.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * The result of parsing one chunk of a CSV file.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public interface ParsedBlock extends RecordHandler
+{
+    /**
+     * Get the file offset after the last record parsed into this block.
+     *
+     * @return the offset, or zero if there were no records
+     */
+    public long getEndOffset();
+
+    /**
+     * Get the column headings, if this block started with them.
+     *
+     * @return the headings, or {@code null}
+     */
+    public String[] getHeader();
+
+    /**
+     * Get the number of rows in this block, not counting the headings.
+     *
+     * @return the count
+     */
+    public int getRowCount();
+}
@@ -0,0 +1,80 @@
+/*
+ *  File Name:    RecordHandler.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 19 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * Receives the records found by the {@link MappedCSVParser}, one field
+ * at a time.
+ * <p>
+ * Each handler is used by a single thread only, so implementations need
+ * not be thread-safe.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public interface RecordHandler
+{
+    /**
+     * Start of a new record.
+     *
+     * @param offset file offset of the first byte of the record
+     */
+    public void startRecord(long offset);
+
+    /**
+     * The next field of the current record.
+     * <p>
+     * The bytes are UTF-8 encoded, with the quoting already removed.
+     * They are only valid until this method returns.
+     *
+     * @param bytes  buffer holding the field
+     * @param offset start of the field in the buffer
+     * @param length number of bytes in the field
+     */
+    public void field(byte[] bytes, int offset, int length);
+
+    /**
+     * End of the current record.
+     *
+     * @param offset file offset of the first byte after the record,
+     *               including its line terminator
+     */
+    public void endRecord(long offset);
+
+    /**
+     * End of the chunk.
+     * <p>
+     * Called once, on the parsing thread, after the last record of the
+     * chunk. The default does nothing.
+     */
+    public default void endChunk()
+    {
+        // NoOp
+    }
+}
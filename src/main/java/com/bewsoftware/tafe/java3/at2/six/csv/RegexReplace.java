@@ -0,0 +1,374 @@
+/*
+ *  File Name:    RegexReplace.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 3 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression find and replace over some of the columns of a
+ * table.
+ * <p>
+ * As with {@link ParallelSort}, the rows are split in halves until the
+ * pieces are small enough to search on one thread, and the pieces are
+ * searched in parallel on the {@link ForkJoinPool#commonPool() common
+ * fork-join pool}, each with its own {@link Matcher} for each column. The
+ * table is only read, so the result can be previewed first. It is the list
+ * of values to change, in the order the rows were given, ready to be made
+ * in one go.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RegexReplace
+{
+    /**
+     * Pieces this small are searched on one thread.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    /**
+     * Check the group references in a replacement, as {@link Matcher}
+     * would only do so at the first match.
+     *
+     * @param pattern     to be replaced
+     * @param replacement to check
+     *
+     * @throws IllegalArgumentException if it refers to a group the pattern
+     *                                  does not have, or ends in '\' or '$'
+     */
+    private static void checkReplacement(final Pattern pattern, final String replacement)
+    {
+        final int groups = pattern.matcher("").groupCount();
+
+        for (int i = 0; i < replacement.length(); i++)
+        {
+            char c = replacement.charAt(i);
+
+            if (c != '\\' && c != '$')
+            {
+                continue;
+            }
+
+            if (++i == replacement.length())
+            {
+                throw new IllegalArgumentException("The replacement ends with '" + c + "'");
+            }
+
+            char next = replacement.charAt(i);
+
+            if (c == '$' && next != '{' && (next < '0' || next - '0' > groups))
+            {
+                throw new IllegalArgumentException("The replacement refers to group '"
+                        + next + "', but the pattern has " + groups + " groups");
+            }
+        }
+    }
+
+    private final int[] columns;
+
+    private final Pattern pattern;
+
+    private final String replacement;
+
+    /**
+     * Instantiate a new RegexReplace.
+     *
+     * @param pattern     to find
+     * @param replacement for each match, which may refer to its groups, as
+     *                    with {@link Matcher#replaceAll(String)}
+     * @param columns     indexes of the columns to search
+     *
+     * @throws IllegalArgumentException if the replacement is not valid for
+     *                                  the pattern
+     */
+    public RegexReplace(final Pattern pattern, final String replacement, final int[] columns)
+    {
+        checkReplacement(pattern, replacement);
+        this.pattern = pattern;
+        this.replacement = replacement;
+        this.columns = columns.clone();
+    }
+
+    /**
+     * Find the values to change.
+     *
+     * @param table     holding the rows, which must not change until this
+     *                  returns
+     * @param order     index of each table row to search, in order
+     * @param cancelled checked now and then, to stop early
+     *
+     * @return the changes, in the order of the rows
+     *
+     * @throws CancellationException if it was cancelled
+     */
+    public Changes find(final CSVTable table, final int[] order, final BooleanSupplier cancelled)
+    {
+        return ForkJoinPool.commonPool().invoke(
+                new FindTask(table, order, 0, order.length, cancelled));
+    }
+
+    /**
+     * Find the values to change in a piece of the rows.
+     */
+    private Changes sequentialFind(final CSVTable table, final int[] order,
+            final int from, final int to)
+    {
+        final Matcher[] matchers = new Matcher[columns.length];
+        Arrays.setAll(matchers, i -> pattern.matcher(""));
+
+        final Changes changes = new Changes(Math.min(to - from, 64));
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = from; i < to; i++)
+        {
+            final int row = order[i];
+            boolean rowChanged = false;
+
+            for (int c = 0; c < columns.length; c++)
+            {
+                final String value = table.get(row, columns[c]);
+                final Matcher matcher = matchers[c].reset(value);
+
+                if (!matcher.find())
+                {
+                    continue;
+                }
+
+                text.setLength(0);
+
+                do
+                {
+                    changes.matchCount++;
+                    matcher.appendReplacement(text, replacement);
+                } while (matcher.find());
+
+                matcher.appendTail(text);
+
+                if (!value.contentEquals(text))
+                {
+                    changes.add(row, columns[c], text.toString());
+                    rowChanged = true;
+                }
+            }
+
+            if (rowChanged)
+            {
+                changes.rowCount++;
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * The values to change, found by {@link #find find()}, and the counts
+     * to preview.
+     */
+    public static class Changes
+    {
+        private int[] columns;
+
+        private int count;
+
+        private long matchCount;
+
+        private int rowCount;
+
+        private int[] rows;
+
+        private String[] values;
+
+        private Changes(final int capacity)
+        {
+            this.columns = new int[capacity];
+            this.rows = new int[capacity];
+            this.values = new String[capacity];
+        }
+
+        /**
+         * Get the column of a change.
+         *
+         * @param index of the change
+         *
+         * @return the column index
+         */
+        public int getColumn(final int index)
+        {
+            return columns[index];
+        }
+
+        /**
+         * Get the number of values to change.
+         *
+         * @return the count
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Get the number of matches found, including those whose
+         * replacement leaves the value as it was.
+         *
+         * @return the count
+         */
+        public long getMatchCount()
+        {
+            return matchCount;
+        }
+
+        /**
+         * Get the table row of a change. The changes to a row are next to
+         * each other.
+         *
+         * @param index of the change
+         *
+         * @return the row index
+         */
+        public int getRow(final int index)
+        {
+            return rows[index];
+        }
+
+        /**
+         * Get the number of rows with a value to change.
+         *
+         * @return the count
+         */
+        public int getRowCount()
+        {
+            return rowCount;
+        }
+
+        /**
+         * Get the new value of a change.
+         *
+         * @param index of the change
+         *
+         * @return the value
+         */
+        public String getValue(final int index)
+        {
+            return values[index];
+        }
+
+        private void add(final int row, final int column, final String value)
+        {
+            if (count == rows.length)
+            {
+                int capacity = Math.max(16, count * 2);
+                columns = Arrays.copyOf(columns, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+
+            rows[count] = row;
+            columns[count] = column;
+            values[count] = value;
+            count++;
+        }
+
+        /**
+         * Add the changes of the piece of rows that follows on.
+         */
+        private Changes append(final Changes next)
+        {
+            if (count + next.count > rows.length)
+            {
+                int capacity = count + next.count;
+                columns = Arrays.copyOf(columns, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+
+            System.arraycopy(next.columns, 0, columns, count, next.count);
+            System.arraycopy(next.rows, 0, rows, count, next.count);
+            System.arraycopy(next.values, 0, values, count, next.count);
+            count += next.count;
+            matchCount += next.matchCount;
+            rowCount += next.rowCount;
+
+            return this;
+        }
+    }
+
+    private class FindTask extends RecursiveTask<Changes>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BooleanSupplier cancelled;
+
+        private final int from;
+
+        private final int[] order;
+
+        private final transient CSVTable table;
+
+        private final int to;
+
+        FindTask(final CSVTable table, final int[] order, final int from, final int to,
+                final BooleanSupplier cancelled)
+        {
+            this.table = table;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Changes compute()
+        {
+            if (cancelled.getAsBoolean())
+            {
+                throw new CancellationException();
+            }
+
+            if (to - from <= SEQUENTIAL_THRESHOLD)
+            {
+                return sequentialFind(table, order, from, to);
+            }
+
+            int mid = (from + to) >>> 1;
+            FindTask second = new FindTask(table, order, mid, to, cancelled);
+            second.fork();
+
+            Changes first = new FindTask(table, order, from, mid, cancelled).compute();
+
+            return first.append(second.join());
+        }
+    }
+}
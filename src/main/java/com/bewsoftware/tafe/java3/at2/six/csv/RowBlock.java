@@ -0,0 +1,793 @@
+/*
+ *  File Name:    RowBlock.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 20 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A block of consecutive rows, stored by column.
+ * <p>
+ * Each chunk of the file is parsed into its own block, which is then
+ * added, as is, to the {@link ColumnarTable}. While parsing, each column
+ * gets its own local {@link Dictionary}, which the table later merges
+ * into its shared one. Once the chunk has been parsed, columns of
+ * numbers, dates, timestamps or booleans are converted to
+ * {@link TypedColumn}s.
+ * <p>
+ * A block can keep just a sample of the records it is given, one in every
+ * so many. The rows of a sample do not follow on from each other in the
+ * file, so they have no file offsets.
+ * <p>
+ * Given a {@link RowSelector}, a block keeps only the records that pass its
+ * filters. The fields of each record are held until the record has been
+ * tested, and only those of a record kept are stored. The records left out
+ * are counted, and the file offsets of each run of them are kept, so that
+ * the rows kept can be saved without losing them.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RowBlock implements ParsedBlock
+{
+    /**
+     * Minimum number of rows before the cardinality of a column is judged.
+     */
+    private static final int MIN_ROWS = 1024;
+
+    /**
+     * Is there too many distinct values for a dictionary to pay off?
+     *
+     * @param distinct number of distinct values
+     * @param rows     number of rows
+     *
+     * @return result
+     */
+    static boolean isHighCardinality(final int distinct, final int rows)
+    {
+        return distinct > ColumnarTable.MAX_DICTIONARY_SIZE
+                || (rows >= MIN_ROWS && distinct > rows / 2);
+    }
+
+    private final List<Column> columns;
+
+    /**
+     * ends[i] is the file offset after row 'i', less the start offset, when
+     * the rows are selected, as they need not follow on from each other.
+     */
+    private int[] ends;
+
+    private long endOffset;
+
+    private int fieldIndex;
+
+    private String[] header;
+
+    private List<String> headerFields;
+
+    /**
+     * Is the last record given one that was left out?
+     */
+    private boolean lastSkipped;
+
+    /**
+     * The fields of the current record, one after another, while it is
+     * being selected.
+     */
+    private byte[] recordBytes;
+
+    /**
+     * Number of fields of the current record held.
+     */
+    private int recordFields;
+
+    /**
+     * File offset of the current record.
+     */
+    private long recordStart;
+
+    /**
+     * recordStarts[i] is the position in the record bytes of field 'i', and
+     * recordStarts[i + 1] that after it.
+     */
+    private int[] recordStarts;
+
+    /**
+     * Number of records given, not counting the headings.
+     */
+    private int records;
+
+    private int rowCount;
+
+    /**
+     * Keep one in every this many records.
+     */
+    private final int sampleInterval;
+
+    /**
+     * Chooses the records to keep, or {@code null} to keep them all.
+     */
+    private final RowSelector selector;
+
+    /**
+     * skippedAfter[i] is the row that run 'i' of records left out follows,
+     * or -1 if it comes before the first row of this block.
+     */
+    private int[] skippedAfter;
+
+    /**
+     * skippedEnds[i] is the file offset after run 'i' of records left out.
+     */
+    private long[] skippedEnds;
+
+    /**
+     * Number of runs of records left out.
+     */
+    private int skippedRanges;
+
+    /**
+     * Number of records left out, by the selector.
+     */
+    private int skippedRows;
+
+    /**
+     * skippedStarts[i] is the file offset of run 'i' of records left out.
+     */
+    private long[] skippedStarts;
+
+    /**
+     * The current record is not in the sample.
+     */
+    private boolean skipping;
+
+    /**
+     * File offset of the first row read from the file.
+     */
+    private long startOffset = -1;
+
+    /**
+     * starts[i] is the file offset of row 'i', less the start offset. Only
+     * the rows read from the file have one.
+     */
+    private int[] starts;
+
+    /**
+     * Number of rows read from the file.
+     */
+    private int startsCount;
+
+    /**
+     * Instantiate a new RowBlock.
+     *
+     * @param hasHeader the first record holds the column headings
+     */
+    public RowBlock(final boolean hasHeader)
+    {
+        this(hasHeader, 1);
+    }
+
+    /**
+     * Instantiate a new RowBlock, keeping a sample of the records.
+     *
+     * @param hasHeader      the first record holds the column headings
+     * @param sampleInterval keep one in every this many records, starting
+     *                       with the first
+     */
+    public RowBlock(final boolean hasHeader, final int sampleInterval)
+    {
+        this(hasHeader, sampleInterval, null);
+    }
+
+    /**
+     * Instantiate a new RowBlock, keeping only the records chosen by a
+     * selector.
+     *
+     * @param hasHeader      the first record holds the column headings
+     * @param sampleInterval keep one in every this many records, starting
+     *                       with the first
+     * @param selector       chooses the records to keep, and the fields of
+     *                       them to store, or {@code null} to keep them all
+     */
+    public RowBlock(final boolean hasHeader, final int sampleInterval, final RowSelector selector)
+    {
+        this.sampleInterval = sampleInterval;
+        this.selector = selector;
+        this.columns = new ArrayList<>();
+        this.headerFields = hasHeader ? new ArrayList<>() : null;
+        this.starts = new int[1024];
+
+        if (selector != null)
+        {
+            this.ends = new int[starts.length];
+            this.recordBytes = new byte[1024];
+            this.recordStarts = new int[16];
+            this.skippedAfter = new int[16];
+            this.skippedStarts = new long[16];
+            this.skippedEnds = new long[16];
+        }
+    }
+
+    /**
+     * Add a row to the end of the block.
+     *
+     * @param values of the row, one for each column
+     */
+    public void addRow(final String[] values)
+    {
+        for (int i = 0; i < columns.size(); i++)
+        {
+            columns.get(i).append(values[i]);
+        }
+
+        rowCount++;
+    }
+
+    /**
+     * Convert each column of numbers, dates, timestamps or booleans to a
+     * {@link TypedColumn}, and let go of the space used to hold records
+     * while they were selected.
+     * <p>
+     * This is done here, on the parsing thread, so that each chunk is
+     * converted in parallel.
+     */
+    @Override
+    public void endChunk()
+    {
+        // No more records to hold.
+        recordBytes = null;
+        recordStarts = null;
+
+        for (int i = 0; i < columns.size(); i++)
+        {
+            TypedColumn typed = TypedColumn.infer(columns.get(i));
+
+            if (typed != null)
+            {
+                columns.set(i, typed);
+            }
+        }
+    }
+
+    @Override
+    public void endRecord(long offset)
+    {
+        if (skipping)
+        {
+            skipping = false;
+        } else if (selector != null && !select(offset))
+        {
+            // Left out.
+        } else if (isHeaderRecord())
+        {
+            header = headerFields.toArray(new String[headerFields.size()]);
+            headerFields = null;
+        } else
+        {
+            // Short records are padded out.
+            for (int i = fieldIndex; i < columns.size(); i++)
+            {
+                columns.get(i).append("");
+            }
+
+            rowCount++;
+        }
+
+        endOffset = offset;
+    }
+
+    @Override
+    public void field(byte[] bytes, int offset, int length)
+    {
+        if (skipping)
+        {
+            return;
+        }
+
+        if (selector != null)
+        {
+            // Held until the record has been selected.
+            hold(bytes, offset, length);
+        } else
+        {
+            store(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param row    index within this block
+     * @param column index
+     *
+     * @return the value
+     */
+    public String get(final int row, final int column)
+    {
+        return columns.get(column).get(row);
+    }
+
+    /**
+     * Get a column.
+     *
+     * @param column index
+     *
+     * @return the column
+     */
+    public Column getColumn(final int column)
+    {
+        return columns.get(column);
+    }
+
+    /**
+     * Get the file offset after the end of a row.
+     *
+     * @param row index within this block
+     *
+     * @return the offset, or -1 if the row was not read from the file
+     */
+    public long getEnd(final int row)
+    {
+        if (row < 0 || row >= startsCount)
+        {
+            return -1;
+        }
+
+        if (ends != null)
+        {
+            return startOffset + ends[row];
+        }
+
+        return row + 1 < startsCount ? startOffset + starts[row + 1] : endOffset;
+    }
+    /**
+     * Get the file offset after the last record parsed into this block.
+     *
+     * @return the offset, or zero if there were no records
+     */
+    @Override
+    public long getEndOffset()
+    {
+        return endOffset;
+    }
+
+    /**
+     * Get the column headings, if this block started with them.
+     *
+     * @return the headings, or {@code null}
+     */
+    @Override
+    public String[] getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Get the file offset of the start of a row.
+     *
+     * @param row index within this block
+     *
+     * @return the offset, or -1 if the row was not read from the file
+     */
+    public long getStart(final int row)
+    {
+        if (row < 0 || row >= startsCount)
+        {
+            return -1;
+        }
+
+        return startOffset + starts[row];
+    }
+
+    /**
+     * Get the number of rows in this block.
+     *
+     * @return the count
+     */
+    @Override
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the row that a run of records left out follows.
+     *
+     * @param range index of the run
+     *
+     * @return index of the row within this block, or -1 if the run comes
+     *         before the first row
+     */
+    public int getSkippedAfter(final int range)
+    {
+        return skippedAfter[range];
+    }
+
+    /**
+     * Get the file offset after a run of records left out.
+     *
+     * @param range index of the run
+     *
+     * @return the offset
+     */
+    public long getSkippedEnd(final int range)
+    {
+        return skippedEnds[range];
+    }
+
+    /**
+     * Get the number of runs of records left out by the selector.
+     *
+     * @return the count
+     */
+    public int getSkippedRangeCount()
+    {
+        return skippedRanges;
+    }
+
+    /**
+     * Get the number of records left out by the selector.
+     *
+     * @return the count
+     */
+    public int getSkippedRowCount()
+    {
+        return skippedRows;
+    }
+
+    /**
+     * Get the file offset of a run of records left out.
+     *
+     * @param range index of the run
+     *
+     * @return the offset
+     */
+    public long getSkippedStart(final int range)
+    {
+        return skippedStarts[range];
+    }
+
+    /**
+     * Estimate the heap used by this block.
+     *
+     * @return size in bytes
+     */
+    public long memoryUsage()
+    {
+        long total = starts.length * 4L;
+
+        if (selector != null)
+        {
+            total += ends.length * 4L + skippedAfter.length * 20L;
+        }
+
+        for (Column column : columns)
+        {
+            total += column.memoryUsage();
+        }
+
+        return total;
+    }
+
+    /**
+     * Create a new, empty, block with the same kind of columns, to add
+     * more rows to.
+     * <p>
+     * The new block's columns keep the type of this block's columns, and
+     * share their dictionaries.
+     *
+     * @return the new block
+     */
+    public RowBlock newEmpty()
+    {
+        RowBlock block = new RowBlock(false);
+
+        for (Column column : columns)
+        {
+            block.columns.add(column.newEmpty());
+        }
+
+        return block;
+    }
+
+    /**
+     * Replace a value.
+     *
+     * @param row    index within this block
+     * @param column index
+     * @param value  new value
+     */
+    public void set(final int row, final int column, final String value)
+    {
+        columns.get(column).set(row, value);
+    }
+
+    /**
+     * Replace a column.
+     *
+     * @param index  of the column
+     * @param column to replace it with
+     */
+    public void setColumn(final int index, final Column column)
+    {
+        columns.set(index, column);
+    }
+
+    /**
+     * Set the number of columns, padding out or dropping columns as needed,
+     * and release any spare capacity.
+     *
+     * @param count number of columns
+     */
+    public void setColumnCount(final int count)
+    {
+        while (columns.size() > count)
+        {
+            columns.remove(columns.size() - 1);
+        }
+
+        while (columns.size() < count)
+        {
+            addColumn();
+        }
+
+        columns.forEach(Column::trim);
+
+        if (starts.length > startsCount)
+        {
+            starts = Arrays.copyOf(starts, startsCount);
+
+            if (ends != null)
+            {
+                ends = Arrays.copyOf(ends, startsCount);
+            }
+        }
+    }
+
+    @Override
+    public void startRecord(long offset)
+    {
+        fieldIndex = 0;
+        recordFields = 0;
+        recordStart = offset;
+
+        if (!isHeaderRecord())
+        {
+            skipping = records++ % sampleInterval != 0;
+
+            if (sampleInterval > 1)
+            {
+                return;
+            }
+
+            if (selector == null)
+            {
+                addStart(offset);
+            } else if (lastSkipped)
+            {
+                // Any blank lines go with the records before them, as they
+                // do with the rows of a full load.
+                skippedEnds[skippedRanges - 1] = offset;
+            } else if (startsCount > 0)
+            {
+                ends[startsCount - 1] = (int) (offset - startOffset);
+            }
+        }
+    }
+
+    /**
+     * Add a new column, filled with empty values for the rows so far.
+     * <p>
+     * Columns start out dictionary encoded, and are converted to plain
+     * text if they turn out to have too many distinct values.
+     */
+    private void addColumn()
+    {
+        DictionaryColumn column = new DictionaryColumn(new Dictionary());
+
+        for (int i = 0; i < rowCount; i++)
+        {
+            column.append("");
+        }
+
+        columns.add(column);
+    }
+
+    /**
+     * Note where a record left out by the selector was in the file. It is
+     * added to the run before it, if there is one since the last row.
+     *
+     * @param start file offset of the record
+     * @param end   file offset after it
+     */
+    private void addSkipped(final long start, final long end)
+    {
+        skippedRows++;
+
+        if (sampleInterval > 1)
+        {
+            // The rows of a sample cannot be saved anyway.
+            return;
+        }
+
+        lastSkipped = true;
+
+        if (skippedRanges > 0 && skippedAfter[skippedRanges - 1] == rowCount - 1)
+        {
+            skippedEnds[skippedRanges - 1] = end;
+            return;
+        }
+
+        if (skippedRanges == skippedAfter.length)
+        {
+            int length = skippedRanges + (skippedRanges >> 1);
+            skippedAfter = Arrays.copyOf(skippedAfter, length);
+            skippedStarts = Arrays.copyOf(skippedStarts, length);
+            skippedEnds = Arrays.copyOf(skippedEnds, length);
+        }
+
+        skippedAfter[skippedRanges] = rowCount - 1;
+        skippedStarts[skippedRanges] = start;
+        skippedEnds[skippedRanges++] = end;
+    }
+
+    /**
+     * Note where a row read from the file starts.
+     *
+     * @param offset file offset of the row
+     */
+    private void addStart(final long offset)
+    {
+        if (startOffset < 0)
+        {
+            startOffset = offset;
+        }
+
+        if (startsCount == starts.length)
+        {
+            starts = Arrays.copyOf(starts, Math.max(16, startsCount + (startsCount >> 1)));
+
+            if (ends != null)
+            {
+                ends = Arrays.copyOf(ends, starts.length);
+            }
+        }
+
+        // A chunk is never more than 2 GiB, so this fits.
+        starts[startsCount++] = (int) (offset - startOffset);
+        lastSkipped = false;
+    }
+
+    /**
+     * Hold a field of the current record, until the record has been
+     * selected.
+     *
+     * @param bytes  holding the field
+     * @param offset of the field in the bytes
+     * @param length of the field, in bytes
+     */
+    private void hold(final byte[] bytes, final int offset, final int length)
+    {
+        if (recordFields + 2 > recordStarts.length)
+        {
+            recordStarts = Arrays.copyOf(recordStarts, recordStarts.length * 2);
+        }
+
+        int start = recordStarts[recordFields];
+
+        if (start + length > recordBytes.length)
+        {
+            recordBytes = Arrays.copyOf(recordBytes, Math.max(recordBytes.length * 2, start + length));
+        }
+
+        System.arraycopy(bytes, offset, recordBytes, start, length);
+        recordStarts[++recordFields] = start + length;
+    }
+
+    private boolean isHeaderRecord()
+    {
+        return headerFields != null;
+    }
+
+    /**
+     * Test the record held against the selector. If it is kept, its fields
+     * are stored. If not, where it was in the file is noted.
+     * <p>
+     * The column headings are always kept.
+     *
+     * @param offset file offset after the record
+     *
+     * @return {@code true} if the record is kept
+     */
+    private boolean select(final long offset)
+    {
+        final boolean header = isHeaderRecord();
+
+        if (!header && !selector.test(field -> field < recordFields
+                ? new String(recordBytes, recordStarts[field],
+                        recordStarts[field + 1] - recordStarts[field], UTF_8)
+                : null))
+        {
+            addSkipped(recordStart, offset);
+            return false;
+        }
+
+        if (!header && sampleInterval == 1)
+        {
+            addStart(recordStart);
+            ends[startsCount - 1] = (int) (offset - startOffset);
+        }
+
+        for (int i = 0; i < recordFields; i++)
+        {
+            if (selector.isStored(i))
+            {
+                store(recordBytes, recordStarts[i], recordStarts[i + 1] - recordStarts[i]);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Store a field of the current record.
+     *
+     * @param bytes  holding the field
+     * @param offset of the field in the bytes
+     * @param length of the field, in bytes
+     */
+    private void store(final byte[] bytes, final int offset, final int length)
+    {
+        if (isHeaderRecord())
+        {
+            headerFields.add(new String(bytes, offset, length, UTF_8));
+        } else
+        {
+            if (fieldIndex == columns.size())
+            {
+                addColumn();
+            }
+
+            Column column = columns.get(fieldIndex);
+            column.append(bytes, offset, length);
+
+            if (column instanceof DictionaryColumn dc
+                    && isHighCardinality(dc.getDictionary().size(), rowCount + 1))
+            {
+                columns.set(fieldIndex, dc.toTextColumn());
+            }
+        }
+
+        fieldIndex++;
+    }
+
+
+}
@@ -0,0 +1,77 @@
+/*
+ *  File Name:    RowComparator.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+/**
+ * Compares two rows of a {@link CSVTable}, by their indexes, without
+ * boxing them.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface RowComparator
+{
+    /**
+     * Compare two rows.
+     *
+     * @param rowA index of the first row
+     * @param rowB index of the second row
+     *
+     * @return negative, zero or positive, as rowA is less than, equal to,
+     *         or greater than rowB
+     */
+    public int compare(int rowA, int rowB);
+
+    /**
+     * Get a comparator that orders rows in the reverse order to this one.
+     *
+     * @return the new comparator
+     */
+    public default RowComparator reversed()
+    {
+        return (rowA, rowB) -> compare(rowB, rowA);
+    }
+
+    /**
+     * Get a comparator that uses another one to break ties.
+     *
+     * @param other comparator to use when this one finds rows equal
+     *
+     * @return the new comparator
+     */
+    public default RowComparator thenComparing(final RowComparator other)
+    {
+        return (rowA, rowB) ->
+        {
+            int result = compare(rowA, rowB);
+            return result != 0 ? result : other.compare(rowA, rowB);
+        };
+    }
+}
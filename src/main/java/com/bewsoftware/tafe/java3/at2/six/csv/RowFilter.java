@@ -0,0 +1,219 @@
+/*
+ *  File Name:    RowFilter.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 28 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A test of the value in one column of a row, such as "price&gt;=10".
+ * <p>
+ * The operators are "=" (or "=="), "!=", "&lt;", "&lt;=", "&gt;", "&gt;="
+ * and "~", which matches a regular expression anywhere in the value.
+ * Values are compared as numbers when both are decimal numbers, and as
+ * text otherwise, so ISO dates and timestamps compare correctly too. The
+ * value to compare with may be quoted, as in {@code region == "WA"}.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RowFilter
+{
+    /**
+     * The operators, with each listed before any that it starts with.
+     */
+    private static final String[] OPERATORS =
+    {
+        "!=", "<=", "==", ">=", "=", "<", ">", "~"
+    };
+
+    /**
+     * Parse a filter, such as "price&gt;=10".
+     *
+     * @param expression the column heading, an operator, and the value to
+     *                   compare with, which may be quoted
+     * @param header     the column headings
+     *
+     * @return the filter
+     *
+     * @throws IllegalArgumentException if the expression is not valid, or
+     *                                  names an unknown column
+     */
+    public static RowFilter parse(final String expression, final List<String> header)
+    {
+        int at = -1;
+        String operator = null;
+
+        // The operator is the first one found, so that a value may hold any.
+        for (String op : OPERATORS)
+        {
+            int index = expression.indexOf(op);
+
+            if (index > 0 && (at < 0 || index < at))
+            {
+                at = index;
+                operator = op;
+            }
+        }
+
+        if (operator == null)
+        {
+            throw new IllegalArgumentException("No operator in filter: " + expression);
+        }
+
+        String name = expression.substring(0, at).strip();
+        int column = header.indexOf(name);
+
+        if (column < 0)
+        {
+            throw new IllegalArgumentException("Unknown column in filter: " + name);
+        }
+
+        String value = expression.substring(at + operator.length()).strip();
+
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+        {
+            value = value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+
+        return new RowFilter(column, operator, value);
+    }
+
+    private final int column;
+
+    /**
+     * The value as a number, or {@code null} if it is not one.
+     */
+    private final Double number;
+
+    private final String operator;
+
+    /**
+     * The regular expression, for the "~" operator.
+     */
+    private final Pattern pattern;
+
+    private final String value;
+
+    /**
+     * Instantiate a new RowFilter.
+     *
+     * @param column   index of the column to test
+     * @param operator one of "=", "==", "!=", "&lt;", "&lt;=", "&gt;",
+     *                 "&gt;=" or "~"
+     * @param value    to compare with
+     *
+     * @throws IllegalArgumentException if the operator is not known, or
+     *                                  the regular expression is not valid
+     */
+    public RowFilter(final int column, final String operator, final String value)
+    {
+        if (!List.of(OPERATORS).contains(operator))
+        {
+            throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+
+        this.column = column;
+        this.operator = operator.equals("==") ? "=" : operator;
+        this.value = value;
+        this.number = DoubleColumn.isDecimal(value) ? Double.valueOf(value) : null;
+
+        try
+        {
+            this.pattern = operator.equals("~") ? Pattern.compile(value) : null;
+        } catch (PatternSyntaxException ex)
+        {
+            throw new IllegalArgumentException("Invalid regular expression: " + value, ex);
+        }
+    }
+
+    /**
+     * Get the index of the column tested.
+     *
+     * @return the index
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Test a value.
+     *
+     * @param text of the value in the column
+     *
+     * @return {@code true} if the row is to be kept
+     */
+    public boolean test(final String text)
+    {
+        if (pattern != null)
+        {
+            return pattern.matcher(text).find();
+        }
+
+        int result = number != null && DoubleColumn.isDecimal(text)
+                ? Double.compare(Double.parseDouble(text), number)
+                : text.compareTo(value);
+
+        return switch (operator)
+        {
+            case "=" ->
+                result == 0;
+            case "!=" ->
+                result != 0;
+            case "<" ->
+                result < 0;
+            case "<=" ->
+                result <= 0;
+            case ">" ->
+                result > 0;
+            default ->
+                result >= 0;
+        };
+    }
+
+    /**
+     * Get this filter, testing another column.
+     *
+     * @param newColumn index of the column to test
+     *
+     * @return the new filter
+     */
+    public RowFilter withColumn(final int newColumn)
+    {
+        return new RowFilter(newColumn, operator, value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return column + operator + value;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  File Name:    RowIndex.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 22 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.List;
+
+/**
+ * Everything a {@link PagedTable} needs to know about a CSV file, so that
+ * it can be re-opened without scanning it again.
+ *
+ * @param header   the column headings
+ * @param offsets  offsets[i] is the file offset of row 'i', and
+ *                 offsets[rowCount] is the offset after the last row
+ * @param rowCount number of rows
+ * @param stats    statistics of each column
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public record RowIndex(List<String> header, long[] offsets, int rowCount,
+        List<ColumnStats> stats)
+{
+}
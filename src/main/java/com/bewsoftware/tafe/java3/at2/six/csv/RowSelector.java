@@ -0,0 +1,162 @@
+/*
+ *  File Name:    RowSelector.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 1 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+/**
+ * Chooses which records of a CSV file are loaded into a {@link RowBlock},
+ * by testing them against {@link RowFilter}s as the file is parsed.
+ * <p>
+ * The columns tested need not be loaded. The parser hands on the fields of
+ * the columns loaded and of the columns tested, and the selector says which
+ * of them are kept. A record is kept only if it passes every filter.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RowSelector
+{
+    /**
+     * The filters, each testing a field by its position among those handed
+     * on by the parser.
+     */
+    private final RowFilter[] filters;
+
+    /**
+     * Indexes in the file of the columns the parser is to hand on, or
+     * {@code null} for all of them.
+     */
+    private final List<Integer> parsedColumns;
+
+    /**
+     * stored[i] is {@code true} if the i'th field handed on is kept, or
+     * {@code null} if they all are.
+     */
+    private final boolean[] stored;
+
+    /**
+     * Instantiate a new RowSelector.
+     *
+     * @param header      the column headings of the file
+     * @param columns     indexes in the file of the columns to load, in file
+     *                    order, or {@code null} for all of them
+     * @param expressions the filters, such as "price&gt;=10"
+     *
+     * @throws IllegalArgumentException if a filter is not valid, or names an
+     *                                  unknown column
+     */
+    public RowSelector(final List<String> header, final List<Integer> columns,
+            final List<String> expressions)
+    {
+        final List<RowFilter> parsed = new ArrayList<>();
+
+        for (String expression : expressions)
+        {
+            parsed.add(RowFilter.parse(expression, header));
+        }
+
+        if (columns == null)
+        {
+            this.parsedColumns = null;
+            this.stored = null;
+            this.filters = parsed.toArray(new RowFilter[parsed.size()]);
+            return;
+        }
+
+        TreeSet<Integer> wanted = new TreeSet<>(columns);
+        parsed.forEach(filter -> wanted.add(filter.getColumn()));
+
+        this.parsedColumns = List.copyOf(wanted);
+        this.stored = new boolean[parsedColumns.size()];
+        this.filters = new RowFilter[parsed.size()];
+
+        for (int i = 0; i < stored.length; i++)
+        {
+            stored[i] = columns.contains(parsedColumns.get(i));
+        }
+
+        for (int i = 0; i < filters.length; i++)
+        {
+            RowFilter filter = parsed.get(i);
+            filters[i] = filter.withColumn(parsedColumns.indexOf(filter.getColumn()));
+        }
+    }
+
+    /**
+     * Get the columns the parser is to hand on: those loaded and those
+     * tested.
+     *
+     * @return their indexes in the file, in file order, or {@code null} for
+     *         all of them
+     */
+    public List<Integer> getParsedColumns()
+    {
+        return parsedColumns;
+    }
+
+    /**
+     * Is a field handed on by the parser kept?
+     *
+     * @param field position among the fields handed on
+     *
+     * @return result
+     */
+    public boolean isStored(final int field)
+    {
+        return stored == null || (field < stored.length && stored[field]);
+    }
+
+    /**
+     * Test a record.
+     *
+     * @param fields gives the text of a field by its position among those
+     *               handed on, or {@code null} if the record is too short to
+     *               have it
+     *
+     * @return {@code true} if the record is to be kept
+     */
+    public boolean test(final IntFunction<String> fields)
+    {
+        for (RowFilter filter : filters)
+        {
+            String text = fields.apply(filter.getColumn());
+
+            if (!filter.test(text != null ? text : ""))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,556 @@
+/*
+ *  File Name:    SearchIndex.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 2 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index of the words in the cells of a {@link CSVTable}, for
+ * finding the rows that hold some text.
+ * <p>
+ * A word is a run of letters and digits, ignoring case, so "37.00" is the
+ * words "37" and "00". Each word maps to the rows holding it: a sorted
+ * array of row indexes while there are few of them, and a {@link BitSet}
+ * once the bitmap is the smaller. The words are also put in order, so that
+ * each word of a search matches all of the words it starts with, and the
+ * search can be run again as each letter is typed.
+ * <p>
+ * The index is built once, from the whole table, and then kept up to date
+ * as rows are edited or added, rather than built again. A word gained or
+ * lost by an edit only changes the map of words; they are put in order
+ * again when next searched, so that a batch of edits is sorted once. It is
+ * not thread safe: it must be built on one thread, then only be used on one
+ * thread.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class SearchIndex
+{
+    /**
+     * Most values whose words are remembered while the index is built, so
+     * that the values of a column with few distinct values are only split
+     * into words once.
+     */
+    private static final int CACHE_SIZE = 1 << 16;
+
+    /**
+     * Does a value hold a word that starts with one of the words searched
+     * for?
+     * <p>
+     * It is called for each cell shown, so the value is not split into
+     * words: each term is compared, ignoring case, where each word starts.
+     *
+     * @param value to test
+     * @param terms the words searched for, as given by
+     *              {@link #terms(String)}
+     *
+     * @return result
+     */
+    public static boolean matchesAny(final String value, final String[] terms)
+    {
+        boolean inWord = false;
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            boolean wasInWord = inWord;
+            inWord = Character.isLetterOrDigit(value.charAt(i));
+
+            if (inWord && !wasInWord)
+            {
+                for (String term : terms)
+                {
+                    if (value.regionMatches(true, i, term, 0, term.length()))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Split the text searched for into words.
+     *
+     * @param query the text searched for
+     *
+     * @return the distinct words, in lower case
+     */
+    public static String[] terms(final String query)
+    {
+        return new HashSet<>(words(query)).toArray(new String[0]);
+    }
+
+    /**
+     * Split a value into words.
+     *
+     * @param value to split
+     *
+     * @return the words, in lower case, in the order found
+     */
+    private static List<String> words(final String value)
+    {
+        final List<String> words = new ArrayList<>();
+        int start = -1;
+
+        for (int i = 0; i <= value.length(); i++)
+        {
+            boolean inWord = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+
+            if (inWord && start < 0)
+            {
+                start = i;
+            } else if (!inWord && start >= 0)
+            {
+                words.add(value.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * The words of values already split, while the index is built.
+     */
+    private Map<String, List<String>> cache = new HashMap<>();
+
+    /**
+     * Number of rows indexed.
+     */
+    private int rowCount;
+
+    /**
+     * The rows holding each word.
+     */
+    private final Map<String, Postings> postings;
+
+    /**
+     * sortedPostings[i] is the rows holding sortedWords[i].
+     */
+    private Postings[] sortedPostings;
+
+    /**
+     * The words in order, or {@code null} until the index has been built,
+     * and again whenever a word has been gained or lost since.
+     */
+    private String[] sortedWords;
+
+    /**
+     * Instantiate a new, empty, SearchIndex.
+     */
+    public SearchIndex()
+    {
+        this.postings = new HashMap<>();
+    }
+
+    /**
+     * Add a row to the index.
+     *
+     * @param row    index
+     * @param values of the row
+     */
+    public void addRow(final int row, final String[] values)
+    {
+        for (String word : rowWords(values))
+        {
+            add(word, row);
+        }
+
+        rowCount = Math.max(rowCount, row + 1);
+    }
+
+    /**
+     * Add rows of a table to the index, as it is built.
+     * <p>
+     * The rows must be added in order. Each row's words are added as its
+     * values are split, so no row is held in full. Each row is read holding
+     * the table's lock, so that the table may be edited on another thread
+     * as the index is built.
+     *
+     * @param table holding the rows
+     * @param from  index of the first row to add
+     * @param to    index after the last row to add
+     */
+    public void addRows(final CSVTable table, final int from, final int to)
+    {
+        final int columnCount = table.getColumnCount();
+
+        for (int row = from; row < to; row++)
+        {
+            synchronized (table)
+            {
+                for (int column = 0; column < columnCount; column++)
+                {
+                    String value = table.get(row, column);
+                    List<String> valueWords = cache.get(value);
+
+                    if (valueWords == null)
+                    {
+                        valueWords = words(value);
+
+                        if (cache.size() < CACHE_SIZE)
+                        {
+                            cache.put(value, valueWords);
+                        }
+                    }
+
+                    for (String word : valueWords)
+                    {
+                        // Rows are added in order, so a word already in this
+                        // row is the last one added.
+                        add(word, row);
+                    }
+                }
+            }
+        }
+
+        rowCount = Math.max(rowCount, to);
+    }
+
+    /**
+     * Find the rows holding, for each word searched for, a word that
+     * starts with it.
+     *
+     * @param terms the words searched for, as given by
+     *              {@link #terms(String)}
+     *
+     * @return the rows found, or {@code null} if there are no words
+     */
+    public BitSet find(final String[] terms)
+    {
+        if (sortedWords == null)
+        {
+            finish();
+        }
+
+        BitSet found = null;
+
+        for (String term : terms)
+        {
+            BitSet rows = new BitSet(rowCount);
+            int at = Arrays.binarySearch(sortedWords, term);
+
+            for (int i = at >= 0 ? at : -(at + 1);
+                    i < sortedWords.length && sortedWords[i].startsWith(term); i++)
+            {
+                sortedPostings[i].addTo(rows);
+            }
+
+            if (found == null)
+            {
+                found = rows;
+            } else
+            {
+                found.and(rows);
+            }
+
+            if (found.isEmpty())
+            {
+                break;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Put the words in order, once the index has been built or changed, and
+     * let go of the values remembered while it was built.
+     */
+    public void finish()
+    {
+        cache = new HashMap<>();
+        sortedWords = postings.keySet().toArray(new String[postings.size()]);
+        Arrays.parallelSort(sortedWords);
+        sortedPostings = new Postings[sortedWords.length];
+
+        for (int i = 0; i < sortedWords.length; i++)
+        {
+            sortedPostings[i] = postings.get(sortedWords[i]);
+        }
+    }
+
+    /**
+     * Get the number of distinct words in the index.
+     *
+     * @return the count
+     */
+    public int getWordCount()
+    {
+        return postings.size();
+    }
+
+    /**
+     * Estimate the heap used by the index.
+     *
+     * @return size in bytes
+     */
+    public long memoryUsage()
+    {
+        long total = 0;
+
+        for (Map.Entry<String, Postings> entry : postings.entrySet())
+        {
+            // The entry, the word, and its place in the sorted arrays.
+            total += 48 + 40 + entry.getKey().length() + 8;
+            total += entry.getValue().memoryUsage();
+        }
+
+        return total;
+    }
+
+    /**
+     * Bring a row up to date, after its values have been changed. Only the
+     * words it has gained or lost are touched.
+     *
+     * @param row       index
+     * @param oldValues of the row, before the change
+     * @param newValues of the row, after the change
+     */
+    public void update(final int row, final String[] oldValues, final String[] newValues)
+    {
+        final Set<String> oldWords = rowWords(oldValues);
+        final Set<String> newWords = rowWords(newValues);
+
+        for (String word : oldWords)
+        {
+            if (!newWords.contains(word))
+            {
+                remove(word, row);
+            }
+        }
+
+        for (String word : newWords)
+        {
+            if (!oldWords.contains(word))
+            {
+                add(word, row);
+            }
+        }
+    }
+
+    /**
+     * Add a row to those holding a word. A word new to the index leaves the
+     * words to be put in order again.
+     *
+     * @param word the row holds
+     * @param row  index
+     */
+    private void add(final String word, final int row)
+    {
+        Postings rows = postings.get(word);
+
+        if (rows == null)
+        {
+            rows = new Postings();
+            postings.put(word, rows);
+            sortedWords = null;
+            sortedPostings = null;
+        }
+
+        rows.add(row);
+    }
+
+    /**
+     * Remove a row from those holding a word. A word no row holds any
+     * longer is dropped.
+     *
+     * @param word the row no longer holds
+     * @param row  index
+     */
+    private void remove(final String word, final int row)
+    {
+        Postings rows = postings.get(word);
+
+        if (rows == null || !rows.remove(row))
+        {
+            return;
+        }
+
+        postings.remove(word);
+        sortedWords = null;
+        sortedPostings = null;
+    }
+
+    /**
+     * Get the distinct words of a row.
+     *
+     * @param values of the row
+     *
+     * @return the words
+     */
+    private Set<String> rowWords(final String[] values)
+    {
+        final Set<String> rowWords = new HashSet<>();
+
+        for (String value : values)
+        {
+            rowWords.addAll(words(value));
+        }
+
+        return rowWords;
+    }
+
+    /**
+     * The rows holding a word.
+     */
+    private static final class Postings
+    {
+        /**
+         * The rows, once there are enough of them for a bitmap to be the
+         * smaller, or {@code null}.
+         */
+        private BitSet bits;
+
+        /**
+         * The rows, in ascending order, while there are few of them.
+         */
+        private int[] rows = new int[2];
+
+        /**
+         * Number of rows in the array.
+         */
+        private int size;
+
+        /**
+         * Add a row.
+         *
+         * @param row index
+         */
+        void add(final int row)
+        {
+            if (bits != null)
+            {
+                bits.set(row);
+                return;
+            }
+
+            // Rows are mostly added in order, so look at the end first.
+            int at = size > 0 && rows[size - 1] < row
+                    ? -(size + 1)
+                    : Arrays.binarySearch(rows, 0, size, row);
+
+            if (at >= 0)
+            {
+                return;
+            }
+
+            at = -(at + 1);
+
+            if (size == rows.length)
+            {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+
+            System.arraycopy(rows, at, rows, at + 1, size - at);
+            rows[at] = row;
+            size++;
+
+            // Four bytes a row, against one bit for each row up to the last.
+            if (size >= 64 && size * 32L > rows[size - 1])
+            {
+                bits = new BitSet(rows[size - 1] + 1);
+
+                for (int i = 0; i < size; i++)
+                {
+                    bits.set(rows[i]);
+                }
+
+                rows = null;
+                size = 0;
+            }
+        }
+
+        /**
+         * Add the rows to a set.
+         *
+         * @param set to add to
+         */
+        void addTo(final BitSet set)
+        {
+            if (bits != null)
+            {
+                set.or(bits);
+                return;
+            }
+
+            for (int i = 0; i < size; i++)
+            {
+                set.set(rows[i]);
+            }
+        }
+
+        /**
+         * Estimate the heap used.
+         *
+         * @return size in bytes
+         */
+        long memoryUsage()
+        {
+            return 32 + (bits != null ? bits.size() / 8 : rows.length * 4L);
+        }
+
+        /**
+         * Remove a row.
+         *
+         * @param row index
+         *
+         * @return {@code true} if there are no rows left
+         */
+        boolean remove(final int row)
+        {
+            if (bits != null)
+            {
+                bits.clear(row);
+                return bits.isEmpty();
+            }
+
+            int at = Arrays.binarySearch(rows, 0, size, row);
+
+            if (at >= 0)
+            {
+                System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+                size--;
+            }
+
+            return size == 0;
+        }
+    }
+}
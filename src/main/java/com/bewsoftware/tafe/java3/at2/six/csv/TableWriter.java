@@ -0,0 +1,407 @@
+/*
+ *  File Name:    TableWriter.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 26 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import com.opencsv.CSVWriter;
+import com.opencsv.CSVWriterBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes the rows of a {@link CSVTable} to a CSV file.
+ * <p>
+ * Rows that are unchanged since they were read are copied, as bytes,
+ * straight from the file they were read from, using
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)
+ * transferTo()}. Runs of rows that follow each other in the file are
+ * copied in one go. Only the changed and added rows, and the column
+ * headings, are encoded again. Saving a few edits to a large file takes
+ * little more than the time needed to copy it.
+ * <p>
+ * The rows of the file left out of a table loaded with filters are copied
+ * too, each run just after the row it followed in the file, or, if that row
+ * is not being written, the nearest one before it that is. So nothing is
+ * lost by saving a table of just the rows of interest.
+ * <p>
+ * The file is forced out to the disk before it is closed, so that once
+ * written it can safely replace the original.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class TableWriter
+{
+    /**
+     * Encoded rows are written out once this many bytes are waiting.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Progress is reported after about this many rows.
+     */
+    private static final int PROGRESS_ROWS = 64 * 1024;
+
+    /**
+     * Write rows of a table to a file.
+     *
+     * @param table      holding the rows
+     * @param order      index of each table row to write, in order
+     * @param sourcePath Path to the file the table was read from, or
+     *                   {@code null} to encode every row. It must not have
+     *                   changed since it was read.
+     * @param targetPath Path to the file to write.
+     * @param progress   given the number of rows written so far, every so
+     *                   often
+     *
+     * @return the number of rows encoded, rather than copied
+     *
+     * @throws IOException if any.
+     */
+    public static int write(final CSVTable table, final int[] order,
+            final Path sourcePath, final Path targetPath, final IntConsumer progress)
+            throws IOException
+    {
+        try (FileChannel target = FileChannel.open(targetPath, CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            int encoded = write(table, order, sourcePath, target, progress);
+            target.force(true);
+
+            return encoded;
+        }
+    }
+
+    /**
+     * Write rows of a table to a channel, such as the standard output.
+     *
+     * @param table      holding the rows
+     * @param order      index of each table row to write, in order
+     * @param sourcePath Path to the file the table was read from, or
+     *                   {@code null} to encode every row. It must not have
+     *                   changed since it was read.
+     * @param target     to write to, at its current position. It is left
+     *                   open.
+     * @param progress   given the number of rows written so far, every so
+     *                   often
+     *
+     * @return the number of rows encoded, rather than copied
+     *
+     * @throws IOException if any, or if the table has rows left out and
+     *                     there is no file to copy them from.
+     */
+    public static int write(final CSVTable table, final int[] order,
+            final Path sourcePath, final WritableByteChannel target, final IntConsumer progress)
+            throws IOException
+    {
+        try (FileChannel source = sourcePath != null ? FileChannel.open(sourcePath, READ) : null)
+        {
+            final Map<Integer, List<long[]>> skipped = skippedRuns(table, order);
+
+            if (!skipped.isEmpty() && source == null)
+            {
+                throw new IOException("The rows left out when the file was loaded"
+                        + " can only be copied from the unchanged file");
+            }
+
+            // The offset of the end of the file, if its last line has no line break.
+            final long unterminatedEnd = source != null && !endsWithNewline(source)
+                    ? source.size() : -1;
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+            final CSVWriter csvWriter = (CSVWriter) new CSVWriterBuilder(
+                    new OutputStreamWriter(buffer, UTF_8)).build();
+            int encoded = 0;
+            int nextProgress = PROGRESS_ROWS;
+
+            // The last line of the file has been written, and may no longer be last.
+            boolean unterminated = false;
+
+            List<String> header = table.getHeader();
+            csvWriter.writeNext(header.toArray(new String[header.size()]), false);
+
+            if (skipped.containsKey(-1))
+            {
+                flush(csvWriter, buffer, target);
+                unterminated = copySkipped(source, skipped.get(-1), target, false, unterminatedEnd);
+            }
+
+            for (int i = 0; i < order.length; i++)
+            {
+                if (i >= nextProgress)
+                {
+                    progress.accept(i);
+                    nextProgress = i + PROGRESS_ROWS;
+                }
+
+                if (unterminated)
+                {
+                    newline(target);
+                    unterminated = false;
+                }
+
+                long start = source != null ? table.getRowStart(order[i]) : -1;
+
+                if (start < 0)
+                {
+                    csvWriter.writeNext(table.getRow(order[i]), false);
+                    encoded++;
+
+                    if (buffer.size() >= BUFFER_SIZE)
+                    {
+                        flush(csvWriter, buffer, target);
+                    }
+                } else
+                {
+                    long end = table.getRowEnd(order[i]);
+
+                    // Take in the rows that follow on in the file.
+                    while (i + 1 < order.length && i + 1 < nextProgress
+                            && (skipped.isEmpty() || !skipped.containsKey(order[i]))
+                            && table.getRowStart(order[i + 1]) == end)
+                    {
+                        end = table.getRowEnd(order[++i]);
+                    }
+
+                    flush(csvWriter, buffer, target);
+                    transfer(source, start, end, target);
+                    unterminated = end == unterminatedEnd;
+                }
+
+                List<long[]> runs = skipped.isEmpty() ? null : skipped.get(order[i]);
+
+                if (runs != null)
+                {
+                    flush(csvWriter, buffer, target);
+                    unterminated = copySkipped(source, runs, target, unterminated, unterminatedEnd);
+                }
+            }
+
+            flush(csvWriter, buffer, target);
+            progress.accept(order.length);
+
+            return encoded;
+        }
+    }
+
+    /**
+     * Copy runs of rows left out of the table, straight from the file.
+     *
+     * @param source          to copy from
+     * @param runs            the start and end offsets of each run
+     * @param target          to copy to, at its current position
+     * @param unterminated    the last line of the file has just been written
+     * @param unterminatedEnd offset of the end of the file, if its last line
+     *                        has no line break, or -1
+     *
+     * @return {@code true} if the last line of the file was the last copied
+     *
+     * @throws IOException if any.
+     */
+    private static boolean copySkipped(final FileChannel source, final List<long[]> runs,
+            final WritableByteChannel target, final boolean unterminated,
+            final long unterminatedEnd) throws IOException
+    {
+        boolean last = unterminated;
+
+        for (long[] run : runs)
+        {
+            if (last)
+            {
+                newline(target);
+            }
+
+            transfer(source, run[0], run[1], target);
+            last = run[1] == unterminatedEnd;
+        }
+
+        return last;
+    }
+
+    /**
+     * Does the file end with a line break?
+     *
+     * @param channel open on the file
+     *
+     * @return result
+     *
+     * @throws IOException if any.
+     */
+    private static boolean endsWithNewline(final FileChannel channel) throws IOException
+    {
+        if (channel.size() == 0)
+        {
+            return true;
+        }
+
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, channel.size() - 1);
+
+        return last.get(0) == '\n' || last.get(0) == '\r';
+    }
+
+    /**
+     * Write out the rows encoded so far.
+     *
+     * @param csvWriter encoding into the buffer
+     * @param buffer    holding the encoded rows
+     * @param target    to write them to
+     *
+     * @throws IOException if any.
+     */
+    private static void flush(final CSVWriter csvWriter, final ByteArrayOutputStream buffer,
+            final WritableByteChannel target) throws IOException
+    {
+        csvWriter.flush();
+
+        if (buffer.size() > 0)
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+
+            while (bytes.hasRemaining())
+            {
+                target.write(bytes);
+            }
+
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Write a line break, after the last line of the file, which is no
+     * longer last.
+     *
+     * @param target to write to
+     *
+     * @throws IOException if any.
+     */
+    private static void newline(final WritableByteChannel target) throws IOException
+    {
+        target.write(ByteBuffer.wrap(new byte[]
+        {
+            '\n'
+        }));
+    }
+
+    /**
+     * Find the runs of rows left out of the table, by the row they are to
+     * be written after. Those after a row that is not being written go after
+     * the nearest row before it that is, or before the first row.
+     *
+     * @param table holding the rows
+     * @param order index of each table row to write, in order
+     *
+     * @return the runs, by the row they follow, or -1 for before the first
+     *         row
+     */
+    private static Map<Integer, List<long[]>> skippedRuns(final CSVTable table, final int[] order)
+    {
+        final Map<Integer, List<long[]>> runs = new HashMap<>();
+
+        if (table.getSkippedRowCount() == 0)
+        {
+            return runs;
+        }
+
+        final BitSet written = new BitSet(table.getRowCount());
+
+        for (int row : order)
+        {
+            written.set(row);
+        }
+
+        int after = -1;
+
+        for (int row = -1; row < table.getRowCount(); row++)
+        {
+            if (row >= 0 && written.get(row))
+            {
+                after = row;
+            }
+
+            long[] range = table.getSkippedRange(row);
+
+            if (range != null)
+            {
+                runs.computeIfAbsent(after, key -> new ArrayList<>()).add(range);
+            }
+        }
+
+        return runs;
+    }
+
+    /**
+     * Copy part of one file to another.
+     *
+     * @param source to copy from
+     * @param start  offset of the first byte to copy
+     * @param end    offset after the last byte to copy
+     * @param target to copy to, at its current position
+     *
+     * @throws IOException if any.
+     */
+    static void transfer(final FileChannel source, final long start, final long end,
+            final WritableByteChannel target) throws IOException
+    {
+        long position = start;
+
+        while (position < end)
+        {
+            long count = source.transferTo(position, end - position, target);
+
+            if (count <= 0)
+            {
+                throw new IOException("The file has changed since it was read");
+            }
+
+            position += count;
+        }
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private TableWriter()
+    {
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *  File Name:    TextColumn.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 20 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A column of free text.
+ * <p>
+ * The values are stored back to back, UTF-8 encoded, in a single byte
+ * array, with an array of offsets marking where each one starts. That
+ * costs four bytes per value, plus the text itself. Replaced values are
+ * held aside until there are enough of them to be worth
+ * {@linkplain #compact() compacting} into the arrays.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class TextColumn extends Column
+{
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Work out the new capacity of an array.
+     *
+     * @param current  capacity
+     * @param required minimum capacity
+     *
+     * @return new capacity
+     */
+    private static int grow(final int current, final int required)
+    {
+        int capacity = Math.max(required, current + (current >> 1));
+
+        return capacity < 0 ? Integer.MAX_VALUE - 8 : capacity;
+    }
+
+    /**
+     * Get the weight of a byte of UTF-8 text, so that comparing the bytes
+     * orders the text as UTF-16 is ordered. Past U+FFFF, UTF-16 uses
+     * surrogates, which come before U+E000, so the lead bytes of those
+     * characters are moved ahead of the lead bytes of U+E000 to U+FFFF.
+     *
+     * @param b the byte
+     *
+     * @return the weight
+     */
+    private static int utf16Order(final byte b)
+    {
+        int value = b & 0xFF;
+
+        return value >= 0xF0 ? value - 2 : value >= 0xEE ? value + 0x10 : value;
+    }
+
+    private byte[] data;
+
+    private int dataLength;
+
+    /**
+     * Values replaced since the last compaction.
+     */
+    private Map<Integer, String> edits;
+
+    /**
+     * offsets[i] is the start of value 'i', and offsets[size] is the end of
+     * the last value.
+     */
+    private int[] offsets;
+
+    private int size;
+
+    /**
+     * Instantiate a new, empty, TextColumn.
+     */
+    public TextColumn()
+    {
+        this.data = new byte[MIN_CAPACITY * 8];
+        this.offsets = new int[MIN_CAPACITY + 1];
+    }
+
+    @Override
+    public void append(byte[] bytes, int offset, int length)
+    {
+        if (dataLength + length > data.length)
+        {
+            data = Arrays.copyOf(data, grow(data.length, dataLength + length));
+        }
+
+        if (size + 2 > offsets.length)
+        {
+            offsets = Arrays.copyOf(offsets, grow(offsets.length, size + 2));
+        }
+
+        System.arraycopy(bytes, offset, data, dataLength, length);
+        dataLength += length;
+        offsets[++size] = dataLength;
+    }
+
+    @Override
+    public void append(String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Fold any replaced values back into the arrays.
+     */
+    public void compact()
+    {
+        if (edits == null)
+        {
+            return;
+        }
+
+        byte[] oldData = data;
+        int[] oldOffsets = offsets;
+        int oldSize = size;
+
+        data = new byte[Math.max(MIN_CAPACITY, dataLength)];
+        dataLength = 0;
+        offsets = new int[oldSize + 1];
+        size = 0;
+
+        for (int i = 0; i < oldSize; i++)
+        {
+            String edit = edits.get(i);
+
+            if (edit != null)
+            {
+                append(edit);
+            } else
+            {
+                append(oldData, oldOffsets[i], oldOffsets[i + 1] - oldOffsets[i]);
+            }
+        }
+
+        edits = null;
+    }
+
+    /**
+     * Two values held as UTF-8 are compared in place, without decoding
+     * either of them. Text that is not well-formed UTF-8 is ordered by its
+     * bytes.
+     */
+    @Override
+    public int compare(int index, Column other, int otherIndex)
+    {
+        if (!(other instanceof TextColumn) || isEdited(index)
+                || ((TextColumn) other).isEdited(otherIndex))
+        {
+            return super.compare(index, other, otherIndex);
+        }
+
+        final TextColumn text = (TextColumn) other;
+        final int start = offsets[index];
+        final int length = offsets[index + 1] - start;
+        final int otherStart = text.offsets[otherIndex];
+        final int otherLength = text.offsets[otherIndex + 1] - otherStart;
+        final int i = Arrays.mismatch(data, start, start + length,
+                text.data, otherStart, otherStart + otherLength);
+
+        if (i < 0)
+        {
+            return 0;
+        } else if (i == length || i == otherLength)
+        {
+            return length - otherLength;
+        }
+
+        return utf16Order(data[start + i]) - utf16Order(text.data[otherStart + i]);
+    }
+
+    @Override
+    public void findEqual(String value, BitSet rows, int offset)
+    {
+        if (edits != null)
+        {
+            super.findEqual(value, rows, offset);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(UTF_8);
+
+        for (int i = 0; i < size; i++)
+        {
+            if (Arrays.equals(data, offsets[i], offsets[i + 1], bytes, 0, bytes.length))
+            {
+                rows.set(offset + i);
+            }
+        }
+    }
+
+    @Override
+    public String get(int index)
+    {
+        if (edits != null)
+        {
+            String edit = edits.get(index);
+
+            if (edit != null)
+            {
+                return edit;
+            }
+        }
+
+        return new String(data, offsets[index], offsets[index + 1] - offsets[index], UTF_8);
+    }
+
+    @Override
+    public long memoryUsage()
+    {
+        return data.length + offsets.length * 4L
+                + (edits != null ? edits.size() * 64L : 0);
+    }
+
+    @Override
+    public Column newEmpty()
+    {
+        return new TextColumn();
+    }
+
+    @Override
+    public void set(int index, String value)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        if (edits == null)
+        {
+            edits = new HashMap<>();
+        }
+
+        edits.put(index, value);
+
+        if (edits.size() > Math.max(64, size / 8))
+        {
+            compact();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public void trim()
+    {
+        if (data.length > dataLength)
+        {
+            data = Arrays.copyOf(data, dataLength);
+        }
+
+        if (offsets.length > size + 1)
+        {
+            offsets = Arrays.copyOf(offsets, size + 1);
+        }
+    }
+
+    /**
+     * Has a value been replaced since the last compaction?
+     *
+     * @param index of the value
+     *
+     * @return result
+     */
+    private boolean isEdited(final int index)
+    {
+        return edits != null && edits.containsKey(index);
+    }
+}
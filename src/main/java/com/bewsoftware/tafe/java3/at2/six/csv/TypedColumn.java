@@ -0,0 +1,331 @@
+/*
+ *  File Name:    TypedColumn.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 23 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.csv;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A column of numbers, dates, timestamps or booleans, stored in a
+ * primitive array.
+ * <p>
+ * Empty values are marked in a null bitmap. The text of each value is
+ * re-created from the stored value when needed. A value whose text would
+ * not be re-created exactly, such as "007" in a column of integers, has its
+ * original text kept as well, just for display: it is still sorted by its
+ * value. A value that is not of the column's type at all, such as "N/A", is
+ * stored as a null, with its original text. This way, the file is always
+ * saved exactly as it was loaded.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public abstract class TypedColumn extends Column
+{
+    /**
+     * At most one value in this many may have its original text kept, for
+     * a column to be typed.
+     */
+    private static final int MAX_VERBATIM_RATIO = 64;
+
+    /**
+     * Number of values looked at to find the type of a column.
+     */
+    private static final int MAX_SAMPLES = 16;
+
+    /**
+     * Work out the type of a column of text, and convert it.
+     * <p>
+     * The type is taken from the first of the leading values that is of a
+     * known type. A column of integers that turns out to hold decimals is
+     * converted to decimals instead. If too many of the values are not of
+     * the type, or would not be re-created exactly, such as zip codes with
+     * leading zeros, or none of them are of a known type, the column is left
+     * as text.
+     *
+     * @param column to convert
+     *
+     * @return the new column, or {@code null} if it is to be left as text
+     */
+    public static TypedColumn infer(final Column column)
+    {
+        final int size = column.size();
+        final int limit = size / MAX_VERBATIM_RATIO;
+        TypedColumn typed = null;
+
+        for (int i = 0, samples = 0; i < size && typed == null && samples < MAX_SAMPLES; i++)
+        {
+            if (!column.isNull(i))
+            {
+                typed = forSample(column.get(i), size);
+                samples++;
+            }
+        }
+
+        for (int i = 0; typed != null && i < size; i++)
+        {
+            String value = column.get(i);
+            typed.append(value);
+
+            if (typed.getValueType() == ColumnType.LONG
+                    && typed.isNull(i) && DoubleColumn.isDecimal(value))
+            {
+                // Start again, as decimals.
+                typed = new DoubleColumn(DoubleColumn.MINIMAL_SCALE, size);
+                i = -1;
+            } else if (typed.getVerbatimCount() > limit)
+            {
+                typed = null;
+            }
+        }
+
+        return typed;
+    }
+
+    /**
+     * Create an empty column for the type of a sample value.
+     *
+     * @param sample   value
+     * @param capacity initial number of values to make room for
+     *
+     * @return the new column, or {@code null} if the type is not known
+     */
+    private static TypedColumn forSample(final String sample, final int capacity)
+    {
+        LongCodec codec = LongCodec.forSample(sample);
+
+        if (codec != null)
+        {
+            return new LongColumn(codec, capacity);
+        } else if (DoubleColumn.isDecimal(sample))
+        {
+            return new DoubleColumn(DoubleColumn.MINIMAL_SCALE, capacity);
+        }
+
+        return null;
+    }
+
+    /**
+     * Bit 'i' is set if value 'i' is null.
+     */
+    private final BitSet nulls;
+
+    private int size;
+
+    /**
+     * The original text of the values that it cannot be re-created for.
+     */
+    private final Map<Integer, String> verbatim;
+
+    /**
+     * Instantiate a new, empty, TypedColumn.
+     */
+    protected TypedColumn()
+    {
+        this.nulls = new BitSet();
+        this.verbatim = new HashMap<>();
+    }
+
+    @Override
+    public void append(byte[] bytes, int offset, int length)
+    {
+        append(new String(bytes, offset, length, UTF_8));
+    }
+
+    @Override
+    public void append(String value)
+    {
+        ensureCapacity(size + 1);
+        store(size++, value);
+    }
+
+    @Override
+    public String get(int index)
+    {
+        checkIndex(index);
+
+        if (!verbatim.isEmpty())
+        {
+            String text = verbatim.get(index);
+
+            if (text != null)
+            {
+                return text;
+            }
+        }
+
+        return nulls.get(index) ? "" : format(index);
+    }
+
+    /**
+     * Get a value as a number.
+     *
+     * @param index of a value that is not null
+     *
+     * @return the value
+     */
+    public abstract double getDouble(int index);
+
+    /**
+     * A column with no values that are not null has no type, unless it
+     * holds text that is not of its type.
+     */
+    @Override
+    public ColumnType getType()
+    {
+        if (nulls.cardinality() == size)
+        {
+            return verbatim.isEmpty() ? null : ColumnType.TEXT;
+        }
+
+        return getValueType();
+    }
+
+    /**
+     * Get the number of values whose original text is kept, as they are not
+     * of the column's type, or would not be re-created exactly.
+     *
+     * @return the count
+     */
+    public int getVerbatimCount()
+    {
+        return verbatim.size();
+    }
+
+    @Override
+    public boolean isNull(int index)
+    {
+        checkIndex(index);
+        return nulls.get(index);
+    }
+
+    @Override
+    public long memoryUsage()
+    {
+        long total = nulls.size() / 8 + valuesMemoryUsage();
+
+        for (String text : verbatim.values())
+        {
+            total += text.length() * 2L + 88;
+        }
+
+        return total;
+    }
+
+    @Override
+    public void set(int index, String value)
+    {
+        checkIndex(index);
+        store(index, value);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Check an index is in range.
+     *
+     * @param index to check
+     */
+    protected void checkIndex(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Make room for more values.
+     *
+     * @param capacity number of values needed
+     */
+    protected abstract void ensureCapacity(int capacity);
+
+    /**
+     * Get the type of the values.
+     *
+     * @return the type
+     */
+    protected abstract ColumnType getValueType();
+
+    /**
+     * Re-create the text of a value.
+     *
+     * @param index of a value that is not null
+     *
+     * @return the text
+     */
+    protected abstract String format(int index);
+
+    /**
+     * Parse a value, and store it.
+     *
+     * @param index of the value
+     * @param text  of the value, not empty
+     *
+     * @return {@code false} if the text is not of this column's type
+     */
+    protected abstract boolean parse(int index, String text);
+
+    /**
+     * Estimate the heap used by the values array.
+     *
+     * @return size in bytes
+     */
+    protected abstract long valuesMemoryUsage();
+
+    private void store(final int index, final String text)
+    {
+        verbatim.remove(index);
+
+        if (text.isEmpty())
+        {
+            nulls.set(index);
+        } else if (!parse(index, text))
+        {
+            nulls.set(index);
+            verbatim.put(index, text);
+        } else
+        {
+            nulls.clear(index);
+
+            if (!format(index).equals(text))
+            {
+                verbatim.put(index, text);
+            }
+        }
+    }
+}
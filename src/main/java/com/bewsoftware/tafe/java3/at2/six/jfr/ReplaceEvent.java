@@ -0,0 +1,63 @@
+/*
+ *  File Name:    ReplaceEvent.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 3 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the search of a table for the values
+ * to change by a find and replace.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+@Name("com.bewsoftware.csv.Replace")
+@Label("CSV Replace")
+@Category("Java3 AT2 Six")
+@Description("A table searched for the values to change by a find and replace")
+public class ReplaceEvent extends Event
+{
+    @Label("Cancelled")
+    public boolean cancelled;
+
+    @Label("Changes")
+    @Description("Number of values to change")
+    public int changes;
+
+    @Label("Columns")
+    @Description("Number of columns searched")
+    public int columns;
+
+    @Label("Rows")
+    public long rows;
+}
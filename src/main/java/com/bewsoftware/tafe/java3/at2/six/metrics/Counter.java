@@ -0,0 +1,93 @@
+/*
+ *  File Name:    Counter.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 30 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total, such as the number of rows loaded.
+ * <p>
+ * It can be added to from any thread, without contention.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class Counter implements Metric
+{
+    private final String format;
+
+    private final String name;
+
+    private final LongAdder total;
+
+    /**
+     * Instantiate a new Counter.
+     *
+     * @param name   to register it under
+     * @param format to display the total, such as "Rows %,d"
+     */
+    Counter(final String name, final String format)
+    {
+        this.name = name;
+        this.format = format;
+        this.total = new LongAdder();
+    }
+
+    /**
+     * Add to the total.
+     *
+     * @param amount to add
+     */
+    public void add(final long amount)
+    {
+        total.add(amount);
+    }
+
+    /**
+     * Get the total.
+     *
+     * @return the total
+     */
+    public long get()
+    {
+        return total.sum();
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public String getText()
+    {
+        return String.format(format, get());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  File Name:    Gauge.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 30 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value read when it is displayed, such as the heap used.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class Gauge implements Metric
+{
+    private final String format;
+
+    private final String name;
+
+    private volatile DoubleSupplier value;
+
+    /**
+     * Instantiate a new Gauge.
+     *
+     * @param name   to register it under
+     * @param format to display the value, such as "Heap %.1f MB"
+     * @param value  supplies the value, on the FX Application Thread
+     */
+    Gauge(final String name, final String format, final DoubleSupplier value)
+    {
+        this.name = name;
+        this.format = format;
+        this.value = value;
+    }
+
+    /**
+     * Get the value now.
+     *
+     * @return the value
+     */
+    public double get()
+    {
+        return value.getAsDouble();
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public String getText()
+    {
+        return String.format(format, get());
+    }
+
+    /**
+     * Set where the value comes from, such as when the thing measured is
+     * replaced.
+     *
+     * @param value supplies the value, on the FX Application Thread
+     */
+    public void setValue(final DoubleSupplier value)
+    {
+        this.value = value;
+    }
+}
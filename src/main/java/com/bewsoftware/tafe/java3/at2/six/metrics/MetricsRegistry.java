@@ -0,0 +1,242 @@
+/*
+ *  File Name:    MetricsRegistry.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 30 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds the application's {@link Counter counters}, {@link Timer timers}
+ * and {@link Gauge gauges}, by name, in the order they were registered,
+ * which is the order they are displayed in.
+ * <p>
+ * The standard metrics are registered when it is created, so they can be
+ * looked up by the names below from anywhere.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class MetricsRegistry
+{
+    /**
+     * Name of the timer of the stalls of the FX Application Thread.
+     */
+    public static final String FX_STALLS = "fx.stalls";
+
+    /**
+     * Name of the gauge of the time spent collecting garbage.
+     */
+    public static final String GC_TIME = "gc.time";
+
+    /**
+     * Name of the gauge of the heap in use.
+     */
+    public static final String HEAP_USED = "heap.used";
+
+    /**
+     * Name of the counter of the bytes of CSV files parsed.
+     */
+    public static final String LOAD_BYTES = "load.bytes";
+
+    /**
+     * Name of the gauge of the parsing speed.
+     */
+    public static final String LOAD_RATE = "load.rate";
+
+    /**
+     * Name of the counter of the rows loaded.
+     */
+    public static final String LOAD_ROWS = "load.rows";
+
+    /**
+     * Name of the timer of the files parsed.
+     */
+    public static final String LOAD_TIME = "load.time";
+
+    /**
+     * Name of the gauge of the heap used by the table being viewed.
+     */
+    public static final String TABLE_HEAP = "table.heap";
+
+    private static final double MB = 1024 * 1024;
+
+    /**
+     * Get the total time spent collecting garbage, by all of the
+     * collectors. With most collectors, this is the time the application
+     * was paused.
+     *
+     * @return the time, in milliseconds
+     */
+    private static double gcTime()
+    {
+        long total = 0;
+
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            total += Math.max(bean.getCollectionTime(), 0);
+        }
+
+        return total;
+    }
+
+    private final Map<String, Metric> metrics;
+
+    /**
+     * Instantiate a new MetricsRegistry, holding the standard metrics.
+     */
+    public MetricsRegistry()
+    {
+        this.metrics = new LinkedHashMap<>();
+
+        final Counter rows = counter(LOAD_ROWS, "Rows %,d");
+        final Counter bytes = counter(LOAD_BYTES, "Parsed %,d bytes");
+        final Timer time = timer(LOAD_TIME, "Loads");
+
+        gauge(LOAD_RATE, "Parse %,.1f MB/s", () -> time.getTotalNanos() > 0
+                ? bytes.get() / MB / (time.getTotalNanos() / 1e9) : 0);
+        gauge(TABLE_HEAP, "Table %,.1f MB", () -> 0);
+        gauge(HEAP_USED, "Heap %,.1f MB", () ->
+                (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / MB);
+        gauge(GC_TIME, "GC %,.0f ms", MetricsRegistry::gcTime);
+        timer(FX_STALLS, "FX stalls");
+    }
+
+    /**
+     * Get a counter, registering it if need be.
+     *
+     * @param name   to register it under
+     * @param format to display the total, such as "Rows %,d"
+     *
+     * @return the counter
+     */
+    public synchronized Counter counter(final String name, final String format)
+    {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Counter(n, format));
+    }
+
+    /**
+     * Get a gauge, registering it if need be. An existing gauge is given
+     * the new value.
+     *
+     * @param name   to register it under
+     * @param format to display the value, such as "Heap %.1f MB"
+     * @param value  supplies the value, on the FX Application Thread
+     *
+     * @return the gauge
+     */
+    public synchronized Gauge gauge(final String name, final String format,
+            final DoubleSupplier value)
+    {
+        Gauge gauge = (Gauge) metrics.computeIfAbsent(name, n -> new Gauge(n, format, value));
+        gauge.setValue(value);
+
+        return gauge;
+    }
+
+    /**
+     * Get a registered counter.
+     *
+     * @param name it is registered under
+     *
+     * @return the counter
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public Counter getCounter(final String name)
+    {
+        return get(name, Counter.class);
+    }
+
+    /**
+     * Get a registered gauge.
+     *
+     * @param name it is registered under
+     *
+     * @return the gauge
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public Gauge getGauge(final String name)
+    {
+        return get(name, Gauge.class);
+    }
+
+    /**
+     * Get all of the metrics, in the order they were registered.
+     *
+     * @return an unmodifiable list of the metrics
+     */
+    public synchronized List<Metric> getMetrics()
+    {
+        return List.copyOf(metrics.values());
+    }
+
+    /**
+     * Get a registered timer.
+     *
+     * @param name it is registered under
+     *
+     * @return the timer
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public Timer getTimer(final String name)
+    {
+        return get(name, Timer.class);
+    }
+
+    /**
+     * Get a timer, registering it if need be.
+     *
+     * @param name  to register it under
+     * @param label to display before the durations, such as "FX stalls"
+     *
+     * @return the timer
+     */
+    public synchronized Timer timer(final String name, final String label)
+    {
+        return (Timer) metrics.computeIfAbsent(name, n -> new Timer(n, label));
+    }
+
+    private synchronized <T extends Metric> T get(final String name, final Class<T> type)
+    {
+        Metric metric = metrics.get(name);
+
+        if (!type.isInstance(metric))
+        {
+            throw new IllegalArgumentException("No " + type.getSimpleName() + " named: " + name);
+        }
+
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  File Name:    StallMonitor.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 30 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+
+/**
+ * Records the times the FX Application Thread was too busy to respond.
+ * <p>
+ * Every {@value #PROBE_INTERVAL_MS} milliseconds, a background thread
+ * posts a probe to the FX Application Thread, unless the last one is still
+ * waiting. When the probe runs, the time it waited is how long the user
+ * interface was frozen for. Waits of more than {@value #STALL_MS}
+ * milliseconds are recorded as stalls.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class StallMonitor
+{
+    /**
+     * Time between probes, in milliseconds.
+     */
+    private static final long PROBE_INTERVAL_MS = 100;
+
+    /**
+     * Shortest wait counted as a stall, in milliseconds.
+     */
+    private static final long STALL_MS = 50;
+
+    /**
+     * A probe has been posted, and has not yet run.
+     */
+    private final AtomicBoolean pending;
+
+    private ScheduledExecutorService scheduler = null;
+
+    private final Timer stalls;
+
+    /**
+     * Instantiate a new StallMonitor.
+     *
+     * @param stalls to record the stalls in
+     */
+    public StallMonitor(final Timer stalls)
+    {
+        this.stalls = stalls;
+        this.pending = new AtomicBoolean();
+    }
+
+    /**
+     * Start probing.
+     */
+    public synchronized void start()
+    {
+        if (scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "FX Stall Monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            scheduler.scheduleAtFixedRate(this::probe,
+                    PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop probing.
+     */
+    public synchronized void stop()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Post a probe, unless the last one is still waiting.
+     */
+    private void probe()
+    {
+        if (pending.compareAndSet(false, true))
+        {
+            final long posted = System.nanoTime();
+
+            Platform.runLater(() ->
+            {
+                long waited = System.nanoTime() - posted;
+                pending.set(false);
+
+                if (waited >= STALL_MS * 1_000_000)
+                {
+                    stalls.record(waited);
+                }
+            });
+        }
+    }
+}
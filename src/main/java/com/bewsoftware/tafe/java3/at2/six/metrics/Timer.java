@@ -0,0 +1,124 @@
+/*
+ *  File Name:    Timer.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 30 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The number, total and longest of some durations, such as the stalls of
+ * the FX Application Thread.
+ * <p>
+ * Durations can be recorded from any thread, without contention.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class Timer implements Metric
+{
+    private final LongAdder count;
+
+    private final String label;
+
+    private final LongAccumulator maxNanos;
+
+    private final String name;
+
+    private final LongAdder totalNanos;
+
+    /**
+     * Instantiate a new Timer.
+     *
+     * @param name  to register it under
+     * @param label to display before the durations, such as "FX stalls"
+     */
+    Timer(final String name, final String label)
+    {
+        this.name = name;
+        this.label = label;
+        this.count = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+        this.totalNanos = new LongAdder();
+    }
+
+    /**
+     * Get the number of durations recorded.
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Get the longest duration recorded.
+     *
+     * @return the duration, in nanoseconds
+     */
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public String getText()
+    {
+        return String.format("%s %,d (%,d ms, max %,d ms)", label, getCount(),
+                getTotalNanos() / 1_000_000, getMaxNanos() / 1_000_000);
+    }
+
+    /**
+     * Get the total of the durations recorded.
+     *
+     * @return the total, in nanoseconds
+     */
+    public long getTotalNanos()
+    {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos duration, in nanoseconds
+     */
+    public void record(final long nanos)
+    {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+}
@@ -52,6 +52,12 @@ public class Constants
      */
     public static final String LINE;
 
+    /**
+     * Files of at least this many bytes are previewed before they are
+     * loaded. It can be set with the "csv.previewSize" system property.
+     */
+    public static final long PREVIEW_SIZE;
+
     /**
      * Build date of the project.
      */
@@ -62,6 +68,12 @@ public class Constants
      */
     public static final String TITLE_INDENT;
 
+    /**
+     * Most heap, in bytes, that the undo history of the table may use. It
+     * can be set with the "csv.undoMemory" system property.
+     */
+    public static final long UNDO_MEMORY;
+
     /**
      * Project version number.
      */
@@ -71,7 +83,9 @@ public class Constants
     {
         DOUBLE_LINE = "=".repeat(80);
         LINE = "-".repeat(80);
+        PREVIEW_SIZE = Long.getLong("csv.previewSize", 16L * 1024 * 1024);
         TITLE_INDENT = " ".repeat(20);
+        UNDO_MEMORY = Long.getLong("csv.undoMemory", 16L * 1024 * 1024);
     }
 
     /**
@@ -0,0 +1,193 @@
+/*
+ *  File Name:    ViewCache.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 28 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.util;
+
+import com.bewsoftware.tafe.java3.at2.six.App;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+
+import static com.bewsoftware.tafe.java3.at2.six.util.Constants.log;
+
+/**
+ * Holds FXML files loaded ahead of time, so that views and dialogs open
+ * without waiting for their FXML to be parsed.
+ * <p>
+ * Each file is loaded on a background thread, and then laid out once, on
+ * the JavaFX Application Thread, so that its controls' skins and styles
+ * are ready too. A reusable file is loaded once and handed out every time.
+ * Otherwise, each file is handed out once, and a fresh copy is loaded for
+ * next time, so that its controller starts afresh.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class ViewCache
+{
+    /**
+     * Load a file now.
+     */
+    private static FXMLLoader load(final String name) throws IOException
+    {
+        FXMLLoader loader = new FXMLLoader();
+        loader.setLocation(App.class.getResource(name));
+        loader.load();
+
+        return loader;
+    }
+
+    /**
+     * The loaded files, by name.
+     */
+    private final Map<String, CompletableFuture<FXMLLoader>> loaded;
+
+    private final Executor loader;
+
+    /**
+     * The names of the files that are handed out every time.
+     */
+    private final Map<String, Boolean> reusable;
+
+    /**
+     * Instantiate a new, empty, ViewCache.
+     */
+    public ViewCache()
+    {
+        this.loaded = new ConcurrentHashMap<>();
+        this.reusable = new ConcurrentHashMap<>();
+        this.loader = Executors.newSingleThreadExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "View Preloader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Start loading a file in the background.
+     *
+     * @param name     of the file, relative to the {@link App} class, such
+     *                 as "view/Blank.fxml"
+     * @param reusable {@code true} if the same copy is to be handed out
+     *                 every time
+     */
+    public void preload(final String name, final boolean reusable)
+    {
+        this.reusable.put(name, reusable);
+        loaded.put(name, loadLater(name));
+    }
+
+    /**
+     * Take a loaded file.
+     * <p>
+     * If it has not finished loading in the background, it is loaded now
+     * instead. This must be called on the JavaFX Application Thread.
+     *
+     * @param name of the file, relative to the {@link App} class
+     *
+     * @return the loader, with its root and controller ready to use
+     *
+     * @throws IOException if any.
+     */
+    public FXMLLoader take(final String name) throws IOException
+    {
+        CompletableFuture<FXMLLoader> future = loaded.get(name);
+        FXMLLoader result = null;
+
+        if (future != null && future.isDone() && !future.isCompletedExceptionally())
+        {
+            result = future.join();
+        }
+
+        if (reusable.getOrDefault(name, false))
+        {
+            if (result == null)
+            {
+                result = load(name);
+                loaded.put(name, CompletableFuture.completedFuture(result));
+            }
+        } else
+        {
+            if (result == null)
+            {
+                result = load(name);
+            }
+
+            if (future != null)
+            {
+                loaded.put(name, loadLater(name));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Load a file in the background, and lay it out once it has loaded.
+     */
+    private CompletableFuture<FXMLLoader> loadLater(final String name)
+    {
+        CompletableFuture<FXMLLoader> future = new CompletableFuture<>();
+
+        loader.execute(() ->
+        {
+            try
+            {
+                FXMLLoader fxmlLoader = load(name);
+
+                Platform.runLater(() ->
+                {
+                    // Lay it out in a throwaway scene, then set it free again.
+                    Parent root = fxmlLoader.getRoot();
+                    Scene scene = new Scene(root);
+                    root.applyCss();
+                    root.layout();
+                    scene.setRoot(new Group());
+
+                    future.complete(fxmlLoader);
+                });
+            } catch (IOException | RuntimeException ex)
+            {
+                log("Could not preload %s: %s", name, ex);
+                future.completeExceptionally(ex);
+            }
+        });
+
+        return future;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ *  File Name:    CSVLoadTask.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 18 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.BlockTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.MappedCSVParser;
+import com.bewsoftware.tafe.java3.at2.six.csv.ParsedBlock;
+import com.bewsoftware.tafe.java3.at2.six.jfr.LoadEvent;
+import com.bewsoftware.tafe.java3.at2.six.metrics.MetricsRegistry;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * Loads a CSV file in the background, adding the rows to a
+ * {@link BlockTable} on the FX Application Thread, in batches of blocks,
+ * as they are parsed.
+ * <p>
+ * The file is parsed in parallel by a {@link MappedCSVParser}. Its first
+ * chunk is kept small, and is published as soon as it is parsed, so that
+ * the first screenful of rows is displayed almost immediately, regardless
+ * of the size of the file. After that, the chunks are published in file
+ * order, at most every {@value #PUBLISH_INTERVAL_MS} milliseconds.
+ * <p>
+ * The task's {@link #messageProperty() message} holds the current
+ * load statistics, and its {@link #progressProperty() progress} is the
+ * percentage of bytes read.
+ *
+ * @param <B> type of block the table is built from
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class CSVLoadTask<B extends ParsedBlock> extends Task<Integer>
+{
+    /**
+     * Minimum time between batches, in milliseconds.
+     */
+    private static final long PUBLISH_INTERVAL_MS = 100;
+
+    private final IntFunction<B> blockFactory;
+
+    /**
+     * Indexes in the file of the columns to load, or {@code null} for all
+     * of them.
+     */
+    private List<Integer> columns = null;
+
+    private final Path csvPath;
+
+    private final Consumer<CSVTable> headerHandler;
+
+    private final BiConsumer<Integer, Integer> rowsHandler;
+
+    /**
+     * To record the rows and bytes parsed in, if not {@code null}.
+     */
+    private MetricsRegistry metrics = null;
+
+    private final Function<String[], BlockTable<B>> tableFactory;
+
+    private Supplier<BlockTable<B>> tableReader;
+
+    /**
+     * Instantiate a new CSVLoadTask.
+     *
+     * @param csvPath       Path to the CSV file.
+     * @param blockFactory  Creates the block for each chunk of the file,
+     *                      given the chunk's index.
+     * @param tableFactory  Creates the table, given the column headings.
+     * @param headerHandler Receives the new, empty, table as soon as the
+     *                      column headings are read, on the FX Application
+     *                      Thread.
+     * @param rowsHandler   Receives the index of the first and after the
+     *                      last row, each time a batch is added to the
+     *                      table, on the FX Application Thread.
+     */
+    public CSVLoadTask(final Path csvPath,
+            final IntFunction<B> blockFactory,
+            final Function<String[], BlockTable<B>> tableFactory,
+            final Consumer<CSVTable> headerHandler,
+            final BiConsumer<Integer, Integer> rowsHandler)
+    {
+        this.csvPath = csvPath;
+        this.blockFactory = blockFactory;
+        this.tableFactory = tableFactory;
+        this.headerHandler = headerHandler;
+        this.rowsHandler = rowsHandler;
+    }
+
+    /**
+     * Set the columns to load. The fields of the other columns are skipped
+     * by the parser, so they take no time to convert, nor memory to hold.
+     *
+     * @param columns indexes in the file of the columns, or {@code null}
+     *                for all of them
+     */
+    public void setColumns(final List<Integer> columns)
+    {
+        this.columns = columns;
+    }
+
+    /**
+     * Set the registry to record the rows and bytes parsed in.
+     *
+     * @param metrics the registry, or {@code null} for none
+     */
+    public void setMetrics(final MetricsRegistry metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set where to look for a table that has already been built, such as
+     * from a saved index, before scanning the file.
+     *
+     * @param tableReader Supplies the complete table, or {@code null} if
+     *                    there is none. Called on the background thread.
+     */
+    public void setTableReader(final Supplier<BlockTable<B>> tableReader)
+    {
+        this.tableReader = tableReader;
+    }
+
+    @Override
+    protected Integer call() throws Exception
+    {
+        final LoadEvent event = new LoadEvent();
+        event.begin();
+        event.path = csvPath.toString();
+
+        try
+        {
+            int rowCount = load(event);
+            event.rows = rowCount;
+
+            return rowCount;
+        } finally
+        {
+            event.cancelled = isCancelled();
+            event.commit();
+        }
+    }
+
+    /**
+     * Load the table.
+     *
+     * @param event to record the load in
+     *
+     * @return the number of rows loaded
+     *
+     * @throws Exception if any.
+     */
+    private int load(final LoadEvent event) throws Exception
+    {
+        final long startTime = System.nanoTime();
+        final BlockTable<B> readTable = tableReader != null ? tableReader.get() : null;
+
+        if (readTable != null)
+        {
+            final int rowCount = readTable.getRowCount();
+            event.fromIndex = true;
+
+            if (metrics != null)
+            {
+                metrics.getCounter(MetricsRegistry.LOAD_ROWS).add(rowCount);
+            }
+
+            Platform.runLater(() ->
+            {
+                headerHandler.accept(readTable);
+                rowsHandler.accept(0, rowCount);
+            });
+
+            updateMessage(String.format("Loaded %,d rows", rowCount));
+            updateProgress(1, 1);
+
+            return rowCount;
+        }
+
+        try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+        {
+            final long fileSize = parser.getSize();
+            event.bytes = fileSize;
+            parser.setColumns(columns);
+            BlockTable<B> table = null;
+            List<B> batch = new ArrayList<>();
+            long lastPublished = 0;
+            long bytesRead = 0;
+            int rowCount = 0;
+
+            try
+            {
+                for (CompletableFuture<B> chunk : parser.parseAsync(blockFactory))
+                {
+                    B block = chunk.get();
+
+                    if (isCancelled())
+                    {
+                        break;
+                    }
+
+                    if (table == null && block.getHeader() != null)
+                    {
+                        final BlockTable<B> newTable = tableFactory.apply(block.getHeader());
+                        table = newTable;
+                        Platform.runLater(() -> headerHandler.accept(newTable));
+                    }
+
+                    if (table != null)
+                    {
+                        // Done here, rather than on the FX Application Thread.
+                        table.prepareBlock(block);
+                    }
+
+                    batch.add(block);
+                    rowCount += block.getRowCount();
+
+                    if (metrics != null)
+                    {
+                        metrics.getCounter(MetricsRegistry.LOAD_ROWS).add(block.getRowCount());
+                    }
+
+                    bytesRead = Math.max(bytesRead, block.getEndOffset());
+
+                    long now = System.nanoTime();
+
+                    if ((now - lastPublished) / 1_000_000 >= PUBLISH_INTERVAL_MS)
+                    {
+                        publish(table, batch);
+                        batch = new ArrayList<>();
+                        lastPublished = now;
+                        updateStatistics(rowCount, bytesRead, fileSize, now - startTime);
+                    }
+                }
+            } catch (ExecutionException ex)
+            {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            } finally
+            {
+                // Stop any chunks still being parsed.
+                parser.cancel();
+
+                if (metrics != null)
+                {
+                    metrics.getCounter(MetricsRegistry.LOAD_BYTES).add(bytesRead);
+                    metrics.getTimer(MetricsRegistry.LOAD_TIME).record(System.nanoTime() - startTime);
+                }
+            }
+
+            if (!isCancelled())
+            {
+                publish(table, batch);
+                updateStatistics(rowCount, fileSize, fileSize, System.nanoTime() - startTime);
+            }
+
+            return rowCount;
+        }
+    }
+
+    /**
+     * Add the batch to the table, on the FX Application Thread.
+     *
+     * @param table to add to
+     * @param batch of rows
+     */
+    private void publish(final BlockTable<B> table, final List<B> batch)
+    {
+        if (table != null && !batch.isEmpty())
+        {
+            Platform.runLater(() ->
+            {
+                int from = table.getRowCount();
+                batch.forEach(table::addBlock);
+                rowsHandler.accept(from, table.getRowCount());
+            });
+        }
+    }
+
+    /**
+     * Update the message and progress properties.
+     *
+     * @param rowCount  rows read so far
+     * @param bytesRead bytes read so far
+     * @param fileSize  total bytes in the file
+     * @param elapsedNs time taken so far
+     */
+    private void updateStatistics(final int rowCount, final long bytesRead,
+            final long fileSize, final long elapsedNs)
+    {
+        double seconds = Math.max(elapsedNs, 1) / 1e9;
+        long percent = fileSize > 0 ? bytesRead * 100 / fileSize : 100;
+
+        updateMessage(String.format("Loading: %,d rows (%,.0f rows/s) - %d%% read",
+                rowCount, rowCount / seconds, percent));
+        updateProgress(bytesRead, fileSize);
+    }
+}
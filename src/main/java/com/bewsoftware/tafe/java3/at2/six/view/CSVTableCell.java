@@ -0,0 +1,183 @@
+/*
+ *  File Name:    CSVTableCell.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 25 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import javafx.scene.control.TableCell;
+
+/**
+ * A cell of the CSV TableView that shows its value straight from the
+ * {@link CSVTable}.
+ * <p>
+ * The columns have no cell value factory. When a cell is moved to another
+ * index, it looks up the table row through the {@link RowList}, and takes
+ * the value from the table: a value the table holds as a String is shown
+ * as it is, while a value of a typed column, or of a column of plain text,
+ * is made into a new String. The cell remembers the row and the
+ * {@link CSVTable#getEditCount() edit count} it was shown for, so being
+ * laid out again at the same row, as it is each time the view scrolls,
+ * looks nothing up until a value has been changed. The TableRow still
+ * boxes its index to get its item from the RowList.
+ * <p>
+ * A cell whose value matches the current search is highlighted. That is
+ * worked out when the value is looked up, and the search does not split
+ * the value into new Strings to do it.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class CSVTableCell extends TableCell<Integer, String>
+{
+    /**
+     * The look of a cell that matches the search.
+     */
+    private static final String MATCH_STYLE
+            = "-fx-background-color: #ffe680; -fx-text-fill: black;";
+
+    private final int column;
+
+    private final Highlighter highlighter;
+
+    private final RowList rows;
+
+    /**
+     * The table's edit count when the value was looked up.
+     */
+    private long shownEditCount;
+
+    /**
+     * The table row whose value is shown, or -1.
+     */
+    private int shownRow = -1;
+
+    private final CSVTable table;
+
+    /**
+     * Instantiate a new CSVTableCell.
+     *
+     * @param table       holding the values
+     * @param rows        the items of the TableView
+     * @param column      index of the table column to show
+     * @param highlighter says whether the value matches the search
+     */
+    public CSVTableCell(final CSVTable table, final RowList rows, final int column,
+            final Highlighter highlighter)
+    {
+        this.table = table;
+        this.rows = rows;
+        this.column = column;
+        this.highlighter = highlighter;
+    }
+
+    /**
+     * Get the index of the table column shown.
+     *
+     * @return the index
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Show the value at the new index.
+     * <p>
+     * This is called whenever the cell is laid out again, including after
+     * the rows have been reordered, so it checks which row is now at the
+     * index. The value is only looked up again if that is another row, or
+     * a value of the table has been changed since.
+     *
+     * @param i the new index
+     */
+    @Override
+    public void updateIndex(int i)
+    {
+        super.updateIndex(i);
+
+        if (i < 0 || i >= rows.size() || rows.getRow(i) != shownRow
+                || table.getEditCount() != shownEditCount)
+        {
+            updateValue();
+        }
+    }
+
+    /**
+     * Look the value up again, after it has been changed.
+     */
+    public void updateValue()
+    {
+        int i = getIndex();
+
+        if (i < 0 || i >= rows.size())
+        {
+            shownRow = -1;
+            setText(null);
+            setStyle(null);
+        } else
+        {
+            final int row = rows.getRow(i);
+            final String value = table.get(row, column);
+            shownRow = row;
+            shownEditCount = table.getEditCount();
+            setText(value);
+            setStyle(highlighter.isMatch(row, value) ? MATCH_STYLE : null);
+        }
+    }
+
+    @Override
+    protected void updateItem(String item, boolean empty)
+    {
+        super.updateItem(item, empty);
+
+        if (empty)
+        {
+            shownRow = -1;
+            setText(null);
+            setStyle(null);
+        }
+
+        setGraphic(null);
+    }
+
+    /**
+     * Says whether a value matches the search.
+     */
+    public interface Highlighter
+    {
+        /**
+         * Does a value match the search?
+         *
+         * @param row   index of the table row holding it
+         * @param value to test
+         *
+         * @return result
+         */
+        public boolean isMatch(int row, String value);
+    }
+}
@@ -27,38 +27,64 @@
 package com.bewsoftware.tafe.java3.at2.six.view;
 
 import com.bewsoftware.tafe.java3.at2.six.App;
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.EditHistory;
+import com.bewsoftware.tafe.java3.at2.six.csv.EditJournal;
+import com.bewsoftware.tafe.java3.at2.six.csv.IndexFile;
+import com.bewsoftware.tafe.java3.at2.six.csv.LoadOptions;
+import com.bewsoftware.tafe.java3.at2.six.csv.MappedCSVParser;
+import com.bewsoftware.tafe.java3.at2.six.csv.OffsetBlock;
+import com.bewsoftware.tafe.java3.at2.six.csv.PagedTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.RegexReplace;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowBlock;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowIndex;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowSelector;
+import com.bewsoftware.tafe.java3.at2.six.csv.SearchIndex;
+import com.bewsoftware.tafe.java3.at2.six.jfr.EditDialogEvent;
 import com.bewsoftware.tafe.java3.at2.six.util.ViewController;
 import com.bewsoftware.tafe.java3.at2.six.util.Views;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
 import com.opencsv.CSVWriter;
 import com.opencsv.CSVWriterBuilder;
-import com.opencsv.exceptions.CsvValidationException;
 import java.beans.PropertyChangeEvent;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.beans.binding.Bindings;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import static com.bewsoftware.tafe.java3.at2.six.metrics.MetricsRegistry.TABLE_HEAP;
+import static com.bewsoftware.tafe.java3.at2.six.util.Constants.UNDO_MEMORY;
 import static com.bewsoftware.tafe.java3.at2.six.util.Constants.log;
+import static com.bewsoftware.tafe.java3.at2.six.util.Views.BLANK;
 import static com.bewsoftware.tafe.java3.at2.six.util.Views.CSVTABLE;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * FXML Controller for CSVTable view.
@@ -71,42 +97,173 @@ import static java.nio.file.StandardOpenOption.WRITE;
  * <li>First line is the column headings/field names</li>
  * </ol>
  *
- * All data is treated as plain text - no special treatment for
- * numbers or dates when columns are sorted.
+ * The type of each column - integer, decimal, date, timestamp, boolean or
+ * text - is inferred when the file is loaded, and columns are sorted by
+ * their values rather than their text.
+ * <p>
+ * Once loaded, the table is indexed in the background, so that the search
+ * box above it finds the rows holding some words as they are typed. The
+ * cells that match are highlighted, and can be stepped through.
+ * <p>
+ * Edit/Replace finds a regular expression in some of the columns, and
+ * replaces it in every row shown, as one step that can be undone.
  *
  * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
  */
 public class CSVTableController implements ViewController
 {
+    /**
+     * Approximate width of a character, in pixels, when sizing columns.
+     */
+    private static final int CHAR_WIDTH = 8;
+
+    /**
+     * Number of rows indexed between progress reports.
+     */
+    private static final int INDEX_BATCH = 64 * 1024;
+
+    /**
+     * A step that changes more values than this has the whole view
+     * refreshed once, rather than each cell updated.
+     */
+    private static final int MAX_CELL_UPDATES = 64;
+
+    /**
+     * Widest a column is made when sized to fit its values, in pixels.
+     */
+    private static final int MAX_COLUMN_WIDTH = 400;
+
     @FXML
     private AnchorPane anchorPane;
 
     private App app;
 
-    private ObservableList<String> columns = null;
+    /**
+     * The view has closed while the file was being saved.
+     */
+    private boolean closeAfterSave = false;
 
     @FXML
-    private TableView<ObservableList<String>> csvTableView;
-
-    private ObservableList<ObservableList<String>> data = null;
+    private TableView<Integer> csvTableView;
 
     private EditFormController editFormController = null;
 
+    /**
+     * The part of the TableView holding its rows, once it has been shown.
+     */
+    private VirtualFlow<?> flow = null;
+
+    /**
+     * The edits that can be undone and redone.
+     */
+    private final EditHistory history = new EditHistory(UNDO_MEMORY);
+
+    /**
+     * The rows are in the order they are in the file.
+     */
+    private boolean inFileOrder = true;
+
+    private Task<SearchIndex> indexTask = null;
+
+    /**
+     * Where each edit is recorded until the file is saved, or {@code null}
+     * if edits are not being recorded.
+     */
+    private EditJournal journal = null;
+
+    private CSVLoadTask<?> loadTask = null;
+
+    /**
+     * The file is being loaded in the background.
+     */
+    private final BooleanProperty loading = new SimpleBooleanProperty(false);
+
+    /**
+     * The table rows matching the search, or {@code null} if there is no
+     * search.
+     */
+    private BitSet matches = null;
+
+    /**
+     * Index in the list of each row shown that matches the search, in
+     * order.
+     */
+    private int[] matchIndexes = new int[0];
+
+    /**
+     * Index in the list of the row the context menu was shown for.
+     */
+    private int menuIndex = -1;
+
+    @FXML
+    private Button nextButton;
+
+    /**
+     * The load did not complete, so only some of the file's rows are held.
+     */
+    private final BooleanProperty partialLoad = new SimpleBooleanProperty(false);
+
+    @FXML
+    private Button previousButton;
+
+    private ContextMenu rowMenu = null;
+
+    private RowList rows = null;
+
+    private SaveTask saveTask = null;
+
+    /**
+     * The words searched for.
+     */
+    private String[] searchTerms = new String[0];
+
+    @FXML
+    private TextField searchField;
+
+    /**
+     * The index of the words in the table, once it has been built.
+     */
+    private SearchIndex searchIndex = null;
+
+    @FXML
+    private Label searchLabel;
+
+    /**
+     * The rows are being saved in the background.
+     */
+    private final BooleanProperty saving = new SimpleBooleanProperty(false);
+
+    private SortTask sortTask = null;
+
+    /**
+     * The file the table was read from, while the rows are still where they
+     * were read from.
+     */
+    private Path sourcePath = null;
+
+    private long sourceSize;
+
+    private FileTime sourceTime = null;
+
+    /**
+     * The rows are being sorted in the background.
+     */
+    private final BooleanProperty sorting = new SimpleBooleanProperty(false);
+
+    private CSVTable table = null;
+
+    /**
+     * The values each row edited while the search index is being built has
+     * had before its edits, one version after another, or {@code null}.
+     */
+    private Map<Integer, String[]> unindexedRows = null;
+
     @Override
     public void setApp(App app)
     {
         this.app = app;
-
-        try
-        {
-            loadCSVData(app.getFileName());
-        } catch (IOException | CsvValidationException ex)
-        {
-            log(ex.toString());
-        }
-
-        buildTableView();
         app.addPropertyChangeListener(this);
+        loadCSVData(app.getFileName());
     }
 
     @Override
@@ -118,22 +275,135 @@ public class CSVTableController implements ViewController
             {
                 if ((Views) evt.getOldValue() == CSVTABLE)
                 {
+                    if (loadTask != null)
+                    {
+                        loadTask.cancel();
+                    }
+
+                    if (sortTask != null)
+                    {
+                        sortTask.cancel();
+                    }
+
+                    if (indexTask != null)
+                    {
+                        indexTask.cancel();
+                    }
+
+                    // Closing the view throws away any unsaved edits.
+                    discardJournal();
+                    history.clear();
+                    updateUndoState();
+                    app.getMetrics().getGauge(TABLE_HEAP).setValue(() -> 0);
+
+                    if (saveTask != null)
+                    {
+                        // The save is still reading the table.
+                        closeAfterSave = true;
+                    } else if (table != null)
+                    {
+                        table.close();
+                    }
+
                     app.removePropertyChangeListener(this);
                 }
             }
 
+            case App.PROP_CANCELLOAD ->
+            {
+                if (loadTask != null)
+                {
+                    loadTask.cancel();
+                }
+            }
+
             case App.PROP_DATAISDIRTY ->
             {
+                // Each change updates just the cells it affects.
                 if ((boolean) evt.getNewValue())
                 {
-                    csvTableView.refresh();
                     editFormController = null;
                 }
             }
 
+            case App.PROP_FIND ->
+            {
+                searchField.requestFocus();
+                searchField.selectAll();
+            }
+
+            case App.PROP_REDO ->
+            {
+                if (isReadOnly())
+                {
+                    app.setStatusText("Cannot redo while the rows are busy");
+                } else
+                {
+                    HistoryTarget target = new HistoryTarget();
+                    boolean redone = history.redo(target);
+                    target.finish();
+
+                    if (redone)
+                    {
+                        search(searchField.getText());
+                        updateUndoState();
+                        app.setDataIsDirty(true);
+                        app.setStatusText("Edit redone");
+                    }
+                }
+            }
+
+            case App.PROP_REPLACE ->
+            {
+                if (isReadOnly())
+                {
+                    app.setStatusText("Cannot replace while the rows are busy");
+                } else if (table instanceof PagedTable)
+                {
+                    // Each changed row would be held in memory as an edit.
+                    app.setStatusText("Replace is not available for a file paged from disk");
+                } else
+                {
+                    showReplaceDialog();
+                }
+            }
+
             case App.PROP_SAVEFILE ->
             {
-                saveCSVData((Path) evt.getNewValue());
+                if (app.isLoading())
+                {
+                    app.setStatusText("Cannot save while the file is still loading");
+                } else if (partialLoad.get())
+                {
+                    app.setStatusText("Cannot save a partially loaded file");
+                } else if (saveTask != null)
+                {
+                    app.setStatusText("The file is already being saved");
+                } else
+                {
+                    saveCSVData((Path) evt.getNewValue());
+                }
+            }
+
+            case App.PROP_UNDO ->
+            {
+                if (isReadOnly())
+                {
+                    app.setStatusText("Cannot undo while the rows are busy");
+                } else
+                {
+                    HistoryTarget target = new HistoryTarget();
+                    boolean undone = history.undo(target);
+                    target.finish();
+
+                    if (undone)
+                    {
+                        search(searchField.getText());
+                        updateUndoState();
+                        app.setDataIsDirty(true);
+                        app.setStatusText("Edit undone");
+                    }
+                }
             }
 
             case EditFormController.PROP_UPDATE ->
@@ -154,143 +424,1082 @@ public class CSVTableController implements ViewController
         // NoOp
     }
 
+    /**
+     * Take on the new table and build the table view.
+     *
+     * @param table The new, empty, table.
+     */
+    private void addHeader(final CSVTable table)
+    {
+        this.table = table;
+        app.getMetrics().getGauge(TABLE_HEAP).setValue(
+                () -> table.memoryUsage() / (1024.0 * 1024));
+        buildTableView();
+    }
+
+    /**
+     * Show the rows just added to the table.
+     *
+     * @param from index of the first new row
+     * @param to   index after the last new row
+     */
+    private void addRows(final int from, final int to)
+    {
+        rows.addRows(from, to);
+    }
+
+    /**
+     * Build the search index of the table in the background.
+     * <p>
+     * The rows may be edited while it is built. As it is not known which of
+     * an edited row's values were read, each of them is kept, and once the
+     * index has been built the words of those rows, and of any rows added,
+     * are brought up to date in it.
+     * From then on, it is kept up to date as each row is edited or added. A
+     * table paged from disk is not indexed, as it is too large for its
+     * words to be held.
+     */
+    private void buildSearchIndex()
+    {
+        if (table == null)
+        {
+            return;
+        }
+
+        if (table instanceof PagedTable)
+        {
+            searchField.setPromptText("Search is not available for a file paged from disk");
+            return;
+        }
+
+        final CSVTable indexed = table;
+        final int rowCount = indexed.getRowCount();
+
+        final Task<SearchIndex> task = new Task<>()
+        {
+            @Override
+            protected SearchIndex call() throws Exception
+            {
+                SearchIndex index = new SearchIndex();
+
+                for (int from = 0; from < rowCount && !isCancelled(); from += INDEX_BATCH)
+                {
+                    int to = Math.min(rowCount, from + INDEX_BATCH);
+                    index.addRows(indexed, from, to);
+                    updateMessage(String.format("Indexing: %d%%", to * 100L / rowCount));
+                }
+
+                index.finish();
+
+                return index;
+            }
+        };
+
+        indexTask = task;
+        task.messageProperty().addListener((observable, oldValue, newValue)
+                -> searchLabel.setText(newValue));
+
+        task.setOnSucceeded(t ->
+        {
+            indexTask = null;
+            searchIndex = task.getValue();
+
+            unindexedRows.forEach((row, oldValues) ->
+            {
+                // The row's words are replaced whole, as any of its values
+                // may have been the ones indexed.
+                searchIndex.update(row, oldValues, new String[0]);
+                searchIndex.addRow(row, indexed.getRow(row));
+            });
+
+            for (int row = rowCount; row < indexed.getRowCount(); row++)
+            {
+                searchIndex.addRow(row, indexed.getRow(row));
+            }
+
+            unindexedRows = null;
+            searchLabel.setText("");
+            searchField.setDisable(false);
+        });
+
+        task.setOnCancelled(t ->
+        {
+            indexTask = null;
+            unindexedRows = null;
+        });
+
+        task.setOnFailed(t ->
+        {
+            log(task.getException().toString());
+            indexTask = null;
+            unindexedRows = null;
+            searchLabel.setText("Not indexed");
+        });
+
+        unindexedRows = new HashMap<>();
+
+        Thread thread = new Thread(task, "Search Indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Build the CSV TableView
      */
     private void buildTableView()
     {
 
+        rows = new RowList();
+
         // Setup the columns
         int i = 0;
 
-        for (String column : columns)
+        for (String column : table.getHeader())
         {
             final int j = i;
 
-            TableColumn<ObservableList<String>, String> col = new TableColumn<>(column);
+            TableColumn<Integer, String> col = new TableColumn<>(column);
+            col.setUserData(j);
+
+            // The cells read the table directly, so no value factory.
+            col.setCellFactory(param -> new CSVTableCell(table, rows, j, this::isMatch));
+
+            if (table instanceof PagedTable pagedTable)
+            {
+                // Sorting would read every page of the file, many times over.
+                col.setSortable(false);
 
-            col.setCellValueFactory((CellDataFeatures<ObservableList<String>, String> param)
-                    -> new SimpleStringProperty(param.getValue().get(j)));
+                if (pagedTable.getRowCount() > 0)
+                {
+                    // From a saved index, so the widest value is known.
+                    int chars = Math.max(column.length(), pagedTable.getStats(j).getMaxLength());
+                    col.setPrefWidth(Math.min(MAX_COLUMN_WIDTH, chars * CHAR_WIDTH + 20));
+                }
+            }
 
             csvTableView.getColumns().add(col);
             i++;
         }
 
         // Add the data
-        csvTableView.setItems(data);
+        csvTableView.setItems(rows);
         csvTableView.setEditable(true);
 
-        csvTableView.setRowFactory(param ->
-        {
-            final TableRow<ObservableList<String>> row = new TableRow<>();
-            final ContextMenu contextMenu = new ContextMenu();
+        csvTableView.setSortPolicy(param -> sortRows());
 
-            // Edit menu item
-            final MenuItem editMenuItem = new MenuItem("Edit");
+        // One context menu for all of the rows, rather than one per row.
+        rowMenu = createRowMenu();
+        csvTableView.setOnContextMenuRequested(this::showRowMenu);
 
-            editMenuItem.setOnAction(t ->
-            {
-                ObservableList<String> currentItem = csvTableView.getItems().get(row.getIndex());
-                showEditFormDialog(columns, currentItem);
-            });
+        searchField.textProperty().addListener((observable, oldValue, newValue)
+                -> search(newValue));
+    }
 
-            contextMenu.getItems().add(editMenuItem);
+    /**
+     * Copy a row to the clipboard, as a line of CSV.
+     *
+     * @param index in the list of the row
+     */
+    private void copyRow(final int index)
+    {
+        StringWriter writer = new StringWriter();
 
-            // Set context menu on row, but use a binding to make it only show for non-empty rows:
-            row.contextMenuProperty().bind(
-                    Bindings.when(row.emptyProperty())
-                            .then((ContextMenu) null)
-                            .otherwise(contextMenu)
-            );
+        try (CSVWriter csvWriter = (CSVWriter) new CSVWriterBuilder(writer).build())
+        {
+            csvWriter.writeNext(table.getRow(rows.getRow(index)), false);
+        } catch (IOException ex)
+        {
+            log(ex.toString());
+            return;
+        }
 
-            return row;
-        });
+        ClipboardContent content = new ClipboardContent();
+        content.putString(writer.toString());
+        Clipboard.getSystemClipboard().setContent(content);
+        app.setStatusText("Row copied");
     }
 
     /**
-     * Load the data from the CSV file into the lists.
+     * Create the context menu shared by all of the rows.
+     * <p>
+     * The menu acts on the row it was last shown for.
      *
-     * @param csvPath Path to the CSV file.
+     * @return the menu
+     */
+    private ContextMenu createRowMenu()
+    {
+        final MenuItem editMenuItem = new MenuItem("Edit");
+        editMenuItem.setOnAction(t -> showEditFormDialog(menuIndex));
+
+        final MenuItem duplicateMenuItem = new MenuItem("Duplicate");
+        duplicateMenuItem.setOnAction(t -> duplicateRow(menuIndex));
+
+        final MenuItem deleteMenuItem = new MenuItem("Delete");
+        deleteMenuItem.setOnAction(t -> deleteRow(menuIndex));
+
+        final MenuItem copyMenuItem = new MenuItem("Copy");
+        copyMenuItem.setOnAction(t -> copyRow(menuIndex));
+
+        // Rows must not change while the file is loading, as any unsaved edits
+        // are replayed once it has loaded, nor while they are being sorted or
+        // saved.
+        final BooleanBinding readOnly = partialLoad.or(loading).or(sorting).or(saving);
+        editMenuItem.disableProperty().bind(readOnly);
+        duplicateMenuItem.disableProperty().bind(readOnly);
+        deleteMenuItem.disableProperty().bind(readOnly);
+
+        return new ContextMenu(editMenuItem, duplicateMenuItem, deleteMenuItem,
+                new SeparatorMenuItem(), copyMenuItem);
+    }
+
+    /**
+     * Delete a row.
+     * <p>
+     * The row is only removed from the view, so it is left out when the
+     * file is saved.
      *
-     * @throws IOException            if any
-     * @throws CsvValidationException if any
+     * @param index in the list of the row
      */
-    private void loadCSVData(final Path csvPath)
-            throws IOException, CsvValidationException
+    private void deleteRow(final int index)
     {
+        final int row = rows.removeRow(index);
+        journal(j -> j.delete(row));
+        history.remove(index, row);
+        endStep();
+        search(searchField.getText());
+        app.setDataIsDirty(true);
+        app.setStatusText("Row deleted");
+    }
 
-        try (CSVReader csvReader = new CSVReaderBuilder(Files.newBufferedReader(csvPath)).build())
+    /**
+     * Throw away the journal of edits, if there is one.
+     */
+    private void discardJournal()
+    {
+        if (journal != null)
         {
-            data = FXCollections.observableArrayList();
-            boolean firstline = true;
-            String[] line;
-
-            while ((line = csvReader.readNext()) != null)
+            try
             {
-                ObservableList<String> row = FXCollections.observableArrayList(Arrays.asList(line));
-
-                if (firstline)
-                {
-                    columns = row;
-                    firstline = false;
-                } else
-                {
-                    data.add(row);
-                }
+                journal.discard();
+            } catch (IOException ex)
+            {
+                log(ex.toString());
             }
         }
     }
 
     /**
-     * Save the data to the CSV file.
+     * Duplicate a row, adding the copy just below it.
      *
-     * @param csvPath Path to the CSV file.
+     * @param index in the list of the row
      */
-    private void saveCSVData(final Path csvPath)
+    private void duplicateRow(final int index)
     {
+        final int anchor = rows.getRow(index);
+        final String[] values = table.getRow(anchor);
+        final int row = table.addRow(values);
+        rows.insertRow(index + 1, row);
+        journal(j -> j.add(anchor, values));
+        history.insert(index + 1, row);
+        endStep();
 
-        try (CSVWriter csvWriter = (CSVWriter) new CSVWriterBuilder(
-                Files.newBufferedWriter(csvPath, CREATE, WRITE, TRUNCATE_EXISTING)).build())
+        if (searchIndex != null)
         {
-            String[] cols = columns.toArray(new String[columns.size()]);
-            csvWriter.writeNext(cols, false);
+            searchIndex.addRow(row, values);
+            search(searchField.getText());
+        }
 
-            String[] row = new String[cols.length];
-            data.forEach(oList -> csvWriter.writeNext(oList.toArray(row), false));
+        csvTableView.getSelectionModel().clearAndSelect(index + 1);
+        app.setDataIsDirty(true);
+        app.setStatusText("Row duplicated");
+    }
 
-            app.setStatusText("Data saved to file");
-            app.setDataIsDirty(false);
-        } catch (IOException ex)
-        {
-            Logger.getLogger(CSVTableController.class.getName()).log(Level.SEVERE, null, ex);
-        }
+    /**
+     * Finish the step being recorded in the history.
+     */
+    private void endStep()
+    {
+        history.endStep();
+        updateUndoState();
     }
 
     /**
-     * Opens the popup Edit Form dialog.
+     * Find where each row that matches the search is in the list.
+     * <p>
+     * Deleted rows are still in the table, and the index, but not shown.
+     * When only a few rows match, each is looked up in the list; otherwise
+     * the list is walked once.
      *
-     * @param columns The CSV file header.
-     * @param rowData The currently selected table row.
+     * @return index in the list of each row shown that matches, in order
      */
-    private void showEditFormDialog(ObservableList<String> columns, ObservableList<String> rowData)
+    private int[] findMatchIndexes()
     {
-        try
+        final int size = rows.size();
+        final int[] indexes = new int[Math.min(matches.cardinality(), size)];
+        int found = 0;
+
+        if (indexes.length < size / 16)
         {
-            app.setStatusText("");
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1))
+            {
+                int index = rows.indexOfRow(row);
 
-            // Load the fxml file and create a new stage for the popup dialog.
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(App.class
-                    .getResource("view/EditForm.fxml"));
-            AnchorPane page = (AnchorPane) loader.load();
+                if (index >= 0)
+                {
+                    indexes[found++] = index;
+                }
+            }
 
-            // Get the Controller
-            editFormController = loader.getController();
-            editFormController.addPropertyChangeListener(this);
-            editFormController.setData(columns, rowData);
+            Arrays.sort(indexes, 0, found);
+        } else
+        {
+            for (int i = 0; i < size && found < indexes.length; i++)
+            {
+                if (matches.get(rows.getRow(i)))
+                {
+                    indexes[found++] = i;
+                }
+            }
+        }
 
-            // Create the dialog Stage.
-            final Stage dialogStage = new Stage();
+        return found < indexes.length ? Arrays.copyOf(indexes, found) : indexes;
+    }
+
+    /**
+     * Select the next, or previous, row shown that matches the search, and
+     * scroll to the first cell of it that matches. The search wraps around
+     * the ends of the table.
+     *
+     * @param step 1 for the next row, or -1 for the previous row
+     */
+    private void goToMatch(final int step)
+    {
+        if (matchIndexes.length == 0)
+        {
+            return;
+        }
+
+        final int selected = csvTableView.getSelectionModel().getSelectedIndex();
+        int match;
+
+        if (selected < 0)
+        {
+            match = step > 0 ? 0 : matchIndexes.length - 1;
+        } else
+        {
+            match = Arrays.binarySearch(matchIndexes, selected);
+
+            if (match >= 0)
+            {
+                match += step;
+            } else
+            {
+                // The selected row does not match, so the next match is
+                // where it would be.
+                match = step > 0 ? -match - 1 : -match - 2;
+            }
+
+            match = Math.floorMod(match, matchIndexes.length);
+        }
+
+        final int index = matchIndexes[match];
+        final int row = rows.getRow(index);
+
+        csvTableView.getSelectionModel().clearAndSelect(index);
+        csvTableView.scrollTo(index);
+
+        for (TableColumn<Integer, ?> column : csvTableView.getColumns())
+        {
+            int tableColumn = (int) column.getUserData();
+
+            if (SearchIndex.matchesAny(table.get(row, tableColumn), searchTerms))
+            {
+                csvTableView.scrollToColumn(column);
+                break;
+            }
+        }
+
+        searchLabel.setText(String.format("%,d of %,d rows", match + 1, matchIndexes.length));
+    }
+
+    @FXML
+    private void handleNextButton(ActionEvent event)
+    {
+        goToMatch(1);
+        event.consume();
+    }
+
+    @FXML
+    private void handlePreviousButton(ActionEvent event)
+    {
+        goToMatch(-1);
+        event.consume();
+    }
+
+    /**
+     * Enter goes to the next match, Shift+Enter to the previous one, and
+     * Escape clears the search.
+     *
+     * @param event of the key pressed in the search box
+     */
+    @FXML
+    private void handleSearchKey(KeyEvent event)
+    {
+        if (event.getCode() == KeyCode.ENTER)
+        {
+            goToMatch(event.isShiftDown() ? -1 : 1);
+            event.consume();
+        } else if (event.getCode() == KeyCode.ESCAPE)
+        {
+            searchField.clear();
+            csvTableView.requestFocus();
+            event.consume();
+        }
+    }
+
+    /**
+     * Does a value match the search?
+     *
+     * @param row   index of the table row holding it
+     * @param value to test
+     *
+     * @return result
+     */
+    private boolean isMatch(final int row, final String value)
+    {
+        return matches != null && matches.get(row) && SearchIndex.matchesAny(value, searchTerms);
+    }
+
+    /**
+     * Are the rows not to be changed at the moment?
+     * <p>
+     * Rows must not change while the file is loading, as any unsaved edits
+     * are replayed once it has loaded, nor while they are being sorted or
+     * saved.
+     *
+     * @return result
+     */
+    private boolean isReadOnly()
+    {
+        return partialLoad.get() || loading.get() || sorting.get() || saving.get();
+    }
+
+    /**
+     * Record an edit in the journal.
+     * <p>
+     * If the journal cannot be written, it is given up, and the edits are
+     * only held in memory until they are saved.
+     *
+     * @param edit to record
+     */
+    private void journal(final JournalEdit edit)
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            edit.record(journal);
+        } catch (IOException ex)
+        {
+            log(ex.toString());
+            discardJournal();
+            journal = null;
+            app.setStatusText("Edits are no longer being journaled: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Load the data from the CSV file into the lists.
+     * <p>
+     * The file is read by a background {@link CSVLoadTask}. The table is
+     * built as soon as the header arrives, and the rows are added to it
+     * in batches as they are parsed.
+     * <p>
+     * A file too large to be held in memory is opened in paged mode: only
+     * the offset of each row is loaded, and the rows are read back from the
+     * file as they are displayed.
+     * <p>
+     * If the {@link App#getLoadOptions() load options} ask for a sample,
+     * only one in every so many rows is loaded. If they ask for some of the
+     * columns, only those columns are loaded. Either way, the table is
+     * read-only.
+     * <p>
+     * If they give filters, only the rows that pass them are loaded. The
+     * table can still be edited and saved, as the rows left out are copied
+     * from the file when it is saved. They are numbered differently from a
+     * full load, though, so any journal is left for when the file is next
+     * fully loaded, and the edits are not journaled.
+     *
+     * @param csvPath Path to the CSV file.
+     */
+    private void loadCSVData(final Path csvPath)
+    {
+        final LoadOptions options = app.getLoadOptions();
+        final boolean paged;
+        final RowSelector selector;
+
+        try
+        {
+            sourceSize = Files.size(csvPath);
+            sourceTime = Files.getLastModifiedTime(csvPath);
+
+            // A sample, or a few of the columns, are small enough to be held
+            // in memory.
+            paged = options.isFull() && PagedTable.isPagingNeeded(sourceSize);
+            selector = options.isFiltered() ? newSelector(csvPath, options) : null;
+        } catch (IOException | IllegalArgumentException ex)
+        {
+            log(ex.toString());
+            app.setStatusText("Load failed: " + ex.getMessage());
+            return;
+        }
+
+        sourcePath = csvPath;
+        journal = new EditJournal(csvPath);
+
+        if (paged)
+        {
+            CSVLoadTask<OffsetBlock> pagedTask = new CSVLoadTask<>(csvPath,
+                    i -> new OffsetBlock(i == 0),
+                    header -> new PagedTable(csvPath, header),
+                    this::addHeader, this::addRows);
+
+            pagedTask.setMetrics(app.getMetrics());
+            pagedTask.setTableReader(() ->
+            {
+                RowIndex index = IndexFile.read(csvPath);
+                return index != null ? new PagedTable(csvPath, index) : null;
+            });
+
+            loadTask = pagedTask;
+        } else
+        {
+            CSVLoadTask<RowBlock> fullTask = new CSVLoadTask<>(csvPath,
+                    i -> new RowBlock(i == 0, options.sampleInterval(), selector),
+                    ColumnarTable::new,
+                    this::addHeader, this::addRows);
+
+            fullTask.setColumns(selector != null
+                    ? selector.getParsedColumns() : options.columns());
+            fullTask.setMetrics(app.getMetrics());
+            loadTask = fullTask;
+        }
+
+        loadTask.messageProperty().addListener((observable, oldValue, newValue) ->
+        {
+            // Ignore any stragglers, once the load has finished.
+            if (loadTask != null)
+            {
+                app.setStatusText(newValue);
+            }
+        });
+
+        loadTask.setOnSucceeded(t ->
+        {
+            if (options.isSampled() || options.isProjected())
+            {
+                // Keep any unsaved edits for when the file is next fully loaded.
+                journal = null;
+                partialLoad.set(true);
+                String message = options.isSampled()
+                        ? String.format("Loaded a sample of %,d rows, one in every %,d",
+                                loadTask.getValue(), options.sampleInterval())
+                        : String.format("Loaded %,d rows", loadTask.getValue());
+
+                if (options.isProjected())
+                {
+                    message += String.format(", %,d columns", options.columns().size());
+                }
+
+                if (options.isFiltered())
+                {
+                    message += ", filtered";
+                }
+
+                loadFinished(message + " (read-only)");
+                buildSearchIndex();
+                return;
+            }
+
+            if (options.isFiltered())
+            {
+                // Keep any unsaved edits for when the file is next fully loaded.
+                journal = null;
+                loadFinished(String.format("Loaded %,d of %,d rows (filtered)", loadTask.getValue(),
+                        loadTask.getValue() + table.getSkippedRowCount()));
+                buildSearchIndex();
+                return;
+            }
+
+            String format = "Loaded %,d rows";
+
+            if (table instanceof PagedTable pagedTable)
+            {
+                if (pagedTable.isFromIndex())
+                {
+                    format = "Loaded %,d rows (paged from disk, using saved index)";
+                } else
+                {
+                    format = "Loaded %,d rows (paged from disk)";
+                    saveIndex(csvPath, sourceSize, sourceTime, pagedTable.getIndex());
+                }
+            }
+
+            loadFinished(String.format(format, loadTask.getValue()));
+            replayJournal();
+            buildSearchIndex();
+        });
+
+        loadTask.setOnCancelled(t ->
+        {
+            // Keep any unsaved edits for when the file is next fully loaded.
+            journal = null;
+            partialLoad.set(true);
+            loadFinished(String.format(
+                    "Load cancelled: %,d rows loaded (read-only)",
+                    table != null ? table.getRowCount() : 0));
+            buildSearchIndex();
+        });
+
+        loadTask.setOnFailed(t ->
+        {
+            log(loadTask.getException().toString());
+            journal = null;
+            partialLoad.set(true);
+            loadFinished("Load failed: " + loadTask.getException().getMessage());
+        });
+
+        loading.set(true);
+        app.setLoading(true);
+
+        Thread thread = new Thread(loadTask, "CSV Loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tidy up once the background load has finished, however it finished.
+     *
+     * @param message to display on the status bar
+     */
+    private void loadFinished(final String message)
+    {
+        loadTask = null;
+        loading.set(false);
+        app.setLoading(false);
+        app.setStatusText(message);
+    }
+
+    /**
+     * Create the selector for the filters of a load, from the column
+     * headings of the file.
+     *
+     * @param csvPath Path to the CSV file.
+     * @param options of the load
+     *
+     * @return the selector
+     *
+     * @throws IOException              if any.
+     * @throws IllegalArgumentException if a filter is not valid, or names an
+     *                                  unknown column
+     */
+    private RowSelector newSelector(final Path csvPath, final LoadOptions options)
+            throws IOException
+    {
+        try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+        {
+            return new RowSelector(Arrays.asList(parser.readHeader()),
+                    options.columns(), options.filters());
+        }
+    }
+
+    /**
+     * Make the changes found by a find and replace, as one step.
+     * <p>
+     * The changes are recorded in the journal as a batch, and in the
+     * history as a single step, so that one Undo reverses them all. The
+     * search index is updated once for each row changed, and the view is
+     * refreshed once.
+     *
+     * @param changes to make
+     */
+    private void replaceValues(final RegexReplace.Changes changes)
+    {
+        journal(EditJournal::beginBatch);
+
+        for (int i = 0; i < changes.getCount();)
+        {
+            final int row = changes.getRow(i);
+            final String[] oldValues = table.getRow(row);
+            final String[] newValues = oldValues.clone();
+
+            for (; i < changes.getCount() && changes.getRow(i) == row; i++)
+            {
+                final int column = changes.getColumn(i);
+                final String value = changes.getValue(i);
+                history.set(row, column, oldValues[column], value);
+                table.set(row, column, value);
+                journal(j -> j.set(row, column, value));
+                newValues[column] = value;
+            }
+
+            // The words are only put in order again once, by the search below.
+            updateIndex(row, oldValues, newValues);
+        }
+
+        journal(EditJournal::endBatch);
+        endStep();
+        search(searchField.getText());
+        csvTableView.refresh();
+        app.setDataIsDirty(true);
+        app.setStatusText(String.format("Replaced %,d values in %,d rows",
+                changes.getCount(), changes.getRowCount()));
+    }
+
+    /**
+     * Replay the edits left in the journal by a previous session that ended
+     * without saving them.
+     */
+    private void replayJournal()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        // The rows are put in and taken out of a chain, rather than the list,
+        // so that each is done in constant time.
+        final RowChain chain = new RowChain(rows.getOrder());
+
+        try
+        {
+            int count = journal.replay(new EditJournal.EditHandler()
+            {
+                @Override
+                public void add(int after, String[] values)
+                {
+                    chain.insertAfter(after, table.addRow(values));
+                }
+
+                @Override
+                public void delete(int row)
+                {
+                    chain.remove(row);
+                }
+
+                @Override
+                public void insert(int row, int after)
+                {
+                    if (!chain.contains(row))
+                    {
+                        chain.insertAfter(after, row);
+                    }
+                }
+
+                @Override
+                public void set(int row, int column, String value)
+                {
+                    table.set(row, column, value);
+                }
+            });
+
+            if (count > 0)
+            {
+                rows.setRows(chain.toOrder());
+                csvTableView.refresh();
+                app.setDataIsDirty(true);
+                app.setStatusText(String.format("Recovered %,d unsaved edits", count));
+            }
+        } catch (IOException | RuntimeException ex)
+        {
+            // Keep the rows of the edits that were recovered before it failed.
+            rows.setRows(chain.toOrder());
+            csvTableView.refresh();
+            log(ex.toString());
+            app.setStatusText("Could not recover the unsaved edits: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Save the data to the CSV file.
+     * <p>
+     * The data is saved by a background {@link SaveTask}, which replaces
+     * the CSV file once all of the rows have been written. A paged table
+     * is still reading its rows from the original file. The table cannot
+     * be edited until the save has finished.
+     * <p>
+     * Rows that have not changed are copied straight from the file the
+     * table was read from, as long as that file has not changed since.
+     *
+     * @param csvPath Path to the CSV file.
+     */
+    private void saveCSVData(final Path csvPath)
+    {
+        final int[] order = rows.getOrder();
+        final SaveTask task = new SaveTask(table, order, unchangedSource(), csvPath);
+        saveTask = task;
+
+        // Are the rows saved just as the table holds them?
+        boolean inTableOrder = order.length == table.getRowCount();
+
+        for (int i = 0; i < order.length && inTableOrder; i++)
+        {
+            inTableOrder = order[i] == i;
+        }
+
+        final boolean keepJournal = inTableOrder && !app.getLoadOptions().isFiltered();
+
+        task.messageProperty().addListener((observable, oldValue, newValue)
+                -> app.setStatusText(newValue));
+
+        task.setOnSucceeded(t ->
+        {
+            boolean reload = false;
+
+            if (sourcePath != null && csvPath.toAbsolutePath().equals(sourcePath.toAbsolutePath()))
+            {
+                // The rows are no longer where the table read them from.
+                sourcePath = null;
+
+                // Nor are the rows left out, so they could not be saved again.
+                reload = table.getSkippedRowCount() > 0;
+            }
+
+            // The edits are all in the CSV file now.
+            discardJournal();
+
+            // A new journal for the saved file can only refer to its rows by
+            // their index in the table, if that is where they were saved, with
+            // no rows left out by filters in between.
+            journal = keepJournal ? new EditJournal(csvPath) : null;
+
+            saveFinished();
+            app.setDataIsDirty(false);
+
+            if (reload)
+            {
+                // Load the rows that pass the filters again, from the saved file.
+                app.showView(BLANK);
+                app.showView(CSVTABLE);
+            }
+        });
+
+        task.setOnFailed(t ->
+        {
+            Logger.getLogger(CSVTableController.class.getName())
+                    .log(Level.SEVERE, null, task.getException());
+            saveFinished();
+            app.setStatusText("Save failed: " + task.getException().getMessage());
+        });
+
+        saving.set(true);
+
+        // Not a daemon, so that the save is finished before the application exits.
+        Thread thread = new Thread(task, "CSV Saver");
+        thread.start();
+    }
+
+    /**
+     * Tidy up once the background save has finished, however it finished.
+     */
+    private void saveFinished()
+    {
+        saveTask = null;
+        saving.set(false);
+
+        if (closeAfterSave)
+        {
+            table.close();
+        }
+    }
+
+    /**
+     * Save the index of a paged file in the background, so that it opens
+     * at once next time.
+     *
+     * @param csvPath  Path to the CSV file.
+     * @param size     of the file, before it was scanned
+     * @param modified time of the file, before it was scanned
+     * @param index    of the file
+     */
+    private void saveIndex(final Path csvPath, final long size, final FileTime modified,
+            final RowIndex index)
+    {
+        CompletableFuture.runAsync(() ->
+        {
+            try
+            {
+                IndexFile.write(csvPath, size, modified, index);
+            } catch (IOException ex)
+            {
+                // Not fatal: the file will just be scanned again next time.
+                log(ex.toString());
+            }
+        });
+    }
+
+    /**
+     * Find the rows that hold the words searched for, using the index, and
+     * highlight the cells that match.
+     * <p>
+     * Each word searched for matches any word that starts with it, so the
+     * search is run again as each letter is typed.
+     *
+     * @param text searched for
+     */
+    private void search(final String text)
+    {
+        if (searchIndex == null)
+        {
+            return;
+        }
+
+        final boolean wasSearching = matches != null;
+        searchTerms = SearchIndex.terms(text);
+        matches = searchTerms.length > 0 ? searchIndex.find(searchTerms) : null;
+        matchIndexes = matches != null ? findMatchIndexes() : new int[0];
+
+        previousButton.setDisable(matchIndexes.length == 0);
+        nextButton.setDisable(matchIndexes.length == 0);
+        searchLabel.setText(matches != null
+                ? String.format("%,d rows", matchIndexes.length) : "");
+
+        if (matches != null || wasSearching)
+        {
+            csvTableView.refresh();
+        }
+    }
+
+    /**
+     * Sort the rows by the TableView's sort order.
+     * <p>
+     * This is the TableView's sort policy. The rows are sorted by a
+     * background {@link SortTask}, and the new order is swapped in once it
+     * is done. Any sort still running is abandoned. With no sort order,
+     * the rows go back to their order in the file.
+     *
+     * @return {@code false} if the rows cannot be sorted yet
+     */
+    private boolean sortRows()
+    {
+        List<TableColumn<Integer, ?>> sortOrder = csvTableView.getSortOrder();
+
+        if (sortOrder.isEmpty() && inFileOrder && sortTask == null)
+        {
+            return true;
+        } else if (app.isLoading())
+        {
+            app.setStatusText("Cannot sort while the file is still loading");
+            return false;
+        }
+
+        if (sortTask != null)
+        {
+            sortTask.cancel();
+        }
+
+        int[] columns = new int[sortOrder.size()];
+        boolean[] descending = new boolean[sortOrder.size()];
+
+        for (int i = 0; i < columns.length; i++)
+        {
+            columns[i] = (int) sortOrder.get(i).getUserData();
+            descending[i] = sortOrder.get(i).getSortType() == TableColumn.SortType.DESCENDING;
+        }
+
+        final SortTask task = new SortTask(table, rows.getOrder(), columns, descending);
+        sortTask = task;
+
+        task.messageProperty().addListener((observable, oldValue, newValue) ->
+        {
+            if (sortTask == task)
+            {
+                app.setStatusText(newValue);
+            }
+        });
+
+        task.setOnSucceeded(t ->
+        {
+            if (sortTask == task)
+            {
+                rows.setOrder(task.getValue());
+                inFileOrder = columns.length == 0;
+                sortFinished();
+            }
+        });
+
+        task.setOnCancelled(t ->
+        {
+            // Replaced by a newer sort, or the view is closing.
+            if (sortTask == task)
+            {
+                sortFinished();
+            }
+        });
+
+        task.setOnFailed(t ->
+        {
+            if (sortTask == task)
+            {
+                log(task.getException().toString());
+                sortFinished();
+                app.setStatusText("Sort failed: " + task.getException().getMessage());
+            }
+        });
+
+        sorting.set(true);
+
+        Thread thread = new Thread(task, "CSV Sorter");
+        thread.setDaemon(true);
+        thread.start();
+
+        return true;
+    }
+
+    /**
+     * Tidy up once the background sort has finished, however it finished.
+     */
+    private void sortFinished()
+    {
+        sortTask = null;
+        sorting.set(false);
+
+        // The matches have moved.
+        search(searchField.getText());
+    }
+
+    /**
+     * Opens the popup Edit Form dialog.
+     *
+     * @param index Index in the list of the row to edit.
+     */
+    private void showEditFormDialog(final int index)
+    {
+        try
+        {
+            app.setStatusText("");
+
+            // Timed until the dialog is on the screen.
+            final EditDialogEvent event = new EditDialogEvent();
+            event.begin();
+            event.row = rows.getRow(index);
+            event.columns = table.getColumnCount();
+
+            // Load the fxml file and create a new stage for the popup dialog.
+            FXMLLoader loader = app.getViewCache().take("view/EditForm.fxml");
+            AnchorPane page = loader.getRoot();
+
+            // Get the Controller
+            final EditFormController form = loader.getController();
+            editFormController = form;
+            editFormController.addPropertyChangeListener(this);
+            editFormController.setData(table, rows.getRow(index));
+
+            // Create the dialog Stage.
+            final Stage dialogStage = new Stage();
             dialogStage.setTitle("Edit");
             dialogStage.initModality(Modality.WINDOW_MODAL);
             dialogStage.initOwner(app.getPrimaryStage());
@@ -298,13 +1507,310 @@ public class CSVTableController implements ViewController
 
             dialogStage.setScene(scene);
             dialogStage.setResizable(false);
+            dialogStage.setOnShown(e -> event.commit());
 
             // Show the dialog and wait until the user closes it
             dialogStage.showAndWait();
+
+            if (form.isUpdate())
+            {
+                final int row = rows.getRow(index);
+                final String[] oldValues = form.getOldValues();
+
+                for (int column : form.getChangedColumns())
+                {
+                    journal(j -> j.set(row, column, table.get(row, column)));
+                    history.set(row, column, oldValues[column], table.get(row, column));
+                }
+
+                endStep();
+                updateIndex(row, oldValues, table.getRow(row));
+                search(searchField.getText());
+
+                updateCells(index, form.getChangedColumns());
+            }
         } catch (IOException ex)
         {
             Logger.getLogger(RootLayoutController.class
                     .getName()).log(Level.SEVERE, null, ex);
         }
     }
+
+    /**
+     * Opens the popup Replace dialog, and makes the changes it finds.
+     */
+    private void showReplaceDialog()
+    {
+        try
+        {
+            app.setStatusText("");
+
+            FXMLLoader loader = app.getViewCache().take("view/Replace.fxml");
+            AnchorPane page = loader.getRoot();
+            ReplaceController controller = loader.getController();
+            controller.setData(table, rows.getOrder());
+
+            Stage dialogStage = new Stage();
+            dialogStage.setTitle("Replace");
+            dialogStage.initModality(Modality.WINDOW_MODAL);
+            dialogStage.initOwner(app.getPrimaryStage());
+            dialogStage.setScene(new Scene(page));
+
+            // Show the dialog and wait until the user closes it
+            dialogStage.showAndWait();
+            controller.stop();
+
+            if (controller.getChanges() != null)
+            {
+                replaceValues(controller.getChanges());
+            }
+        } catch (IOException ex)
+        {
+            Logger.getLogger(RootLayoutController.class.getName()).log(Level.SEVERE, null, ex);
+            app.setStatusText("Replace failed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Show the rows' context menu for the row under the mouse, or the
+     * focused row if it was asked for from the keyboard.
+     *
+     * @param event the request
+     */
+    private void showRowMenu(final ContextMenuEvent event)
+    {
+        int index = -1;
+
+        if (event.isKeyboardTrigger())
+        {
+            index = csvTableView.getFocusModel().getFocusedIndex();
+        } else
+        {
+            Node node = event.getPickResult().getIntersectedNode();
+
+            while (node != null && !(node instanceof TableRow))
+            {
+                node = node.getParent();
+            }
+
+            if (node instanceof TableRow<?> row && !row.isEmpty())
+            {
+                index = row.getIndex();
+            }
+        }
+
+        if (index >= 0 && index < rows.size())
+        {
+            menuIndex = index;
+            rowMenu.show(csvTableView, event.getScreenX(), event.getScreenY());
+        }
+
+        event.consume();
+    }
+
+    /**
+     * Get the file the table was read from, if it has not changed since.
+     *
+     * @return the Path, or {@code null}
+     */
+    private Path unchangedSource()
+    {
+        try
+        {
+            if (sourcePath != null
+                    && Files.size(sourcePath) == sourceSize
+                    && Files.getLastModifiedTime(sourcePath).equals(sourceTime))
+            {
+                return sourcePath;
+            }
+        } catch (IOException ex)
+        {
+            log(ex.toString());
+        }
+
+        return null;
+    }
+
+    /**
+     * Update the cells of a row, after some of its values have changed.
+     * <p>
+     * Only the cells of the changed columns are updated, and only if the
+     * row is on screen. The rest of the view is left as it is.
+     *
+     * @param index   in the list of the row
+     * @param columns indexes of the changed columns
+     */
+    private void updateCells(final int index, final int[] columns)
+    {
+        if (flow == null)
+        {
+            flow = (VirtualFlow<?>) csvTableView.lookup(".virtual-flow");
+
+            if (flow == null)
+            {
+                // Not shown yet.
+                return;
+            }
+        }
+
+        IndexedCell<?> row = flow.getVisibleCell(index);
+
+        if (row == null)
+        {
+            // Off screen, so it will be looked up when it scrolls into view.
+            return;
+        }
+
+        for (Node node : row.getChildrenUnmodifiable())
+        {
+            if (node instanceof CSVTableCell cell)
+            {
+                for (int column : columns)
+                {
+                    if (cell.getColumn() == column)
+                    {
+                        cell.updateValue();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring the search index up to date after a row has been edited. While
+     * the index is being built, the row's values before the edit are kept,
+     * along with any before its earlier edits, until it has been.
+     *
+     * @param row       index of the table row
+     * @param oldValues of the row, before the edit
+     * @param newValues of the row, after the edit
+     */
+    private void updateIndex(final int row, final String[] oldValues, final String[] newValues)
+    {
+        if (searchIndex != null)
+        {
+            searchIndex.update(row, oldValues, newValues);
+        } else if (unindexedRows != null)
+        {
+            unindexedRows.merge(row, oldValues, (values, more) ->
+            {
+                String[] all = Arrays.copyOf(values, values.length + more.length);
+                System.arraycopy(more, 0, all, values.length, more.length);
+
+                return all;
+            });
+        }
+    }
+
+    /**
+     * Enable or disable the Undo and Redo menu items.
+     */
+    private void updateUndoState()
+    {
+        app.setCanUndo(history.canUndo());
+        app.setCanRedo(history.canRedo());
+    }
+
+    /**
+     * Makes the changes undone or redone from the history, recording them
+     * in the journal as a batch.
+     * <p>
+     * Once the history has been asked to make a step, {@link #finish()}
+     * must be called, whether or not there was one to make.
+     */
+    private class HistoryTarget implements EditHistory.Target
+    {
+        /**
+         * Number of values changed.
+         */
+        private int setCount = 0;
+
+        HistoryTarget()
+        {
+            journal(EditJournal::beginBatch);
+        }
+
+        /**
+         * Write out the journal batch, and refresh the view if too many
+         * values were changed to update each cell.
+         */
+        public void finish()
+        {
+            journal(EditJournal::endBatch);
+
+            if (setCount > MAX_CELL_UPDATES)
+            {
+                csvTableView.refresh();
+            }
+        }
+
+        @Override
+        public void insertRow(int index, int row)
+        {
+            final int at = Math.min(index, rows.size());
+            final int after = at > 0 ? rows.getRow(at - 1) : -1;
+            rows.insertRow(at, row);
+            journal(j -> j.insert(row, after));
+            csvTableView.getSelectionModel().clearAndSelect(at);
+        }
+
+        @Override
+        public void removeRow(int row)
+        {
+            int index = rows.indexOfRow(row);
+
+            if (index >= 0)
+            {
+                rows.removeRow(index);
+                journal(j -> j.delete(row));
+            }
+        }
+
+        @Override
+        public void set(int row, int column, String value)
+        {
+            final String[] oldValues = searchIndex != null || unindexedRows != null
+                    ? table.getRow(row) : null;
+            table.set(row, column, value);
+            journal(j -> j.set(row, column, value));
+
+            if (oldValues != null)
+            {
+                updateIndex(row, oldValues, table.getRow(row));
+            }
+
+            if (++setCount > MAX_CELL_UPDATES)
+            {
+                // Left for finish(), as finding each row in the view is slow.
+                return;
+            }
+
+            int index = rows.indexOfRow(row);
+
+            if (index >= 0)
+            {
+                updateCells(index, new int[]
+                {
+                    column
+                });
+            }
+        }
+    }
+
+    /**
+     * An edit to record in the journal.
+     */
+    @FunctionalInterface
+    private interface JournalEdit
+    {
+        /**
+         * Record the edit.
+         *
+         * @param journal to record it in
+         *
+         * @throws IOException if any.
+         */
+        public void record(EditJournal journal) throws IOException;
+    }
 }
@@ -26,11 +26,13 @@
 
 package com.bewsoftware.tafe.java3.at2.six.view;
 
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
 import com.bewsoftware.tafe.java3.at2.six.util.Ref;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
-import javafx.collections.ObservableList;
+import java.util.Arrays;
+import java.util.List;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
@@ -55,7 +57,12 @@ public class EditFormController
     @FXML
     private Button cancelButton;
 
-    private ObservableList<String> columns;
+    /**
+     * Indexes of the columns changed by the update.
+     */
+    private int[] changedColumns = new int[0];
+
+    private List<String> columns;
 
     @FXML
     private GridPane editPane;
@@ -64,7 +71,11 @@ public class EditFormController
 
     private final PropertyChangeSupport propertyChangeSupport;
 
-    private ObservableList<String> rowData;
+    private int row;
+
+    private String[] rowData;
+
+    private CSVTable table;
 
     private boolean update;
 
@@ -87,6 +98,26 @@ public class EditFormController
         propertyChangeSupport.addPropertyChangeListener(listener);
     }
 
+    /**
+     * Get the indexes of the columns changed by the update.
+     *
+     * @return the indexes
+     */
+    public int[] getChangedColumns()
+    {
+        return changedColumns.clone();
+    }
+
+    /**
+     * Get the values of the row as they were before the update.
+     *
+     * @return a new array of the values
+     */
+    public String[] getOldValues()
+    {
+        return rowData.clone();
+    }
+
     /**
      * Get the value of update
      *
@@ -111,12 +142,12 @@ public class EditFormController
         // Add the TextFields with their initial values
         gridRow.val = 0;
 
-        rowData.forEach(t ->
+        for (String value : rowData)
         {
-            MyTextField textField = new MyTextField(t);
+            MyTextField textField = new MyTextField(value);
             fields.add(textField);
             editPane.add(textField, 1, gridRow.val++);
-        });
+        }
     }
 
     /**
@@ -145,13 +176,15 @@ public class EditFormController
     /**
      * Set the data to be edited.
      *
-     * @param columns The column headings - field labels.
-     * @param rowData The data to be edited.
+     * @param table The table holding the data.
+     * @param row   Index of the row to be edited.
      */
-    public void setData(ObservableList<String> columns, ObservableList<String> rowData)
+    public void setData(CSVTable table, int row)
     {
-        this.columns = columns;
-        this.rowData = rowData;
+        this.table = table;
+        this.row = row;
+        this.columns = table.getHeader();
+        this.rowData = table.getRow(row);
 
         buildForm();
 
@@ -175,18 +208,20 @@ public class EditFormController
 
     private void updateRow()
     {
-        boolean changed = false;
+        int[] changed = new int[fields.size()];
+        int count = 0;
 
         for (int i = 0; i < fields.size(); i++)
         {
             if (fields.get(i).isChanged())
             {
-                rowData.set(i, fields.get(i).getText());
-                changed = true;
+                table.set(row, i, fields.get(i).getText());
+                changed[count++] = i;
             }
         }
 
-        setUpdate(changed);
+        changedColumns = Arrays.copyOf(changed, count);
+        setUpdate(count > 0);
     }
 
     /**
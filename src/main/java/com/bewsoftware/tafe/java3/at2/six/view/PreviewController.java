@@ -0,0 +1,366 @@
+/*
+ *  File Name:    PreviewController.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 31 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.LoadOptions;
+import com.bewsoftware.tafe.java3.at2.six.csv.MappedCSVParser;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowSelector;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.stage.Stage;
+
+/**
+ * FXML Controller class for the 'Preview.fxml' file.
+ * <p>
+ * Shows the column headings and first rows of a CSV file, and counts its
+ * rows in the background, so that the user can decide whether to load all
+ * of it, or just a sample of its rows. Each heading has a check box, so
+ * that only the columns ticked are loaded. Filters can be given too, so
+ * that only the rows passing them are loaded.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class PreviewController
+{
+    /**
+     * Number of rows shown.
+     */
+    private static final int PREVIEW_ROWS = 2000;
+
+    /**
+     * The sample sizes offered, in rows.
+     */
+    private static final List<Integer> SAMPLE_SIZES = List.of(10_000, 100_000, 1_000_000);
+
+    @FXML
+    private Button cancelButton;
+
+    /**
+     * The check box of each column, in file order.
+     */
+    private final List<CheckBox> columnBoxes;
+
+    /**
+     * The parser counting the rows, so that it can be stopped.
+     */
+    private volatile MappedCSVParser counter = null;
+
+    /**
+     * Counts the rows of the file.
+     */
+    private Task<Long> countTask = null;
+
+    @FXML
+    private TextField filterField;
+
+    @FXML
+    private Label filterLabel;
+
+    /**
+     * The column headings of the file.
+     */
+    private List<String> header = List.of();
+
+    @FXML
+    private Label infoLabel;
+
+    @FXML
+    private Button loadButton;
+
+    /**
+     * The user's choice, or {@code null} if the file is not to be loaded.
+     */
+    private LoadOptions loadOptions = null;
+
+    @FXML
+    private TableView<String[]> previewTable;
+
+    /**
+     * Number of rows in the file, once they have been counted.
+     */
+    private long rowCount = -1;
+
+    @FXML
+    private Button sampleButton;
+
+    @FXML
+    private ChoiceBox<Integer> sampleChoice;
+
+    /**
+     * Instantiate a new copy of PreviewController class.
+     */
+    public PreviewController()
+    {
+        this.columnBoxes = new ArrayList<>();
+    }
+
+    /**
+     * Get how much of the file the user chose to load.
+     *
+     * @return the options, or {@code null} if the file is not to be loaded
+     */
+    public LoadOptions getLoadOptions()
+    {
+        return loadOptions;
+    }
+
+    /**
+     * Set the file to preview.
+     * <p>
+     * The first rows are read at once, and the rows are counted in the
+     * background.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @throws IOException if any.
+     */
+    public void setFile(final Path csvPath) throws IOException
+    {
+        final long size;
+
+        try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+        {
+            size = parser.getSize();
+            buildTable(parser.readRecords(PREVIEW_ROWS + 1));
+        }
+
+        sampleChoice.getItems().setAll(SAMPLE_SIZES);
+        sampleChoice.setValue(SAMPLE_SIZES.get(1));
+        sampleButton.setDisable(true);
+        infoLabel.setText(String.format("%s: %,d bytes, counting the rows...",
+                csvPath.getFileName(), size));
+
+        countTask = new Task<>()
+        {
+            @Override
+            protected Long call() throws Exception
+            {
+                try (MappedCSVParser parser = new MappedCSVParser(csvPath))
+                {
+                    counter = parser;
+
+                    // Less the column headings.
+                    return Math.max(parser.countRecords() - 1, 0);
+                } finally
+                {
+                    counter = null;
+                }
+            }
+        };
+
+        countTask.setOnSucceeded(t ->
+        {
+            rowCount = countTask.getValue();
+            sampleButton.setDisable(loadButton.isDisable());
+            infoLabel.setText(String.format("%s: %,d bytes, %,d rows",
+                    csvPath.getFileName(), size, rowCount));
+        });
+
+        countTask.setOnFailed(t -> infoLabel.setText(String.format(
+                "%s: %,d bytes, rows not counted: %s",
+                csvPath.getFileName(), size, countTask.getException().getMessage())));
+
+        Thread thread = new Thread(countTask, "Row Counter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop counting the rows, if they still are.
+     */
+    public void stopCounting()
+    {
+        if (countTask != null)
+        {
+            countTask.cancel();
+        }
+
+        MappedCSVParser parser = counter;
+
+        if (parser != null)
+        {
+            parser.cancel();
+        }
+    }
+
+    /**
+     * Add a column for each heading, and the rows after the headings.
+     *
+     * @param records the headings, then the rows
+     */
+    private void buildTable(final List<String[]> records)
+    {
+        if (records.isEmpty())
+        {
+            return;
+        }
+
+        header = Arrays.asList(records.get(0));
+
+        for (int i = 0; i < header.size(); i++)
+        {
+            final int column = i;
+            CheckBox box = new CheckBox(header.get(i));
+            box.setSelected(true);
+            box.setOnAction(t -> updateButtons());
+            columnBoxes.add(box);
+
+            TableColumn<String[], String> col = new TableColumn<>();
+            col.setGraphic(box);
+            col.setSortable(false);
+            col.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                    column < cell.getValue().length ? cell.getValue()[column] : ""));
+            previewTable.getColumns().add(col);
+        }
+
+        previewTable.getItems().setAll(records.subList(1, records.size()));
+    }
+
+    /**
+     * Add the filters given to the options chosen, and close the dialog,
+     * unless the filters are not valid.
+     *
+     * @param options chosen
+     */
+    private void choose(final LoadOptions options)
+    {
+        List<String> filters = getFilters();
+
+        try
+        {
+            // Check them against the column headings.
+            new RowSelector(header, options.columns(), filters);
+        } catch (IllegalArgumentException ex)
+        {
+            filterLabel.setText(ex.getMessage());
+            filterField.requestFocus();
+            return;
+        }
+
+        loadOptions = options.withFilters(filters);
+        close();
+    }
+
+    /**
+     * Stop counting, and close the dialog.
+     */
+    private void close()
+    {
+        stopCounting();
+        ((Stage) cancelButton.getScene().getWindow()).close();
+    }
+
+    /**
+     * Get the columns ticked.
+     *
+     * @return their indexes, or {@code null} if they all are
+     */
+    private List<Integer> getColumns()
+    {
+        List<Integer> columns = new ArrayList<>();
+
+        for (int i = 0; i < columnBoxes.size(); i++)
+        {
+            if (columnBoxes.get(i).isSelected())
+            {
+                columns.add(i);
+            }
+        }
+
+        return columns.size() < columnBoxes.size() ? columns : null;
+    }
+
+    /**
+     * Get the filters given.
+     *
+     * @return the filters, each as typed, less any spaces around it
+     */
+    private List<String> getFilters()
+    {
+        List<String> filters = new ArrayList<>();
+
+        for (String filter : filterField.getText().split(";"))
+        {
+            if (!filter.isBlank())
+            {
+                filters.add(filter.strip());
+            }
+        }
+
+        return filters;
+    }
+
+    @FXML
+    private void handleCancelButton(ActionEvent event)
+    {
+        loadOptions = null;
+        close();
+        event.consume();
+    }
+
+    @FXML
+    private void handleLoadButton(ActionEvent event)
+    {
+        choose(LoadOptions.FULL.withColumns(getColumns()));
+        event.consume();
+    }
+
+    @FXML
+    private void handleSampleButton(ActionEvent event)
+    {
+        choose(LoadOptions.FULL.withColumns(getColumns())
+                .withSample(rowCount, sampleChoice.getValue()));
+        event.consume();
+    }
+
+    /**
+     * Nothing can be loaded without any columns.
+     */
+    private void updateButtons()
+    {
+        boolean none = columnBoxes.stream().noneMatch(CheckBox::isSelected);
+        loadButton.setDisable(none);
+        sampleButton.setDisable(none || rowCount < 0);
+    }
+}
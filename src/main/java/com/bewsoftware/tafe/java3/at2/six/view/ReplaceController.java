@@ -0,0 +1,341 @@
+/*
+ *  File Name:    ReplaceController.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 3 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.RegexReplace;
+import com.bewsoftware.tafe.java3.at2.six.jfr.ReplaceEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.FlowPane;
+import javafx.stage.Stage;
+
+/**
+ * FXML Controller class for the 'Replace.fxml' file.
+ * <p>
+ * Finds a regular expression in the columns ticked, in every row shown,
+ * and replaces each match. The rows are searched in the background, by a
+ * {@link RegexReplace}, on all of the processors. Preview counts the values
+ * that would change, and Replace All closes the dialog with the changes,
+ * for the table to make as one step, which can be undone. The changes
+ * previewed are kept, so they are not searched for again unless the
+ * pattern, the replacement or the columns are changed.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class ReplaceController
+{
+    @FXML
+    private Button cancelButton;
+
+    /**
+     * The changes to make, or {@code null} if there are none.
+     */
+    private RegexReplace.Changes changes = null;
+
+    /**
+     * The check box of each column, in file order.
+     */
+    private final List<CheckBox> columnBoxes;
+
+    @FXML
+    private FlowPane columnPane;
+
+    @FXML
+    private TextField findField;
+
+    /**
+     * Searches the rows for the values to change.
+     */
+    private Task<RegexReplace.Changes> findTask = null;
+
+    @FXML
+    private Label infoLabel;
+
+    @FXML
+    private CheckBox matchCaseBox;
+
+    /**
+     * Index of each table row shown, in order.
+     */
+    private int[] order = new int[0];
+
+    @FXML
+    private Button previewButton;
+
+    /**
+     * The changes found for the pattern, replacement and columns as they
+     * are now, or {@code null} if they have not been found yet.
+     */
+    private RegexReplace.Changes previewed = null;
+
+    @FXML
+    private Button replaceButton;
+
+    @FXML
+    private TextField replaceField;
+
+    private CSVTable table;
+
+    /**
+     * Instantiate a new copy of ReplaceController class.
+     */
+    public ReplaceController()
+    {
+        this.columnBoxes = new ArrayList<>();
+    }
+
+    /**
+     * Get the changes chosen.
+     *
+     * @return the changes, or {@code null} if nothing is to be replaced
+     */
+    public RegexReplace.Changes getChanges()
+    {
+        return changes;
+    }
+
+    /**
+     * Set the rows to search.
+     *
+     * @param table holding the rows, which must not change while the dialog
+     *              is open
+     * @param order index of each table row shown, in order
+     */
+    public void setData(final CSVTable table, final int[] order)
+    {
+        this.table = table;
+        this.order = order;
+
+        for (String heading : table.getHeader())
+        {
+            CheckBox box = new CheckBox(heading);
+            box.setSelected(true);
+            box.selectedProperty().addListener((observable, oldValue, newValue) -> forget());
+            columnBoxes.add(box);
+        }
+
+        columnPane.getChildren().setAll(columnBoxes);
+    }
+
+    /**
+     * Stop the search, if it is still running.
+     */
+    public void stop()
+    {
+        if (findTask != null)
+        {
+            findTask.cancel();
+        }
+    }
+
+    /**
+     * Close the dialog.
+     */
+    private void close()
+    {
+        stop();
+        ((Stage) cancelButton.getScene().getWindow()).close();
+    }
+
+    /**
+     * Search the rows for the values to change, in the background, then
+     * either show how many there are, or close the dialog with them.
+     *
+     * @param replace {@code true} to close the dialog with the changes
+     */
+    private void find(final boolean replace)
+    {
+        if (previewed != null)
+        {
+            found(previewed, replace);
+            return;
+        }
+
+        final RegexReplace regex;
+        final int[] columns = IntStream.range(0, columnBoxes.size())
+                .filter(i -> columnBoxes.get(i).isSelected())
+                .toArray();
+
+        try
+        {
+            if (findField.getText().isEmpty())
+            {
+                throw new IllegalArgumentException("Give the pattern to find");
+            } else if (columns.length == 0)
+            {
+                throw new IllegalArgumentException("Tick the columns to search");
+            }
+
+            Pattern pattern = Pattern.compile(findField.getText(), matchCaseBox.isSelected()
+                    ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            regex = new RegexReplace(pattern, replaceField.getText(), columns);
+        } catch (IllegalArgumentException ex)
+        {
+            infoLabel.setText(ex.getMessage());
+            findField.requestFocus();
+            return;
+        }
+
+        final Task<RegexReplace.Changes> task = new Task<>()
+        {
+            @Override
+            protected RegexReplace.Changes call() throws Exception
+            {
+                final ReplaceEvent event = new ReplaceEvent();
+                event.begin();
+                event.rows = order.length;
+                event.columns = columns.length;
+
+                try
+                {
+                    RegexReplace.Changes found = regex.find(table, order, this::isCancelled);
+                    event.changes = found.getCount();
+
+                    return found;
+                } finally
+                {
+                    event.cancelled = isCancelled();
+                    event.commit();
+                }
+            }
+        };
+
+        findTask = task;
+
+        task.setOnSucceeded(t ->
+        {
+            findTask = null;
+            setBusy(false);
+            previewed = task.getValue();
+            found(previewed, replace);
+        });
+
+        task.setOnFailed(t ->
+        {
+            findTask = null;
+            setBusy(false);
+            infoLabel.setText("Find failed: " + task.getException().getMessage());
+        });
+
+        setBusy(true);
+        infoLabel.setText(String.format("Searching %,d rows...", order.length));
+
+        Thread thread = new Thread(task, "Regex Replacer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Forget the changes previewed, once the pattern, the replacement or
+     * the columns have changed.
+     */
+    private void forget()
+    {
+        previewed = null;
+    }
+
+    /**
+     * Show how many values are to change, or close the dialog with them.
+     * There is nothing to replace if none are to change.
+     *
+     * @param found   the changes
+     * @param replace {@code true} to close the dialog with the changes
+     */
+    private void found(final RegexReplace.Changes found, final boolean replace)
+    {
+        if (replace && found.getCount() > 0)
+        {
+            changes = found;
+            close();
+        } else
+        {
+            infoLabel.setText(String.format("%,d matches: %,d values in %,d rows to change",
+                    found.getMatchCount(), found.getCount(), found.getRowCount()));
+        }
+    }
+
+    @FXML
+    private void handleCancelButton(ActionEvent event)
+    {
+        changes = null;
+        close();
+        event.consume();
+    }
+
+    @FXML
+    private void handlePreviewButton(ActionEvent event)
+    {
+        find(false);
+        event.consume();
+    }
+
+    @FXML
+    private void handleReplaceButton(ActionEvent event)
+    {
+        find(true);
+        event.consume();
+    }
+
+    /**
+     * Controller initialization.
+     */
+    @FXML
+    private void initialize()
+    {
+        findField.textProperty().addListener((observable, oldValue, newValue) -> forget());
+        replaceField.textProperty().addListener((observable, oldValue, newValue) -> forget());
+        matchCaseBox.selectedProperty().addListener((observable, oldValue, newValue) -> forget());
+    }
+
+    /**
+     * Nothing can be changed while the rows are being searched.
+     *
+     * @param busy searching
+     */
+    private void setBusy(final boolean busy)
+    {
+        findField.setDisable(busy);
+        replaceField.setDisable(busy);
+        matchCaseBox.setDisable(busy);
+        columnPane.setDisable(busy);
+        previewButton.setDisable(busy);
+        replaceButton.setDisable(busy);
+    }
+}
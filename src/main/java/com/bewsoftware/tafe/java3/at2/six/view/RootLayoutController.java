@@ -27,13 +27,20 @@
 package com.bewsoftware.tafe.java3.at2.six.view;
 
 import com.bewsoftware.tafe.java3.at2.six.App;
+import com.bewsoftware.tafe.java3.at2.six.csv.LoadOptions;
+import com.bewsoftware.tafe.java3.at2.six.metrics.Metric;
 import com.bewsoftware.tafe.java3.at2.six.util.ViewController;
 import com.bewsoftware.tafe.java3.at2.six.util.Views;
 import java.beans.PropertyChangeEvent;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.StringJoiner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -41,14 +48,18 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuItem;
+import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.GridPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 
+import static com.bewsoftware.tafe.java3.at2.six.util.Constants.PREVIEW_SIZE;
 import static com.bewsoftware.tafe.java3.at2.six.util.Views.BLANK;
 import static com.bewsoftware.tafe.java3.at2.six.util.Views.CSVTABLE;
 import static javafx.scene.control.ButtonType.NO;
@@ -84,16 +95,47 @@ public class RootLayoutController implements ViewController
     @FXML
     private MenuItem aboutMenuItem;
 
+    /**
+     * The About dialog, once it has been shown.
+     */
+    private Stage aboutStage = null;
+
     private App app;
 
+    @FXML
+    private MenuItem cancelLoadMenuItem;
+
     @FXML
     private MenuItem closeMenuItem;
 
     private Views currentView;
 
+    @FXML
+    private MenuItem findMenuItem;
+
+    @FXML
+    private Label metricsLabel;
+
+    @FXML
+    private CheckMenuItem metricsMenuItem;
+
+    /**
+     * Refreshes the metrics panel while it is shown.
+     */
+    private Timeline metricsTimeline = null;
+
     @FXML
     private MenuItem openMenuItem;
 
+    @FXML
+    private MenuItem previewMenuItem;
+
+    @FXML
+    private MenuItem redoMenuItem;
+
+    @FXML
+    private MenuItem replaceMenuItem;
+
     @FXML
     private MenuItem saveAsMenuItem;
 
@@ -103,6 +145,9 @@ public class RootLayoutController implements ViewController
     @FXML
     private Label statusLabel;
 
+    @FXML
+    private MenuItem undoMenuItem;
+
     /**
      * Instantiate a new copy of RootLayoutController class.
      */
@@ -138,7 +183,10 @@ public class RootLayoutController implements ViewController
                     case CSVTABLE ->
                     {
                         openMenuItem.setDisable(true);
+                        previewMenuItem.setDisable(true);
                         closeMenuItem.setDisable(false);
+                        findMenuItem.setDisable(false);
+                        replaceMenuItem.setDisable(false);
                     }
 
                     default ->
@@ -158,7 +206,10 @@ public class RootLayoutController implements ViewController
                         case CSVTABLE ->
                         {
                             openMenuItem.setDisable(false);
+                            previewMenuItem.setDisable(false);
                             closeMenuItem.setDisable(true);
+                            findMenuItem.setDisable(true);
+                            replaceMenuItem.setDisable(true);
                         }
 
                         default ->
@@ -168,9 +219,19 @@ public class RootLayoutController implements ViewController
                 }
             }
 
+            case App.PROP_CANREDO ->
+            {
+                redoMenuItem.setDisable(!(boolean) evt.getNewValue());
+            }
+
+            case App.PROP_CANUNDO ->
+            {
+                undoMenuItem.setDisable(!(boolean) evt.getNewValue());
+            }
+
             case App.PROP_DATAISDIRTY ->
             {
-                if ((boolean) evt.getNewValue())
+                if ((boolean) evt.getNewValue() && !app.isLoading())
                 {
                     saveMenuItem.setDisable(false);
                     saveAsMenuItem.setDisable(false);
@@ -193,6 +254,22 @@ public class RootLayoutController implements ViewController
                 }
             }
 
+            case App.PROP_LOADING ->
+            {
+                boolean loading = (boolean) evt.getNewValue();
+                cancelLoadMenuItem.setDisable(!loading);
+
+                if (loading)
+                {
+                    saveMenuItem.setDisable(true);
+                    saveAsMenuItem.setDisable(true);
+                } else
+                {
+                    saveMenuItem.setDisable(!app.isDataDirty());
+                    saveAsMenuItem.setDisable(!app.isDataDirty());
+                }
+            }
+
             case App.PROP_STATUSTEXT ->
             {
                 statusLabel.setText((String) evt.getNewValue());
@@ -222,6 +299,18 @@ public class RootLayoutController implements ViewController
         event.consume();
     }
 
+    /**
+     * Handle the File/Cancel Load menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleCancelLoadMenuItem(ActionEvent event)
+    {
+        app.cancelLoad();
+        event.consume();
+    }
+
     /**
      * Handle the File/Close menu item event.
      *
@@ -272,23 +361,77 @@ public class RootLayoutController implements ViewController
         event.consume();
     }
 
+    /**
+     * Handle the Edit/Find menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleFindMenuItem(ActionEvent event)
+    {
+        app.find();
+        event.consume();
+    }
+
+    /**
+     * Handle the View/Metrics menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleMetricsMenuItem(ActionEvent event)
+    {
+        showMetrics(metricsMenuItem.isSelected());
+        event.consume();
+    }
+
     /**
      * Handle the File/Open menu item event.
+     * <p>
+     * A large file is previewed first.
      *
      * @param event
      */
     @FXML
     private void handleOpenMenuItem(ActionEvent event)
     {
-        final FileChooser fileChooser = new FileChooser();
-        configureFileChooser(fileChooser);
-        File fileName = fileChooser.showOpenDialog(app.getPrimaryStage());
+        openFile(false);
+        event.consume();
+    }
 
-        if (fileName != null)
-        {
-            app.setFileName(fileName.toPath());
-        }
+    /**
+     * Handle the File/Open with Preview menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handlePreviewMenuItem(ActionEvent event)
+    {
+        openFile(true);
+        event.consume();
+    }
+
+    /**
+     * Handle the Edit/Redo menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleRedoMenuItem(ActionEvent event)
+    {
+        app.redo();
+        event.consume();
+    }
 
+    /**
+     * Handle the Edit/Replace menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleReplaceMenuItem(ActionEvent event)
+    {
+        app.replace();
         event.consume();
     }
 
@@ -324,15 +467,32 @@ public class RootLayoutController implements ViewController
         event.consume();
     }
 
+    /**
+     * Handle the Edit/Undo menu item event.
+     *
+     * @param event
+     */
+    @FXML
+    private void handleUndoMenuItem(ActionEvent event)
+    {
+        app.undo();
+        event.consume();
+    }
+
     /**
      * Controller initialization.
      */
     @FXML
     private void initialize()
     {
+        cancelLoadMenuItem.setDisable(true);
         closeMenuItem.setDisable(true);
         saveMenuItem.setDisable(true);
         saveAsMenuItem.setDisable(true);
+        undoMenuItem.setDisable(true);
+        redoMenuItem.setDisable(true);
+        findMenuItem.setDisable(true);
+        replaceMenuItem.setDisable(true);
     }
 
     /**
@@ -342,25 +502,131 @@ public class RootLayoutController implements ViewController
     {
         try
         {
-            // Load the fxml file and create a new stage for the popup dialog.
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(App.class.getResource("view/About.fxml"));
-            GridPane page = (GridPane) loader.load();
+            if (aboutStage == null)
+            {
+                // Get the fxml file and create a new stage for the popup dialog.
+                FXMLLoader loader = app.getViewCache().take("view/About.fxml");
+                GridPane page = loader.getRoot();
+
+                // Create the dialog Stage, to be shown again next time.
+                aboutStage = new Stage();
+                aboutStage.setTitle("About");
+                aboutStage.initModality(Modality.WINDOW_MODAL);
+                aboutStage.initOwner(app.getPrimaryStage());
+                Scene scene = new Scene(page);
+                aboutStage.setScene(scene);
+                aboutStage.setResizable(false);
+            }
+
+            // Show the dialog and wait until the user closes it
+            aboutStage.showAndWait();
+        } catch (IOException ex)
+        {
+            Logger.getLogger(RootLayoutController.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Ask the user for a file to open, and open it.
+     * <p>
+     * When previewed, the user can choose whether to load all of the file,
+     * just a sample of its rows, just some of its columns, or none of it.
+     *
+     * @param preview the file, whatever its size
+     */
+    private void openFile(final boolean preview)
+    {
+        final FileChooser fileChooser = new FileChooser();
+        configureFileChooser(fileChooser);
+        File fileName = fileChooser.showOpenDialog(app.getPrimaryStage());
+
+        if (fileName != null)
+        {
+            LoadOptions options = preview || fileName.length() >= PREVIEW_SIZE
+                    ? showPreviewDialog(fileName.toPath())
+                    : LoadOptions.FULL;
+
+            if (options != null)
+            {
+                app.setLoadOptions(options);
+                app.setFileName(fileName.toPath());
+            }
+        }
+    }
+
+    /**
+     * Show the preview of a file, and wait for the user to choose how much
+     * of it to load.
+     *
+     * @param csvPath Path to the CSV file.
+     *
+     * @return the options, or {@code null} if the file is not to be loaded
+     */
+    private LoadOptions showPreviewDialog(final Path csvPath)
+    {
+        try
+        {
+            FXMLLoader loader = app.getViewCache().take("view/Preview.fxml");
+            AnchorPane page = loader.getRoot();
+            PreviewController controller = loader.getController();
+            controller.setFile(csvPath);
 
-            // Create the dialog Stage.
             Stage dialogStage = new Stage();
-            dialogStage.setTitle("About");
+            dialogStage.setTitle("Preview - " + csvPath.getFileName());
             dialogStage.initModality(Modality.WINDOW_MODAL);
             dialogStage.initOwner(app.getPrimaryStage());
-            Scene scene = new Scene(page);
-            dialogStage.setScene(scene);
-            dialogStage.setResizable(false);
+            dialogStage.setScene(new Scene(page));
 
             // Show the dialog and wait until the user closes it
             dialogStage.showAndWait();
+            controller.stopCounting();
+
+            return controller.getLoadOptions();
         } catch (IOException ex)
         {
             Logger.getLogger(RootLayoutController.class.getName()).log(Level.SEVERE, null, ex);
+            app.setStatusText("Preview failed: " + ex.getMessage());
+
+            return null;
         }
     }
+
+    /**
+     * Show or hide the metrics panel on the status bar. It is refreshed
+     * every second while it is shown.
+     *
+     * @param show the panel
+     */
+    private void showMetrics(final boolean show)
+    {
+        metricsLabel.setVisible(show);
+        metricsLabel.setManaged(show);
+
+        if (show)
+        {
+            updateMetrics();
+            metricsTimeline = new Timeline(new KeyFrame(Duration.seconds(1), t -> updateMetrics()));
+            metricsTimeline.setCycleCount(Animation.INDEFINITE);
+            metricsTimeline.play();
+        } else if (metricsTimeline != null)
+        {
+            metricsTimeline.stop();
+            metricsTimeline = null;
+        }
+    }
+
+    /**
+     * Display the current value of each metric.
+     */
+    private void updateMetrics()
+    {
+        StringJoiner text = new StringJoiner("  |  ");
+
+        for (Metric metric : app.getMetrics().getMetrics())
+        {
+            text.add(metric.getText());
+        }
+
+        metricsLabel.setText(text.toString());
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ *  File Name:    RowChain.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 4 Nov 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import java.util.Arrays;
+
+/**
+ * The order of the rows of a table, as a doubly linked list of their
+ * indexes.
+ * <p>
+ * A row can be put in after another row, or taken out, in constant time,
+ * as it is found by its index in the table rather than its place in the
+ * order. This lets a journal of edits, which refers to rows that way, be
+ * replayed in one pass, before the new order is handed to the
+ * {@link RowList} in one go.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RowChain
+{
+    /**
+     * The end of the chain, and the previous row of a row not in it.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The previous row of the first row.
+     */
+    private static final int START = -2;
+
+    private int first;
+
+    /**
+     * next[row] is the row after it, or {@link #NONE}.
+     */
+    private int[] next;
+
+    /**
+     * previous[row] is the row before it, {@link #START} or {@link #NONE}
+     * if it is not in the chain.
+     */
+    private int[] previous;
+
+    private int size;
+
+    /**
+     * Instantiate a new RowChain.
+     *
+     * @param order the index of each table row, in order
+     */
+    public RowChain(final int[] order)
+    {
+        int maxRow = -1;
+
+        for (int row : order)
+        {
+            maxRow = Math.max(maxRow, row);
+        }
+
+        this.next = new int[maxRow + 1];
+        this.previous = new int[maxRow + 1];
+        Arrays.fill(previous, NONE);
+        this.first = NONE;
+
+        for (int i = order.length - 1; i >= 0; i--)
+        {
+            insertFirst(order[i]);
+        }
+    }
+
+    /**
+     * Is a row in the chain?
+     *
+     * @param row index of the table row
+     *
+     * @return result
+     */
+    public boolean contains(final int row)
+    {
+        return row >= 0 && row < previous.length && previous[row] != NONE;
+    }
+
+    /**
+     * Put a row in, just after another.
+     *
+     * @param after index of the table row to put it after. If that row is
+     *              not in the chain, or is -1, it is put in first.
+     * @param row   index of the table row, which must not be in the chain
+     */
+    public void insertAfter(final int after, final int row)
+    {
+        if (row >= previous.length)
+        {
+            int length = previous.length;
+            int capacity = Math.max(row + 1, length + (length >> 1));
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            Arrays.fill(previous, length, capacity, NONE);
+        }
+
+        if (!contains(after))
+        {
+            insertFirst(row);
+            return;
+        }
+
+        next[row] = next[after];
+        previous[row] = after;
+
+        if (next[after] != NONE)
+        {
+            previous[next[after]] = row;
+        }
+
+        next[after] = row;
+        size++;
+    }
+
+    /**
+     * Take a row out, if it is in the chain.
+     *
+     * @param row index of the table row
+     */
+    public void remove(final int row)
+    {
+        if (!contains(row))
+        {
+            return;
+        }
+
+        if (previous[row] == START)
+        {
+            first = next[row];
+        } else
+        {
+            next[previous[row]] = next[row];
+        }
+
+        if (next[row] != NONE)
+        {
+            previous[next[row]] = previous[row];
+        }
+
+        previous[row] = NONE;
+        size--;
+    }
+
+    /**
+     * Get the order of the rows.
+     *
+     * @return the index of each table row, in order
+     */
+    public int[] toOrder()
+    {
+        int[] order = new int[size];
+        int row = first;
+
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = row;
+            row = next[row];
+        }
+
+        return order;
+    }
+
+    /**
+     * Put a row in first.
+     *
+     * @param row index of the table row
+     */
+    private void insertFirst(final int row)
+    {
+        next[row] = first;
+        previous[row] = START;
+
+        if (first != NONE)
+        {
+            previous[first] = row;
+        }
+
+        first = row;
+        size++;
+    }
+}
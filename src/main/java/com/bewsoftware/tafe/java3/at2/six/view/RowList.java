@@ -0,0 +1,332 @@
+/*
+ *  File Name:    RowList.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 20 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import javafx.collections.ObservableListBase;
+
+/**
+ * The items of the CSV TableView: a lightweight view of the rows of a
+ * {@link com.bewsoftware.tafe.java3.at2.six.csv.ColumnarTable ColumnarTable}.
+ * <p>
+ * Each item is simply the index of a row in the table. The list holds
+ * nothing more than the order in which those rows are displayed, as an
+ * {@code int} array. A row deleted from the view is simply left out of
+ * it.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class RowList extends ObservableListBase<Integer>
+{
+    private int[] order;
+
+    /**
+     * positions[row] is the index in the list of a table row, or -1. It is
+     * built when first needed, and dropped whenever the list changes.
+     */
+    private int[] positions = null;
+
+    private int size;
+
+    /**
+     * Instantiate a new, empty, RowList.
+     */
+    public RowList()
+    {
+        this.order = new int[1024];
+    }
+
+    /**
+     * Add rows to the end of the list.
+     *
+     * @param from index of the first table row to add
+     * @param to   index after the last table row to add
+     */
+    public void addRows(final int from, final int to)
+    {
+        if (to <= from)
+        {
+            return;
+        }
+
+        int count = to - from;
+
+        if (size + count > order.length)
+        {
+            order = Arrays.copyOf(order, Math.max(size + count, order.length * 2));
+        }
+
+        for (int row = from; row < to; row++)
+        {
+            order[size++] = row;
+        }
+
+        positions = null;
+
+        beginChange();
+        nextAdd(size - count, size);
+        endChange();
+    }
+
+    @Override
+    public Integer get(int index)
+    {
+        return getRow(index);
+    }
+
+    /**
+     * Get a copy of the order of the rows.
+     *
+     * @return the index of the table row displayed at each index
+     */
+    public int[] getOrder()
+    {
+        return Arrays.copyOf(order, size);
+    }
+
+    /**
+     * Get the table row displayed at an index, without boxing it.
+     *
+     * @param index in the list
+     *
+     * @return index of the table row
+     */
+    public int getRow(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return order[index];
+    }
+
+    /**
+     * Find where a table row is in the list.
+     * <p>
+     * The first row looked up after the list has changed has every row's
+     * place worked out, so the rows looked up after it are found at once.
+     *
+     * @param row index of the table row
+     *
+     * @return index in the list, or -1 if it is not in the list
+     */
+    public int indexOfRow(final int row)
+    {
+        if (positions == null)
+        {
+            int maxRow = -1;
+
+            for (int i = 0; i < size; i++)
+            {
+                maxRow = Math.max(maxRow, order[i]);
+            }
+
+            positions = new int[maxRow + 1];
+            Arrays.fill(positions, -1);
+
+            for (int i = 0; i < size; i++)
+            {
+                positions[order[i]] = i;
+            }
+        }
+
+        return row >= 0 && row < positions.length ? positions[row] : -1;
+    }
+
+    /**
+     * Insert a row into the list.
+     *
+     * @param index in the list to insert it at
+     * @param row   index of the table row
+     */
+    public void insertRow(final int index, final int row)
+    {
+        if (index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        if (size == order.length)
+        {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+
+        System.arraycopy(order, index, order, index + 1, size - index);
+        order[index] = row;
+        size++;
+        positions = null;
+
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    /**
+     * Remove a row from the list.
+     *
+     * @param index in the list of the row to remove
+     *
+     * @return index of the table row removed
+     */
+    public int removeRow(final int index)
+    {
+        int row = getRow(index);
+
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        size--;
+        positions = null;
+
+        beginChange();
+        nextRemove(index, Integer.valueOf(row));
+        endChange();
+
+        return row;
+    }
+
+    /**
+     * Reorder the list.
+     * <p>
+     * The new contents must be a permutation of the current contents.
+     *
+     * @param col the new order
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean setAll(Collection<? extends Integer> col)
+    {
+        if (col.size() != size)
+        {
+            throw new IllegalArgumentException("Not a permutation of the rows");
+        }
+
+        int[] newOrder = new int[order.length];
+        int i = 0;
+
+        for (Integer row : col)
+        {
+            newOrder[i++] = row;
+        }
+
+        setOrder(newOrder);
+
+        return true;
+    }
+
+    /**
+     * Replace the order of the rows, all at once, and tell the listeners
+     * where each row has moved to.
+     *
+     * @param newOrder a permutation of the current order, which is taken
+     *                 over by the list
+     */
+    public void setOrder(final int[] newOrder)
+    {
+        if (newOrder.length < size)
+        {
+            throw new IllegalArgumentException("Not a permutation of the rows");
+        }
+
+        int maxRow = -1;
+
+        for (int i = 0; i < size; i++)
+        {
+            maxRow = Math.max(maxRow, order[i]);
+        }
+
+        // Where is each table row now? Deleted rows leave gaps.
+        int[] position = new int[maxRow + 1];
+
+        for (int i = 0; i < size; i++)
+        {
+            position[newOrder[i]] = i;
+        }
+
+        int[] permutation = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            permutation[i] = position[order[i]];
+        }
+
+        order = newOrder;
+        positions = null;
+
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    /**
+     * Replace all of the rows at once, such as once a journal of edits has
+     * been replayed.
+     *
+     * @param newOrder the index of each table row to display, in order,
+     *                 which is taken over by the list
+     */
+    public void setRows(final int[] newOrder)
+    {
+        final int[] oldOrder = order;
+        final int oldSize = size;
+
+        order = newOrder.length > 0 ? newOrder : new int[1024];
+        size = newOrder.length;
+        positions = null;
+
+        beginChange();
+
+        // The rows removed are only boxed if a listener looks at them.
+        nextReplace(0, size, new AbstractList<Integer>()
+        {
+            @Override
+            public Integer get(int index)
+            {
+                return oldOrder[index];
+            }
+
+            @Override
+            public int size()
+            {
+                return oldSize;
+            }
+        });
+
+        endChange();
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ *  File Name:    SaveTask.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 26 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.TableWriter;
+import com.bewsoftware.tafe.java3.at2.six.jfr.SaveEvent;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+import javafx.concurrent.Task;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Saves the rows of a table to a CSV file in the background.
+ * <p>
+ * The rows are written by a {@link TableWriter} to a temporary file in
+ * the same directory, which is forced out to the disk, and then moved
+ * over the CSV file in one atomic step. If anything goes wrong, or the
+ * application stops part way through, the CSV file is left as it was.
+ * <p>
+ * If the CSV file is a link, it is the file linked to that is replaced.
+ * The new file is given the permissions, and where allowed the owner and
+ * group, of the file it replaces.
+ * <p>
+ * The task's value is the number of rows that had to be encoded, rather
+ * than copied from the source file.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class SaveTask extends Task<Integer>
+{
+    /**
+     * Give a file the permissions, owner and group of another, as far as
+     * the file system and the user allow.
+     *
+     * @param from Path to the file to copy them from
+     * @param to   Path to the file to copy them to
+     *
+     * @throws IOException if any
+     */
+    private static void copyAttributes(final Path from, final Path to) throws IOException
+    {
+        final PosixFileAttributeView fromView
+                = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        final PosixFileAttributeView toView
+                = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+
+        if (fromView == null || toView == null)
+        {
+            return;
+        }
+
+        final PosixFileAttributes attributes = fromView.readAttributes();
+
+        try
+        {
+            toView.setGroup(attributes.group());
+            toView.setOwner(attributes.owner());
+        } catch (IOException ex)
+        {
+            // Only the superuser may give a file away, or to a group the user
+            // is not in, so it stays the user's.
+        }
+
+        toView.setPermissions(attributes.permissions());
+    }
+
+    /**
+     * Create a new, empty, file next to the CSV file to write to.
+     * <p>
+     * Unlike {@link Files#createTempFile}, which only lets the user read
+     * it, the file is created with the default permissions, as a new CSV
+     * file would be.
+     *
+     * @param target Path to the CSV file
+     *
+     * @return Path to the new file
+     *
+     * @throws IOException if any
+     */
+    private static Path createTempFile(final Path target) throws IOException
+    {
+        final String prefix = "." + target.getFileName() + ".";
+
+        while (true)
+        {
+            try
+            {
+                return Files.createFile(target.resolveSibling(prefix
+                        + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36)
+                        + ".tmp"));
+            } catch (FileAlreadyExistsException ex)
+            {
+                // Try another name.
+            }
+        }
+    }
+
+    /**
+     * Force a directory's entries out to the disk, so that a file moved
+     * into it stays moved.
+     *
+     * @param directory Path to the directory
+     */
+    private static void forceDirectory(final Path directory)
+    {
+        try (FileChannel channel = FileChannel.open(directory, READ))
+        {
+            channel.force(true);
+        } catch (IOException ex)
+        {
+            // Some systems, such as Windows, cannot open a directory. Their
+            // moves are written through without it.
+        }
+    }
+
+    private final int[] order;
+
+    private final Path sourcePath;
+
+    private final CSVTable table;
+
+    private final Path targetPath;
+
+    /**
+     * Instantiate a new SaveTask.
+     *
+     * @param table      holding the rows
+     * @param order      index of each table row to save, in order
+     * @param sourcePath Path to the unchanged file the table was read from,
+     *                   or {@code null}
+     * @param targetPath Path to the CSV file to save to.
+     */
+    public SaveTask(final CSVTable table, final int[] order,
+            final Path sourcePath, final Path targetPath)
+    {
+        this.table = table;
+        this.order = order;
+        this.sourcePath = sourcePath;
+        this.targetPath = targetPath;
+    }
+
+    @Override
+    protected Integer call() throws Exception
+    {
+        final long startTime = System.nanoTime();
+        final SaveEvent event = new SaveEvent();
+        event.begin();
+        event.path = targetPath.toString();
+        event.rows = order.length;
+
+        final Path target = Files.exists(targetPath)
+                ? targetPath.toRealPath() : targetPath.toAbsolutePath();
+        final Path tempPath = createTempFile(target);
+
+        try
+        {
+            int encoded = TableWriter.write(table, order, sourcePath, tempPath, rows ->
+            {
+                updateMessage(String.format("Saving: %,d of %,d rows - %d%% written",
+                        rows, order.length, order.length > 0 ? rows * 100L / order.length : 100));
+                updateProgress(rows, order.length);
+            });
+
+            if (Files.exists(target))
+            {
+                copyAttributes(target, tempPath);
+            }
+
+            try
+            {
+                Files.move(tempPath, target, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex)
+            {
+                Files.move(tempPath, target, REPLACE_EXISTING);
+            }
+
+            forceDirectory(target.getParent());
+
+            updateMessage(String.format("Data saved to file: %,d rows in %,d ms (%,d rows encoded)",
+                    order.length, (System.nanoTime() - startTime) / 1_000_000, encoded));
+
+            event.encodedRows = encoded;
+            event.bytes = Files.size(target);
+            event.commit();
+
+            return encoded;
+        } catch (IOException | RuntimeException ex)
+        {
+            Files.deleteIfExists(tempPath);
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  File Name:    SortTask.java
+ *  Project Name: Java3AT2-Six
+ *
+ *  Copyright (c) 2021 Bradley Willcott
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * ****************************************************************
+ * Name: Bradley Willcott
+ * ID:   M198449
+ * Date: 24 Oct 2021
+ * ****************************************************************
+ */
+
+package com.bewsoftware.tafe.java3.at2.six.view;
+
+import com.bewsoftware.tafe.java3.at2.six.csv.CSVTable;
+import com.bewsoftware.tafe.java3.at2.six.csv.ParallelSort;
+import com.bewsoftware.tafe.java3.at2.six.csv.RowComparator;
+import com.bewsoftware.tafe.java3.at2.six.jfr.SortEvent;
+import java.util.Arrays;
+import javafx.concurrent.Task;
+
+/**
+ * Sorts the rows of a table in the background.
+ * <p>
+ * Only the order of the rows is sorted: a copy of the {@link RowList}'s
+ * {@code int} array of row indexes. The sort keys of each column are
+ * worked out first, and the rows are then put in order by a
+ * {@link ParallelSort}. The task's value is the new order, ready to be
+ * swapped into the list in one go.
+ *
+ * @author <a href="mailto:bw.opensource@yahoo.com">Bradley Willcott</a>
+ *
+ * @since 1.0
+ * @version 1.0
+ */
+public class SortTask extends Task<int[]>
+{
+    private final int[] columns;
+
+    private final boolean[] descending;
+
+    private final int[] order;
+
+    private final CSVTable table;
+
+    /**
+     * Instantiate a new SortTask.
+     * <p>
+     * The rows are sorted by each column in turn. With no columns, they
+     * are put back in file order.
+     *
+     * @param table      holding the rows
+     * @param order      current order of the rows, which is sorted in
+     *                   place
+     * @param columns    indexes of the columns to sort by
+     * @param descending whether each column is sorted in descending order
+     */
+    public SortTask(final CSVTable table, final int[] order,
+            final int[] columns, final boolean[] descending)
+    {
+        this.table = table;
+        this.order = order;
+        this.columns = columns.clone();
+        this.descending = descending.clone();
+    }
+
+    @Override
+    protected int[] call() throws Exception
+    {
+        final long startTime = System.nanoTime();
+        final SortEvent event = new SortEvent();
+        event.begin();
+        event.rows = order.length;
+        event.columns = columns.length;
+        updateMessage(String.format("Sorting %,d rows...", order.length));
+
+        RowComparator comparator = null;
+
+        for (int i = 0; i < columns.length && !isCancelled(); i++)
+        {
+            RowComparator next = table.comparator(columns[i]);
+
+            if (descending[i])
+            {
+                next = next.reversed();
+            }
+
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        try
+        {
+            if (comparator == null)
+            {
+                // The row indexes are in file order.
+                Arrays.parallelSort(order);
+            } else
+            {
+                ParallelSort.sort(order, comparator, this::isCancelled);
+            }
+        } finally
+        {
+            event.cancelled = isCancelled();
+            event.commit();
+        }
+
+        updateMessage(String.format("Sorted %,d rows in %,d ms", order.length,
+                (System.nanoTime() - startTime) / 1_000_000));
+
+        return order;
+    }
+}
@@ -38,9 +38,11 @@ module Java3AT2Six {
     requires transitive javafx.graphics;
     requires javafx.base;
     requires java.logging;
+    requires java.management;
     requires java.desktop;
     requires java.base;
     requires com.opencsv;
+    requires jdk.jfr;
 
     opens com.bewsoftware.tafe.java3.at2.six to javafx.graphics;
     opens com.bewsoftware.tafe.java3.at2.six.view to javafx.fxml, javafx.graphics;